@@ -0,0 +1,68 @@
+package com.codesphere.backend.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+/**
+ * Moves the executions id sequence past ids that already exist. The table
+ * used database-generated (identity) ids before it switched to a pooled
+ * sequence, and schema update creates that sequence starting at 1, which
+ * would collide with old rows.
+ */
+@Component
+@DependsOn("entityManagerFactory") // the schema, sequence included, must exist first
+public class ExecutionIdSequence {
+
+    /** Must match the allocation size of the id generator on ExecutionEntity. */
+    public static final int ALLOCATION_SIZE = 50;
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionIdSequence.class);
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbc;
+
+    public ExecutionIdSequence(DataSource dataSource, JdbcTemplate jdbc) {
+        this.dataSource = dataSource;
+        this.jdbc = jdbc;
+    }
+
+    @PostConstruct
+    public void align() {
+        try {
+            Long maxId = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM executions", Long.class);
+            if (maxId == null || maxId == 0) {
+                return;
+            }
+            long floor = maxId + ALLOCATION_SIZE + 1;
+            String product;
+            try (Connection connection = dataSource.getConnection()) {
+                product = connection.getMetaData().getDatabaseProductName();
+            }
+            switch (product) {
+                case "PostgreSQL" -> jdbc.queryForObject(
+                        "SELECT setval('executions_seq', GREATEST(?, (SELECT last_value FROM executions_seq)))",
+                        Long.class, floor);
+                case "MySQL", "MariaDB" -> jdbc.update(
+                        "UPDATE executions_seq SET next_val = ? WHERE next_val < ?", floor, floor);
+                case "H2" -> {
+                    Long next = jdbc.queryForObject("SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES"
+                            + " WHERE UPPER(SEQUENCE_NAME) = 'EXECUTIONS_SEQ'", Long.class);
+                    if (next != null && next < floor) {
+                        jdbc.execute("ALTER SEQUENCE executions_seq RESTART WITH " + floor);
+                    }
+                }
+                default -> log.warn("Cannot align executions_seq on {}; make sure it is above {}", product, maxId);
+            }
+        } catch (Exception e) {
+            log.warn("Could not align executions_seq with existing ids: {}", e.getMessage());
+        }
+    }
+}
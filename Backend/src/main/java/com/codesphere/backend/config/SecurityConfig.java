@@ -3,6 +3,7 @@ package com.codesphere.backend.config;
 import com.codesphere.backend.security.JwtFilter;
 import com.codesphere.backend.security.RateLimitFilter;
 import com.codesphere.backend.security.RequestLoggingFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -29,6 +30,8 @@ public class SecurityConfig {
             .cors(cors -> {})
             .authorizeHttpRequests(auth -> auth
             	.requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                // SSE streams complete on an async dispatch; the original request was already authorized
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/health").permitAll()
                 .anyRequest().authenticated()
@@ -0,0 +1,25 @@
+package com.codesphere.backend.config;
+
+import com.codesphere.backend.controller.InteractiveSessionHandler;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final InteractiveSessionHandler interactiveSessions;
+
+    public WebSocketConfig(InteractiveSessionHandler interactiveSessions) {
+        this.interactiveSessions = interactiveSessions;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(interactiveSessions, "/api/projects/*/session")
+                .setAllowedOrigins(CorsConfig.ALLOWED_ORIGINS);
+    }
+}
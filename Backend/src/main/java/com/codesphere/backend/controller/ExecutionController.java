@@ -2,403 +2,475 @@ package com.codesphere.backend.controller;
 
 import com.codesphere.backend.dto.ApiResponse;
 import com.codesphere.backend.dto.ExecuteRequest;
+import com.codesphere.backend.dto.ExecutionHistoryResponse;
+import com.codesphere.backend.dto.ExecutionJobResponse;
 import com.codesphere.backend.dto.ExecutionResult;
+import com.codesphere.backend.dto.ExecutionOutputResponse;
+import com.codesphere.backend.dto.ExecutionSummary;
+import com.codesphere.backend.dto.JudgeRequest;
+import com.codesphere.backend.dto.JudgeResponse;
 import com.codesphere.backend.entity.ExecutionEntity;
 import com.codesphere.backend.entity.ProjectEntity;
 import com.codesphere.backend.entity.UserEntity;
+import com.codesphere.backend.execution.ExecutionCoalescer;
+import com.codesphere.backend.execution.ExecutionJob;
+import com.codesphere.backend.execution.ExecutionJobFactory;
+import com.codesphere.backend.execution.ExecutionOutputFiles;
+import com.codesphere.backend.execution.ExecutionOutputStore;
+import com.codesphere.backend.execution.ExecutionRejectedException;
+import com.codesphere.backend.execution.ExecutionRequestException;
+import com.codesphere.backend.execution.ExecutionScheduler;
+import com.codesphere.backend.execution.JudgeService;
 import com.codesphere.backend.repository.ExecutionRepository;
 import com.codesphere.backend.repository.ProjectRepository;
 import com.codesphere.backend.repository.UserRepository;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import jakarta.annotation.PreDestroy;
 import jakarta.validation.Valid;
 
-import java.io.BufferedWriter;
-import java.io.OutputStreamWriter;
-import java.nio.file.Files;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-
-import com.codesphere.backend.util.WorkspacePaths;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/projects/{projectName}")
 public class ExecutionController {
 
+    private static final int MAX_HISTORY_PAGE = 100;
+    private static final long CANCEL_WAIT_MS = 2000;
+    private static final long KEEP_ALIVE_MS = 1000;
+
     private final ProjectRepository projectRepository;
     private final UserRepository userRepository;
+    private final ExecutionScheduler executionScheduler;
+    private final ExecutionCoalescer coalescer;
+    private final JudgeService judgeService;
     private final ExecutionRepository executionRepository;
+    private final ExecutionOutputStore outputStore;
+    private final ExecutionJobFactory jobFactory;
+    private final ExecutionOutputFiles outputFiles;
+    private final long syncTimeoutSeconds;
+    private final ScheduledExecutorService keepAlive = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "execute-keepalive");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public ExecutionController(ProjectRepository projectRepository,
                                UserRepository userRepository,
-                               ExecutionRepository executionRepository) {
+                               ExecutionScheduler executionScheduler,
+                               ExecutionCoalescer coalescer,
+                               JudgeService judgeService,
+                               ExecutionRepository executionRepository,
+                               ExecutionOutputStore outputStore,
+                               ExecutionJobFactory jobFactory,
+                               ExecutionOutputFiles outputFiles,
+                               @Value("${codesphere.execution.sync-timeout-seconds:60}") long syncTimeoutSeconds) {
         this.projectRepository = projectRepository;
         this.userRepository = userRepository;
+        this.executionScheduler = executionScheduler;
+        this.coalescer = coalescer;
+        this.judgeService = judgeService;
         this.executionRepository = executionRepository;
+        this.outputStore = outputStore;
+        this.jobFactory = jobFactory;
+        this.outputFiles = outputFiles;
+        this.syncTimeoutSeconds = syncTimeoutSeconds;
     }
 
+    /**
+     * Synchronous run: queues the job and answers once it finishes.
+     *
+     * <p>A servlet container only notices a closed connection when it writes
+     * to it. Runs that finish within {@value #KEEP_ALIVE_MS} ms are answered
+     * as before; longer ones get a 200 right away and a space every
+     * {@value #KEEP_ALIVE_MS} ms ahead of the JSON body, which keeps the body
+     * valid JSON and lets a client that went away cancel its run. Those
+     * responses report failures in the body only.
+     */
     @PostMapping("/execute")
-    public ResponseEntity<ApiResponse<String>> executeCode(
+    public ResponseEntity<ResponseBodyEmitter> executeCode(
             @PathVariable String projectName,
-            @Valid @RequestBody ExecuteRequest request) {
+            @Valid @RequestBody ExecuteRequest request) throws IOException {
 
-        if (!WorkspacePaths.isSafeProjectName(projectName)) {
-            return ResponseEntity.badRequest()
-                .body(new ApiResponse<>(false, "Invalid project name", null));
-        }
-        if (request == null || request.getFilename() == null || request.getFilename().isBlank()) {
-            return ResponseEntity.badRequest()
-                .body(new ApiResponse<>(false, "Filename is required", null));
-        }
-        if (!WorkspacePaths.isSafeFilename(request.getFilename())) {
-            return ResponseEntity.badRequest()
-                .body(new ApiResponse<>(false, "Invalid filename", null));
+        ExecutionJob job = coalescer.submit(createJob(projectName, request), request.isDeterministic());
+        // Several of the paths below can fire for one disconnect; this request lets go of the job once.
+        Runnable release = coalescer.releaseOnce(job);
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(TimeUnit.SECONDS.toMillis(syncTimeoutSeconds));
+
+        try {
+            job.getCompletion().get(KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Still running, or failed; both are reported below.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release.run();
         }
-        if (request.getInput() != null
-            && request.getInput().getBytes().length > WorkspacePaths.MAX_CONTENT_BYTES) {
-            return ResponseEntity.badRequest()
-                .body(new ApiResponse<>(false, "Input too large", null));
+        if (job.isFinished()) {
+            ResponseEntity<ApiResponse<?>> response = executionResponse(job);
+            emitter.send(response.getBody(), MediaType.APPLICATION_JSON);
+            emitter.complete();
+            return ResponseEntity.status(response.getStatusCode())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(emitter);
         }
 
-        // 1️⃣ Get logged-in user
-        String username = SecurityContextHolder
-                .getContext()
-                .getAuthentication()
-                .getName();
-
-        UserEntity user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        // 2️⃣ Validate project ownership
-        ProjectEntity project = projectRepository
-                .findByNameAndUser(projectName, user)
-                .orElseThrow(() -> new RuntimeException("Project not found"));
-
-        try {
-            Path projectPath = WorkspacePaths.projectDir(user, projectName);
-            Path filePath = projectPath.resolve(request.getFilename()).normalize();
-            if (!filePath.startsWith(projectPath)) {
-                return ResponseEntity.badRequest()
-                    .body(new ApiResponse<>(false, "Invalid filename path", null));
-            }
-            if (!Files.exists(filePath)) {
-                return ResponseEntity.status(404)
-                    .body(new ApiResponse<>(false, "File not found", null));
+        ScheduledFuture<?> heartbeat = keepAlive.scheduleWithFixedDelay(() -> {
+            try {
+                emitter.send(" ", MediaType.TEXT_PLAIN);
+            } catch (IOException e) {
+                // The client is gone; free the worker unless another request waits for the same run.
+                release.run();
+                throw new CancellationException();
             }
+            // IllegalStateException once the response is complete also ends the heartbeat.
+        }, 0, KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+
+        emitter.onError(error -> release.run());
+        emitter.onTimeout(() -> {
+            // The job keeps running; the client can poll it by id.
+            heartbeat.cancel(false);
+            sendAndComplete(emitter, new ApiResponse<>(false, "Execution is still pending", job.getId()));
+        });
+        job.getCompletion().whenComplete((result, error) -> {
+            heartbeat.cancel(false);
+            sendAndComplete(emitter, executionResponse(job).getBody());
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(emitter);
+    }
 
-            String extension = getExtension(request.getFilename());
-            ExecutionResult result;
-
-            if ("java".equals(extension)) {
-                result = executeJava(projectPath, filePath, request.getInput());
-            } else if ("py".equals(extension)) {
-                result = executePython(filePath, request.getInput());
-            } else if ("js".equals(extension)) {
-                result = executeNode(filePath, request.getInput());
-            } else if ("c".equals(extension)) {
-                result = executeC(projectPath, filePath, request.getInput());
-            } else if ("cpp".equals(extension) || "cc".equals(extension) || "cxx".equals(extension)) {
-                result = executeCpp(projectPath, filePath, request.getInput());
-            } else if ("go".equals(extension)) {
-                result = executeGo(projectPath, filePath, request.getInput());
-            } else if ("cs".equals(extension)) {
-                result = executeCSharp(projectPath, filePath, request.getInput());
-            } else if ("html".equals(extension) || "css".equals(extension)) {
-                return ResponseEntity.badRequest()
-                    .body(new ApiResponse<>(false, "Use frontend preview for web files", null));
-            } else {
-                return ResponseEntity.badRequest()
-                    .body(new ApiResponse<>(false, "Unsupported file type", null));
-            }
+    /**
+     * Asynchronous run: returns the job id right away; poll {@link #getExecution}.
+     */
+    @PostMapping("/executions")
+    public ResponseEntity<ApiResponse<ExecutionJobResponse>> submitExecution(
+            @PathVariable String projectName,
+            @Valid @RequestBody ExecuteRequest request) {
+
+        ExecutionJob job = coalescer.submit(createJob(projectName, request), request.isDeterministic());
+        return ResponseEntity.accepted()
+                .body(new ApiResponse<>(true, "Execution queued", ExecutionJobResponse.from(job)));
+    }
 
-            // 3️⃣ Store execution result in DB
-            ExecutionEntity execution = new ExecutionEntity();
-            execution.setProject(project);
-            execution.setFilename(request.getFilename());
-            execution.setStatus(result.getStatus());
-            execution.setOutput(result.getOutput());
-            execution.setError(result.getError());
+    /**
+     * Recorded runs of the project, newest first. Pages are keyset-based:
+     * {@code nextCursor} names the last row returned, so every page costs
+     * the same no matter how deep into the history it is.
+     */
+    @GetMapping("/executions")
+    public ResponseEntity<ApiResponse<ExecutionHistoryResponse>> listExecutions(
+            @PathVariable String projectName,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
 
-            executionRepository.save(execution);
+        if (limit < 1 || limit > MAX_HISTORY_PAGE) {
+            throw new ExecutionRequestException(400, "Limit must be between 1 and " + MAX_HISTORY_PAGE);
+        }
+        ProjectEntity project = findOwnProject(projectName);
+
+        // One extra row tells whether another page follows.
+        Limit fetch = Limit.of(limit + 1);
+        List<ExecutionSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = executionRepository.findHistory(project.getId(), fetch);
+        } else {
+            HistoryCursor after = HistoryCursor.decode(cursor);
+            rows = executionRepository.findHistoryBefore(project.getId(), after.executedAt(), after.id(), fetch);
+        }
 
-            return ResponseEntity.ok(
-                    new ApiResponse<>(
-                            true,
-                            "Execution completed",
-                            "SUCCESS".equals(result.getStatus())
-                                    ? result.getOutput()
-                                    : result.getError()
-                    )
-            );
-
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                    .body(new ApiResponse<>(false, "Execution failed: " + e.getMessage(), null));
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            ExecutionSummary last = rows.get(limit - 1);
+            nextCursor = new HistoryCursor(last.getExecutedAt(), last.getId()).encode();
         }
+        return ResponseEntity.ok(new ApiResponse<>(true, "Executions fetched",
+                new ExecutionHistoryResponse(rows, nextCursor)));
     }
 
-    // ---------------- helpers ----------------
+    @GetMapping("/executions/{id}")
+    public ResponseEntity<ApiResponse<ExecutionJobResponse>> getExecution(
+            @PathVariable String projectName,
+            @PathVariable String id) {
 
-    private String getExtension(String filename) {
-        int index = filename.lastIndexOf('.');
-        return index == -1 ? "" : filename.substring(index + 1).toLowerCase();
+        ExecutionJob job = findOwnJob(projectName, id);
+        return ResponseEntity.ok(
+                new ApiResponse<>(true, "Execution fetched", ExecutionJobResponse.from(job)));
     }
 
-    private ExecutionResult executeJava(Path projectPath,
-                                        Path filePath,
-                                        String input) throws Exception {
-        if (!commandAvailable("javac")) {
-            return new ExecutionResult(null, "javac is not installed on server", "ERROR");
-        }
-        if (!commandAvailable("java")) {
-            return new ExecutionResult(null, "java runtime is not installed on server", "ERROR");
-        }
-
-        Process compile = new ProcessBuilder(
-                "javac", filePath.getFileName().toString())
-                .directory(projectPath.toFile())
-                .redirectErrorStream(true)
-                .start();
+    /**
+     * Cancels a queued or running job. Running programs are killed together
+     * with every process they started.
+     */
+    @DeleteMapping("/executions/{id}")
+    public ResponseEntity<ApiResponse<ExecutionJobResponse>> cancelExecution(
+            @PathVariable String projectName,
+            @PathVariable String id) {
 
-        boolean compiled = compile.waitFor(5, TimeUnit.SECONDS);
-        if (!compiled) {
-            compile.destroyForcibly();
-            return new ExecutionResult(null, "Compilation timed out", "TIMEOUT");
+        ExecutionJob job = findOwnJob(projectName, id);
+        if (!executionScheduler.cancel(job)) {
+            return ResponseEntity.status(409)
+                    .body(new ApiResponse<>(false, "Execution already finished", ExecutionJobResponse.from(job)));
         }
-        String compileOutput = new String(compile.getInputStream().readAllBytes());
-        if (compile.exitValue() != 0) {
-            return new ExecutionResult(null, compileOutput, "ERROR");
+        try {
+            // The kill is immediate; wait briefly so the response shows the final state.
+            job.getCompletion().get(CANCEL_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Still winding down, or it failed on its own; report what we have.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        return ResponseEntity.ok(
+                new ApiResponse<>(true, "Execution cancelled", ExecutionJobResponse.from(job)));
+    }
 
-        String className = filePath.getFileName().toString().replace(".java", "");
-        Process run = new ProcessBuilder("java", className)
-                .directory(projectPath.toFile())
-                .redirectErrorStream(true)
-                .start();
-
-        if (input != null && !input.isBlank()) {
-            try (BufferedWriter writer =
-                         new BufferedWriter(new OutputStreamWriter(run.getOutputStream()))) {
-                writer.write(input);
-                writer.flush();
+    /**
+     * Server-Sent Events stream of a job: {@code output} events carry chunks
+     * as the program prints them, then a single {@code result} event carries
+     * the final status before the stream closes.
+     */
+    @GetMapping(value = "/executions/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamExecution(
+            @PathVariable String projectName,
+            @PathVariable String id) {
+
+        ExecutionJob job = findOwnJob(projectName, id);
+        SseEmitter emitter = new SseEmitter(TimeUnit.SECONDS.toMillis(syncTimeoutSeconds));
+
+        Consumer<String> listener = chunk -> {
+            try {
+                emitter.send(SseEmitter.event()
+                        .name("output")
+                        .data(Map.of("chunk", chunk), MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-        }
+        };
+        emitter.onCompletion(() -> job.unsubscribe(listener));
+        emitter.onTimeout(() -> job.unsubscribe(listener));
+        emitter.onError(error -> job.unsubscribe(listener));
 
-        boolean finished = run.waitFor(5, TimeUnit.SECONDS);
-        if (!finished) {
-            run.destroyForcibly();
-            return new ExecutionResult(null, "Execution timed out", "TIMEOUT");
+        try {
+            job.subscribe(listener);
+        } catch (UncheckedIOException e) {
+            return emitter;
         }
 
-        String runOutput = new String(run.getInputStream().readAllBytes());
-        return new ExecutionResult(runOutput, null, "SUCCESS");
+        job.getCompletion().whenComplete((result, error) -> {
+            job.unsubscribe(listener);
+            try {
+                emitter.send(SseEmitter.event()
+                        .name("result")
+                        .data(ExecutionJobResponse.from(job), MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
     }
 
-    private ExecutionResult executePython(Path filePath, String input) throws Exception {
-        if (!commandAvailable("python3")) {
-            return new ExecutionResult(null, "python3 is not installed on server", "ERROR");
-        }
-
-        Process run = new ProcessBuilder("python3", filePath.toString())
-                .redirectErrorStream(true)
-                .start();
+    /**
+     * The stdout file of a run made with {@code outputToFile}, available as
+     * long as the job itself. Streamed from disk.
+     */
+    @GetMapping("/executions/{id}/output-file")
+    public ResponseEntity<Resource> downloadOutputFile(
+            @PathVariable String projectName,
+            @PathVariable String id) {
 
-        if (input != null && !input.isBlank()) {
-            try (BufferedWriter writer =
-                         new BufferedWriter(new OutputStreamWriter(run.getOutputStream()))) {
-                writer.write(input);
-                writer.flush();
-            }
+        ExecutionJob job = findOwnJob(projectName, id);
+        if (!job.isOutputToFile() || !job.isFinished()) {
+            throw new ExecutionRequestException(404, "Output file not found");
         }
+        Path file = outputFiles.find(job.getId())
+                .orElseThrow(() -> new ExecutionRequestException(404, "Output file not found"));
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_PLAIN)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(job.getFilename() + ".out").build().toString())
+                .body(new FileSystemResource(file));
+    }
 
-        boolean finished = run.waitFor(5, TimeUnit.SECONDS);
-        if (!finished) {
-            run.destroyForcibly();
-            return new ExecutionResult(null, "Execution timed out", "TIMEOUT");
-        }
+    /**
+     * Full output of a recorded run. Stored records only keep a preview of
+     * long output; the rest is read back from the blob store here.
+     */
+    @GetMapping("/executions/records/{recordId}/output")
+    public ResponseEntity<ApiResponse<ExecutionOutputResponse>> getRecordedOutput(
+            @PathVariable String projectName,
+            @PathVariable Long recordId) {
 
-        String output = new String(run.getInputStream().readAllBytes());
+        ProjectEntity project = findOwnProject(projectName);
+        ExecutionEntity record = executionRepository.findByIdAndProjectId(recordId, project.getId())
+                .orElseThrow(() -> new ExecutionRequestException(404, "Execution not found"));
 
-        if (run.exitValue() != 0) {
-            return new ExecutionResult(null, output, "ERROR");
+        try {
+            return ResponseEntity.ok(new ApiResponse<>(true, "Execution output fetched",
+                    new ExecutionOutputResponse(record.getId(),
+                            outputStore.loadOutput(record), outputStore.loadError(record),
+                            record.getOutputBytes(), record.getErrorBytes())));
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError()
+                    .body(new ApiResponse<>(false, "Could not read execution output: " + e.getMessage(), null));
         }
-
-        return new ExecutionResult(output, null, "SUCCESS");
     }
 
-    private ExecutionResult executeNode(Path filePath, String input) throws Exception {
-        if (!commandAvailable("node")) {
-            return new ExecutionResult(null, "Node.js is not installed on server", "ERROR");
-        }
-        Process run = new ProcessBuilder("node", filePath.toString())
-                .redirectErrorStream(true)
-                .start();
-
-        if (input != null && !input.isBlank()) {
-            try (BufferedWriter writer =
-                         new BufferedWriter(new OutputStreamWriter(run.getOutputStream()))) {
-                writer.write(input);
-                writer.flush();
+    /**
+     * Judge run: compiles the file once and checks it against every test
+     * case, returning a verdict per case. The compile and the cases are
+     * queued on the scheduler; the request thread is released meanwhile and
+     * a client that goes away stops the cases still waiting.
+     */
+    @PostMapping("/judge")
+    public DeferredResult<ResponseEntity<ApiResponse<JudgeResponse>>> judge(
+            @PathVariable String projectName,
+            @Valid @RequestBody JudgeRequest request) {
+
+        ExecutionJob job = createJob(projectName, request.getFilename(), null);
+        CompletableFuture<JudgeResponse> batch = judgeService.judge(job, request.getCases());
+
+        DeferredResult<ResponseEntity<ApiResponse<JudgeResponse>>> deferred = new DeferredResult<>(
+                TimeUnit.SECONDS.toMillis(syncTimeoutSeconds) + JudgeService.totalTimeLimitMs(request.getCases()));
+        deferred.onTimeout(() -> {
+            batch.cancel(false);
+            deferred.setResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                    .body(new ApiResponse<>(false, "Judge timed out waiting for a worker", null)));
+        });
+        deferred.onError(error -> batch.cancel(false));
+        batch.whenComplete((response, error) -> {
+            if (error == null) {
+                deferred.setResult(ResponseEntity.ok(new ApiResponse<>(true, "Judge completed", response)));
+            } else if (error instanceof ExecutionRejectedException) {
+                // Answered like any other refused run: 503 with Retry-After.
+                deferred.setErrorResult(error);
+            } else if (!(error instanceof CancellationException)) {
+                deferred.setResult(ResponseEntity.internalServerError()
+                        .body(new ApiResponse<>(false, "Judge failed: " + error.getMessage(), null)));
             }
-        }
-
-        boolean finished = run.waitFor(5, TimeUnit.SECONDS);
-        if (!finished) {
-            run.destroyForcibly();
-            return new ExecutionResult(null, "Execution timed out", "TIMEOUT");
-        }
+        });
+        return deferred;
+    }
 
-        String output = new String(run.getInputStream().readAllBytes());
-        if (run.exitValue() != 0) {
-            return new ExecutionResult(null, output, "ERROR");
-        }
-        return new ExecutionResult(output, null, "SUCCESS");
+    @PreDestroy
+    public void shutdown() {
+        keepAlive.shutdownNow();
     }
 
-    private ExecutionResult executeC(Path projectPath, Path filePath, String input) throws Exception {
-        if (!commandAvailable("gcc")) {
-            return new ExecutionResult(null, "gcc is not installed on server", "ERROR");
+    // ---------------- helpers ----------------
+
+    /**
+     * The result of a finished job. Runs with {@code outputToFile} answer with
+     * the whole job, which carries the output file's size and download link.
+     */
+    private static ResponseEntity<ApiResponse<?>> executionResponse(ExecutionJob job) {
+        ExecutionResult result = job.getResult();
+        if (result == null) {
+            Throwable failure = job.getFailure();
+            return ResponseEntity.internalServerError()
+                    .body(new ApiResponse<>(false, "Execution failed: "
+                            + (failure == null ? "unknown error" : failure.getMessage()), null));
         }
-        String baseName = stripExtension(filePath.getFileName().toString());
-        String outputName = baseName.isEmpty() ? "a.out" : baseName;
-        Process compile = new ProcessBuilder("gcc", filePath.getFileName().toString(), "-o", outputName)
-                .directory(projectPath.toFile())
-                .redirectErrorStream(true)
-                .start();
-        compile.waitFor(5, TimeUnit.SECONDS);
-        String compileOutput = new String(compile.getInputStream().readAllBytes());
-        if (compile.exitValue() != 0) {
-            return new ExecutionResult(null, compileOutput, "ERROR");
+        if (job.isOutputToFile()) {
+            return ResponseEntity.ok(
+                    new ApiResponse<>(true, "Execution completed", ExecutionJobResponse.from(job)));
         }
-        Process run = new ProcessBuilder("./" + outputName)
-                .directory(projectPath.toFile())
-                .redirectErrorStream(true)
-                .start();
-        return runWithInput(run, input);
+        return ResponseEntity.ok(
+                new ApiResponse<>(
+                        true,
+                        "Execution completed",
+                        "SUCCESS".equals(result.getStatus())
+                                ? result.getOutput()
+                                : result.getError()
+                )
+        );
     }
 
-    private ExecutionResult executeCpp(Path projectPath, Path filePath, String input) throws Exception {
-        if (!commandAvailable("g++")) {
-            return new ExecutionResult(null, "g++ is not installed on server", "ERROR");
-        }
-        String baseName = stripExtension(filePath.getFileName().toString());
-        String outputName = baseName.isEmpty() ? "a.out" : baseName;
-        Process compile = new ProcessBuilder("g++", filePath.getFileName().toString(), "-o", outputName)
-                .directory(projectPath.toFile())
-                .redirectErrorStream(true)
-                .start();
-        compile.waitFor(5, TimeUnit.SECONDS);
-        String compileOutput = new String(compile.getInputStream().readAllBytes());
-        if (compile.exitValue() != 0) {
-            return new ExecutionResult(null, compileOutput, "ERROR");
+    private static void sendAndComplete(ResponseBodyEmitter emitter, ApiResponse<?> body) {
+        try {
+            emitter.send(body, MediaType.APPLICATION_JSON);
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
         }
-        Process run = new ProcessBuilder("./" + outputName)
-                .directory(projectPath.toFile())
-                .redirectErrorStream(true)
-                .start();
-        return runWithInput(run, input);
     }
 
-    private ExecutionResult executeGo(Path projectPath, Path filePath, String input) throws Exception {
-        if (!commandAvailable("go")) {
-            return new ExecutionResult(null, "Go is not installed on server", "ERROR");
-        }
-        Process run = new ProcessBuilder("go", "run", filePath.getFileName().toString())
-                .directory(projectPath.toFile())
-                .redirectErrorStream(true)
-                .start();
-        return runWithInput(run, input);
+    private ExecutionJob createJob(String projectName, ExecuteRequest request) {
+        return jobFactory.create(currentUsername(), projectName, request.getFilename(), request.getInput(),
+                request.getInputFile(), request.isOutputToFile());
     }
 
-    private ExecutionResult executeCSharp(Path projectPath, Path filePath, String input) throws Exception {
-        if (commandAvailable("mcs")) {
-            String baseName = stripExtension(filePath.getFileName().toString());
-            String exeName = baseName.isEmpty() ? "Program.exe" : baseName + ".exe";
-            Process compile = new ProcessBuilder("mcs", filePath.getFileName().toString(), "-out:" + exeName)
-                    .directory(projectPath.toFile())
-                    .redirectErrorStream(true)
-                    .start();
-            compile.waitFor(5, TimeUnit.SECONDS);
-            String compileOutput = new String(compile.getInputStream().readAllBytes());
-            if (compile.exitValue() != 0) {
-                return new ExecutionResult(null, compileOutput, "ERROR");
-            }
-            if (!commandAvailable("mono")) {
-                return new ExecutionResult(null, "mono is not installed on server", "ERROR");
-            }
-            Process run = new ProcessBuilder("mono", exeName)
-                    .directory(projectPath.toFile())
-                    .redirectErrorStream(true)
-                    .start();
-            return runWithInput(run, input);
-        }
-        if (commandAvailable("csc")) {
-            String baseName = stripExtension(filePath.getFileName().toString());
-            String exeName = baseName.isEmpty() ? "Program.exe" : baseName + ".exe";
-            Process compile = new ProcessBuilder("csc", filePath.getFileName().toString(), "-out:" + exeName)
-                    .directory(projectPath.toFile())
-                    .redirectErrorStream(true)
-                    .start();
-            compile.waitFor(5, TimeUnit.SECONDS);
-            String compileOutput = new String(compile.getInputStream().readAllBytes());
-            if (compile.exitValue() != 0) {
-                return new ExecutionResult(null, compileOutput, "ERROR");
-            }
-            if (commandAvailable("mono")) {
-                Process run = new ProcessBuilder("mono", exeName)
-                        .directory(projectPath.toFile())
-                        .redirectErrorStream(true)
-                        .start();
-                return runWithInput(run, input);
-            }
-            if (commandAvailable("dotnet")) {
-                Process run = new ProcessBuilder("dotnet", exeName)
-                        .directory(projectPath.toFile())
-                        .redirectErrorStream(true)
-                        .start();
-                return runWithInput(run, input);
-            }
-            return new ExecutionResult(null, "C# runtime not installed on server", "ERROR");
-        }
-        return new ExecutionResult(null, "C# compiler not installed on server", "ERROR");
+    private ExecutionJob createJob(String projectName, String filename, String input) {
+        return jobFactory.create(currentUsername(), projectName, filename, input);
     }
 
-    private ExecutionResult runWithInput(Process run, String input) throws Exception {
-        if (input != null && !input.isBlank()) {
-            try (BufferedWriter writer =
-                         new BufferedWriter(new OutputStreamWriter(run.getOutputStream()))) {
-                writer.write(input);
-                writer.flush();
-            }
-        }
-        boolean finished = run.waitFor(5, TimeUnit.SECONDS);
-        if (!finished) {
-            run.destroyForcibly();
-            return new ExecutionResult(null, "Execution timed out", "TIMEOUT");
-        }
-        String output = new String(run.getInputStream().readAllBytes());
-        if (run.exitValue() != 0) {
-            return new ExecutionResult(null, output, "ERROR");
-        }
-        return new ExecutionResult(output, null, "SUCCESS");
+    private ProjectEntity findOwnProject(String projectName) {
+        UserEntity user = userRepository.findByUsername(currentUsername())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return projectRepository.findByNameAndUser(projectName, user)
+                .orElseThrow(() -> new ExecutionRequestException(404, "Project not found"));
     }
 
-    private boolean commandAvailable(String command) {
-        try {
-            Process proc = new ProcessBuilder("sh", "-c", "command -v " + command)
-                    .redirectErrorStream(true)
-                    .start();
-            boolean finished = proc.waitFor(1, TimeUnit.SECONDS);
-            return finished && proc.exitValue() == 0;
-        } catch (Exception e) {
-            return false;
-        }
+    private ExecutionJob findOwnJob(String projectName, String id) {
+        return executionScheduler.find(id)
+                .filter(job -> job.getUsername().equals(currentUsername()))
+                .filter(job -> job.getProjectName().equals(projectName))
+                .orElseThrow(() -> new ExecutionRequestException(404, "Execution not found"));
     }
 
-    private String stripExtension(String filename) {
-        int idx = filename.lastIndexOf('.');
-        return idx == -1 ? filename : filename.substring(0, idx);
+    private String currentUsername() {
+        return SecurityContextHolder
+                .getContext()
+                .getAuthentication()
+                .getName();
+    }
+
+    /** Position in the history: the (executedAt, id) of the last row of a page. */
+    private record HistoryCursor(LocalDateTime executedAt, Long id) {
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((executedAt + "_" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static HistoryCursor decode(String cursor) {
+            try {
+                String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int split = value.lastIndexOf('_');
+                return new HistoryCursor(LocalDateTime.parse(value.substring(0, split)),
+                        Long.valueOf(value.substring(split + 1)));
+            } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+                throw new ExecutionRequestException(400, "Invalid cursor");
+            }
+        }
     }
 }
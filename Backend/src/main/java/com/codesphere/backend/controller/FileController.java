@@ -5,6 +5,7 @@ import com.codesphere.backend.dto.FileRequest;
 import com.codesphere.backend.entity.FileEntity;
 import com.codesphere.backend.entity.ProjectEntity;
 import com.codesphere.backend.entity.UserEntity;
+import com.codesphere.backend.execution.SpeculativeBuilder;
 import com.codesphere.backend.repository.FileRepository;
 import com.codesphere.backend.repository.ProjectRepository;
 import com.codesphere.backend.repository.UserRepository;
@@ -28,13 +29,16 @@ public class FileController {
     private final ProjectRepository projectRepository;
     private final UserRepository userRepository;
     private final FileRepository fileRepository;
+    private final SpeculativeBuilder speculativeBuilder;
 
     public FileController(ProjectRepository projectRepository,
                           UserRepository userRepository,
-                          FileRepository fileRepository) {
+                          FileRepository fileRepository,
+                          SpeculativeBuilder speculativeBuilder) {
         this.projectRepository = projectRepository;
         this.userRepository = userRepository;
         this.fileRepository = fileRepository;
+        this.speculativeBuilder = speculativeBuilder;
     }
 
     @PutMapping
@@ -123,6 +127,9 @@ public class FileController {
                 fileRepository.save(existing);
             }
 
+            // 6️⃣ Warm the build cache before the user presses Run
+            speculativeBuilder.onSave(projectPath, request.getFilename(), project.getMainFile());
+
             return ResponseEntity.ok(
                     new ApiResponse<>(true, "File saved successfully", request.getFilename())
             );
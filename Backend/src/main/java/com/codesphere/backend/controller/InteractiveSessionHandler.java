@@ -0,0 +1,139 @@
+package com.codesphere.backend.controller;
+
+import com.codesphere.backend.execution.ExecutionJob;
+import com.codesphere.backend.execution.ExecutionJobFactory;
+import com.codesphere.backend.execution.ExecutionRejectedException;
+import com.codesphere.backend.execution.InteractiveSessions;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * WebSocket endpoint for interactive runs at
+ * {@code /api/projects/{project}/session?filename=...}. Once the program is
+ * running the client sends {@code {"type":"stdin","data":"..."}} frames and
+ * {@code {"type":"eof"}} to close stdin; the server sends {@code started},
+ * {@code output}, {@code error} and a final {@code exit} frame, then closes.
+ */
+@Component
+public class InteractiveSessionHandler extends TextWebSocketHandler {
+
+    public static final String PATH = "/api/projects/{projectName}/session";
+
+    private static final String SESSION = "interactiveSession";
+    private static final AntPathMatcher PATHS = new AntPathMatcher();
+
+    private final ExecutionJobFactory jobFactory;
+    private final InteractiveSessions sessions;
+    private final ObjectMapper objectMapper;
+
+    public InteractiveSessionHandler(ExecutionJobFactory jobFactory,
+                                     InteractiveSessions sessions,
+                                     ObjectMapper objectMapper) {
+        this.jobFactory = jobFactory;
+        this.sessions = sessions;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession socket) throws IOException {
+        if (socket.getPrincipal() == null) {
+            reject(socket, CloseStatus.POLICY_VIOLATION, "Unauthorized");
+            return;
+        }
+        String projectName = PATHS.extractUriTemplateVariables(PATH, socket.getUri().getPath()).get("projectName");
+        String filename = UriComponentsBuilder.fromUri(socket.getUri()).build()
+                .getQueryParams().getFirst("filename");
+        try {
+            ExecutionJob job = jobFactory.create(socket.getPrincipal().getName(), projectName, filename, null);
+            socket.getAttributes().put(SESSION, sessions.open(job, new Peer(socket)));
+        } catch (ExecutionRejectedException e) {
+            reject(socket, CloseStatus.SERVICE_OVERLOAD, e.getMessage());
+        } catch (RuntimeException e) {
+            // ExecutionRequestException, or "Project not found" from the job factory.
+            reject(socket, CloseStatus.POLICY_VIOLATION, e.getMessage());
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession socket, TextMessage message) throws IOException {
+        InteractiveSessions.Session session = (InteractiveSessions.Session) socket.getAttributes().get(SESSION);
+        if (session == null) {
+            return;
+        }
+        JsonNode frame;
+        try {
+            frame = objectMapper.readTree(message.getPayload());
+        } catch (JsonProcessingException e) {
+            frame = null;
+        }
+        String type = frame == null ? null : frame.path("type").asText(null);
+        if ("stdin".equals(type) && frame.path("data").isTextual()) {
+            session.write(frame.path("data").asText());
+        } else if ("eof".equals(type)) {
+            session.closeStdin();
+        } else {
+            synchronized (socket) {
+                socket.sendMessage(new TextMessage(objectMapper.writeValueAsString(
+                        Map.of("type", "error", "message", "Unknown frame"))));
+            }
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession socket, CloseStatus status) {
+        InteractiveSessions.Session session = (InteractiveSessions.Session) socket.getAttributes().get(SESSION);
+        if (session != null) {
+            session.disconnect();
+        }
+    }
+
+    private void reject(WebSocketSession socket, CloseStatus status, String message) throws IOException {
+        socket.sendMessage(new TextMessage(objectMapper.writeValueAsString(
+                Map.of("type", "error", "message", message == null ? "Could not start session" : message))));
+        socket.close(status.withReason(message == null ? "" : truncate(message)));
+    }
+
+    /** Close reasons are limited to 123 bytes. */
+    private static String truncate(String reason) {
+        return reason.length() > 100 ? reason.substring(0, 100) : reason;
+    }
+
+    /** Sends frames as JSON; sends may come from several threads, the container allows one at a time. */
+    private final class Peer implements InteractiveSessions.Peer {
+
+        private final WebSocketSession socket;
+
+        private Peer(WebSocketSession socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void send(Map<String, Object> frame) throws IOException {
+            TextMessage message = new TextMessage(objectMapper.writeValueAsString(frame));
+            synchronized (socket) {
+                socket.sendMessage(message);
+            }
+        }
+
+        @Override
+        public void close(String reason) {
+            try {
+                socket.close(CloseStatus.NORMAL.withReason(reason));
+            } catch (IOException ignored) {
+                // Already closed by the client.
+            }
+        }
+    }
+}
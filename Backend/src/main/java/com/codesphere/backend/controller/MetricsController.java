@@ -0,0 +1,38 @@
+package com.codesphere.backend.controller;
+
+import com.codesphere.backend.dto.ApiResponse;
+import com.codesphere.backend.execution.ExecutionScheduler;
+import com.codesphere.backend.metrics.MetricsSource;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+public class MetricsController {
+
+    private final List<MetricsSource> sources;
+    private final ExecutionScheduler scheduler;
+
+    public MetricsController(List<MetricsSource> sources, ExecutionScheduler scheduler) {
+        this.sources = sources;
+        this.scheduler = scheduler;
+    }
+
+    @GetMapping("/api/metrics")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (MetricsSource source : sources) {
+            metrics.put(source.metricsName(), source.metricsSnapshot());
+        }
+        // Per-user figures only for the caller.
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        scheduler.queueWaitOf(username).ifPresent(wait -> metrics.put("myQueueWait", wait));
+        return ResponseEntity.ok(new ApiResponse<>(true, "Metrics fetched", metrics));
+    }
+}
@@ -5,7 +5,11 @@ import com.codesphere.backend.dto.ProjectRequest;
 import com.codesphere.backend.dto.RunConfigRequest;
 import com.codesphere.backend.entity.ProjectEntity;
 import com.codesphere.backend.entity.UserEntity;
+import com.codesphere.backend.execution.ExecutionRecordWriter;
+import com.codesphere.backend.execution.JavaProjectBuilder;
+import com.codesphere.backend.execution.NativeProjectBuilder;
 import com.codesphere.backend.repository.ExecutionRepository;
+import com.codesphere.backend.repository.ExecutionRollupRepository;
 import com.codesphere.backend.repository.FileRepository;
 import com.codesphere.backend.repository.ProjectRepository;
 import com.codesphere.backend.repository.UserRepository;
@@ -37,16 +41,28 @@ public class ProjectController {
     private final UserRepository userRepository;
     private final FileRepository fileRepository;
     private final ExecutionRepository executionRepository;
+    private final ExecutionRollupRepository rollupRepository;
+    private final NativeProjectBuilder nativeProjects;
+    private final JavaProjectBuilder javaProjects;
+    private final ExecutionRecordWriter recordWriter;
 
 
     public ProjectController(ProjectRepository projectRepository,
                              UserRepository userRepository,
                              FileRepository fileRepository,
-                             ExecutionRepository executionRepository) {
+                             ExecutionRepository executionRepository,
+                             ExecutionRollupRepository rollupRepository,
+                             NativeProjectBuilder nativeProjects,
+                             JavaProjectBuilder javaProjects,
+                             ExecutionRecordWriter recordWriter) {
         this.projectRepository = projectRepository;
         this.userRepository = userRepository;
         this.fileRepository = fileRepository;
         this.executionRepository = executionRepository;
+        this.rollupRepository = rollupRepository;
+        this.nativeProjects = nativeProjects;
+        this.javaProjects = javaProjects;
+        this.recordWriter = recordWriter;
     }
 
     @PostMapping
@@ -142,7 +158,9 @@ public class ProjectController {
 
         try {
             // Delete related DB records first (avoid FK issues)
+            recordWriter.flush();
             executionRepository.deleteByProject(project);
+            rollupRepository.deleteByProject(project);
             fileRepository.deleteByProject(project);
             projectRepository.delete(project);
 
@@ -150,6 +168,8 @@ public class ProjectController {
             try {
                 // Delete files on disk
                 Path projectPath = WorkspacePaths.projectDir(user, projectName);
+                nativeProjects.discard(projectPath);
+                javaProjects.discard(projectPath);
                 if (Files.exists(projectPath)) {
                     Files.walkFileTree(projectPath, new SimpleFileVisitor<Path>() {
                         @Override
@@ -0,0 +1,47 @@
+package com.codesphere.backend.controller;
+
+import com.codesphere.backend.dto.ApiResponse;
+import com.codesphere.backend.execution.ExecutionService;
+import com.codesphere.backend.execution.ToolchainRegistry;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+public class ToolchainController {
+
+    private final ToolchainRegistry toolchains;
+    private final ExecutionService executionService;
+
+    public ToolchainController(ToolchainRegistry toolchains, ExecutionService executionService) {
+        this.toolchains = toolchains;
+        this.executionService = executionService;
+    }
+
+    @GetMapping("/api/toolchains")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> toolchains() {
+        Map<String, Object> tools = new LinkedHashMap<>();
+        toolchains.all().forEach((name, toolchain) -> {
+            Map<String, String> tool = new LinkedHashMap<>();
+            tool.put("path", toolchain.getPath().toString());
+            tool.put("version", toolchain.getVersion());
+            tools.put(name, tool);
+        });
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("node", nodeName());
+        body.put("resolvedAt", toolchains.getResolvedAt());
+        body.put("languages", executionService.languageSupport());
+        body.put("tools", tools);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Toolchains fetched", body));
+    }
+
+    private static String nodeName() {
+        String host = System.getenv("HOSTNAME");
+        return host == null || host.isBlank() ? "local" : host;
+    }
+}
@@ -10,6 +10,10 @@ public class ExecuteRequest {
     private String filename;
     @Size(max = 1000000, message = "Input too large")
     private String input;
+    @Size(max = 180, message = "Input file must be 180 characters or less")
+    private String inputFile;
+    private boolean outputToFile;
+    private boolean deterministic;
 
     public String getFilename() {
         return filename;
@@ -18,4 +22,19 @@ public class ExecuteRequest {
     public String getInput() {
         return input;
     }
+
+    /** A workspace file to use as stdin instead of {@link #getInput()}. */
+    public String getInputFile() {
+        return inputFile;
+    }
+
+    /** Write stdout to a file that is downloaded separately instead of returning it. */
+    public boolean isOutputToFile() {
+        return outputToFile;
+    }
+
+    /** The program prints the same for the same input, so a recent identical run may be reused. */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
 }
@@ -0,0 +1,19 @@
+package com.codesphere.backend.dto;
+
+import java.util.List;
+
+public class ExecutionHistoryResponse {
+
+    private List<ExecutionSummary> items;
+    private String nextCursor;
+
+    public ExecutionHistoryResponse(List<ExecutionSummary> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ExecutionSummary> getItems() { return items; }
+
+    /** Pass as {@code cursor} to get the next page; {@code null} on the last page. */
+    public String getNextCursor() { return nextCursor; }
+}
@@ -0,0 +1,59 @@
+package com.codesphere.backend.dto;
+
+import com.codesphere.backend.execution.ExecutionJob;
+
+import java.time.Instant;
+
+public class ExecutionJobResponse {
+
+    private String id;
+    private String filename;
+    private String status;
+    private Instant submittedAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private long queueWaitMs;
+    private String output;
+    private String error;
+    private ResourceUsage usage;
+    private Long outputFileBytes;
+    private String outputFileUrl;
+
+    public static ExecutionJobResponse from(ExecutionJob job) {
+        ExecutionJobResponse response = new ExecutionJobResponse();
+        response.id = job.getId();
+        response.filename = job.getFilename();
+        response.status = job.getStatus();
+        response.submittedAt = job.getSubmittedAt();
+        response.startedAt = job.getStartedAt();
+        response.finishedAt = job.getFinishedAt();
+        response.queueWaitMs = job.getQueueWaitMs();
+        ExecutionResult result = job.getResult();
+        if (result != null) {
+            response.output = result.getOutput();
+            response.error = result.getError();
+            response.usage = result.getUsage();
+            if (result.getOutputFileBytes() != null) {
+                response.outputFileBytes = result.getOutputFileBytes();
+                response.outputFileUrl = "/api/projects/" + job.getProjectName()
+                        + "/executions/" + job.getId() + "/output-file";
+            }
+        } else if (job.getFailure() != null) {
+            response.error = "Execution failed: " + job.getFailure().getMessage();
+        }
+        return response;
+    }
+
+    public String getId() { return id; }
+    public String getFilename() { return filename; }
+    public String getStatus() { return status; }
+    public Instant getSubmittedAt() { return submittedAt; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public long getQueueWaitMs() { return queueWaitMs; }
+    public String getOutput() { return output; }
+    public String getError() { return error; }
+    public ResourceUsage getUsage() { return usage; }
+    public Long getOutputFileBytes() { return outputFileBytes; }
+    public String getOutputFileUrl() { return outputFileUrl; }
+}
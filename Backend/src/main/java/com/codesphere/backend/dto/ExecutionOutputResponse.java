@@ -0,0 +1,24 @@
+package com.codesphere.backend.dto;
+
+public class ExecutionOutputResponse {
+
+    private Long id;
+    private String output;
+    private String error;
+    private Long outputBytes;
+    private Long errorBytes;
+
+    public ExecutionOutputResponse(Long id, String output, String error, Long outputBytes, Long errorBytes) {
+        this.id = id;
+        this.output = output;
+        this.error = error;
+        this.outputBytes = outputBytes;
+        this.errorBytes = errorBytes;
+    }
+
+    public Long getId() { return id; }
+    public String getOutput() { return output; }
+    public String getError() { return error; }
+    public Long getOutputBytes() { return outputBytes; }
+    public Long getErrorBytes() { return errorBytes; }
+}
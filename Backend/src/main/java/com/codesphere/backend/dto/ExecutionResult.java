@@ -5,6 +5,8 @@ public class ExecutionResult {
     private String output;
     private String error;
     private String status;
+    private ResourceUsage usage;
+    private Long outputFileBytes;
 
     public ExecutionResult(String output, String error, String status) {
         this.output = output;
@@ -15,4 +17,9 @@ public class ExecutionResult {
     public String getOutput() { return output; }
     public String getError() { return error; }
     public String getStatus() { return status; }
+    public ResourceUsage getUsage() { return usage; }
+    public void setUsage(ResourceUsage usage) { this.usage = usage; }
+    /** Size of the stdout file in redirect mode; {@code output} then holds its start. */
+    public Long getOutputFileBytes() { return outputFileBytes; }
+    public void setOutputFileBytes(Long outputFileBytes) { this.outputFileBytes = outputFileBytes; }
 }
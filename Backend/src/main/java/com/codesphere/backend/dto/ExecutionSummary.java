@@ -0,0 +1,44 @@
+package com.codesphere.backend.dto;
+
+import java.time.LocalDateTime;
+
+/** One row of the execution history, without the output bodies. */
+public class ExecutionSummary {
+
+    private Long id;
+    private String filename;
+    private String status;
+    private LocalDateTime executedAt;
+    private Long outputBytes;
+    private Long errorBytes;
+    private Long peakMemoryBytes;
+    private Long cpuUserMs;
+    private Long cpuSystemMs;
+    private Boolean oomKilled;
+
+    public ExecutionSummary(Long id, String filename, String status, LocalDateTime executedAt,
+                            Long outputBytes, Long errorBytes, Long peakMemoryBytes,
+                            Long cpuUserMs, Long cpuSystemMs, Boolean oomKilled) {
+        this.id = id;
+        this.filename = filename;
+        this.status = status;
+        this.executedAt = executedAt;
+        this.outputBytes = outputBytes;
+        this.errorBytes = errorBytes;
+        this.peakMemoryBytes = peakMemoryBytes;
+        this.cpuUserMs = cpuUserMs;
+        this.cpuSystemMs = cpuSystemMs;
+        this.oomKilled = oomKilled;
+    }
+
+    public Long getId() { return id; }
+    public String getFilename() { return filename; }
+    public String getStatus() { return status; }
+    public LocalDateTime getExecutedAt() { return executedAt; }
+    public Long getOutputBytes() { return outputBytes; }
+    public Long getErrorBytes() { return errorBytes; }
+    public Long getPeakMemoryBytes() { return peakMemoryBytes; }
+    public Long getCpuUserMs() { return cpuUserMs; }
+    public Long getCpuSystemMs() { return cpuSystemMs; }
+    public Boolean getOomKilled() { return oomKilled; }
+}
@@ -0,0 +1,29 @@
+package com.codesphere.backend.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+public class JudgeCase {
+
+    @Size(max = 1000000, message = "Input too large")
+    private String input;
+
+    @NotNull(message = "Expected output is required")
+    @Size(max = 1000000, message = "Expected output too large")
+    private String expectedOutput;
+
+    @Min(value = 100, message = "Time limit must be at least 100 ms")
+    @Max(value = 10000, message = "Time limit must be 10000 ms or less")
+    private Long timeLimitMs;
+
+    public String getInput() { return input; }
+    public void setInput(String input) { this.input = input; }
+
+    public String getExpectedOutput() { return expectedOutput; }
+    public void setExpectedOutput(String expectedOutput) { this.expectedOutput = expectedOutput; }
+
+    public Long getTimeLimitMs() { return timeLimitMs; }
+    public void setTimeLimitMs(Long timeLimitMs) { this.timeLimitMs = timeLimitMs; }
+}
@@ -0,0 +1,25 @@
+package com.codesphere.backend.dto;
+
+public class JudgeCaseResult {
+
+    private final int index;
+    private final String verdict;
+    private final long timeMs;
+    private final Long peakMemoryBytes;
+    /** Start and end of what the program printed, only for failed cases. */
+    private final String output;
+
+    public JudgeCaseResult(int index, String verdict, long timeMs, Long peakMemoryBytes, String output) {
+        this.index = index;
+        this.verdict = verdict;
+        this.timeMs = timeMs;
+        this.peakMemoryBytes = peakMemoryBytes;
+        this.output = output;
+    }
+
+    public int getIndex() { return index; }
+    public String getVerdict() { return verdict; }
+    public long getTimeMs() { return timeMs; }
+    public Long getPeakMemoryBytes() { return peakMemoryBytes; }
+    public String getOutput() { return output; }
+}
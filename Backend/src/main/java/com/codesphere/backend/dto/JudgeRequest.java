@@ -0,0 +1,45 @@
+package com.codesphere.backend.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class JudgeRequest {
+
+    /** Input plus expected output, summed over all cases; each case alone may be up to 2M. */
+    public static final long MAX_TOTAL_CHARS = 4_000_000;
+
+    @NotBlank(message = "Filename is required")
+    @Size(max = 180, message = "Filename must be 180 characters or less")
+    private String filename;
+
+    @NotEmpty(message = "At least one test case is required")
+    @Size(max = 50, message = "At most 50 test cases per request")
+    private List<@Valid JudgeCase> cases;
+
+    public String getFilename() { return filename; }
+    public void setFilename(String filename) { this.filename = filename; }
+
+    public List<JudgeCase> getCases() { return cases; }
+    public void setCases(List<JudgeCase> cases) { this.cases = cases; }
+
+    @AssertTrue(message = "Test cases may hold at most " + MAX_TOTAL_CHARS + " characters of input and expected output in total")
+    public boolean isWithinTotalSize() {
+        if (cases == null) {
+            return true;
+        }
+        long total = 0;
+        for (JudgeCase testCase : cases) {
+            if (testCase == null) {
+                continue;
+            }
+            total += testCase.getInput() == null ? 0 : testCase.getInput().length();
+            total += testCase.getExpectedOutput() == null ? 0 : testCase.getExpectedOutput().length();
+        }
+        return total <= MAX_TOTAL_CHARS;
+    }
+}
@@ -0,0 +1,27 @@
+package com.codesphere.backend.dto;
+
+import java.util.List;
+
+public class JudgeResponse {
+
+    private final String verdict;
+    private final int passed;
+    private final int total;
+    private final String compileError;
+    private final List<JudgeCaseResult> cases;
+
+    public JudgeResponse(String verdict, int passed, int total, String compileError,
+                         List<JudgeCaseResult> cases) {
+        this.verdict = verdict;
+        this.passed = passed;
+        this.total = total;
+        this.compileError = compileError;
+        this.cases = cases;
+    }
+
+    public String getVerdict() { return verdict; }
+    public int getPassed() { return passed; }
+    public int getTotal() { return total; }
+    public String getCompileError() { return compileError; }
+    public List<JudgeCaseResult> getCases() { return cases; }
+}
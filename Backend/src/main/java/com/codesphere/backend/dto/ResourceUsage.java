@@ -0,0 +1,25 @@
+package com.codesphere.backend.dto;
+
+/**
+ * What an execution consumed, as accounted by its cgroup. Values are
+ * {@code null} when the node could not measure them.
+ */
+public class ResourceUsage {
+
+    private final Long peakMemoryBytes;
+    private final Long cpuUserMs;
+    private final Long cpuSystemMs;
+    private final boolean oomKilled;
+
+    public ResourceUsage(Long peakMemoryBytes, Long cpuUserMs, Long cpuSystemMs, boolean oomKilled) {
+        this.peakMemoryBytes = peakMemoryBytes;
+        this.cpuUserMs = cpuUserMs;
+        this.cpuSystemMs = cpuSystemMs;
+        this.oomKilled = oomKilled;
+    }
+
+    public Long getPeakMemoryBytes() { return peakMemoryBytes; }
+    public Long getCpuUserMs() { return cpuUserMs; }
+    public Long getCpuSystemMs() { return cpuSystemMs; }
+    public boolean isOomKilled() { return oomKilled; }
+}
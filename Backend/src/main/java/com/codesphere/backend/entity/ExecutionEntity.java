@@ -1,29 +1,56 @@
 package com.codesphere.backend.entity;
 
+import com.codesphere.backend.config.ExecutionIdSequence;
+
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "executions")
+@Table(name = "executions", indexes = {
+        // Serves the newest-first, keyset-paginated history of a project.
+        @Index(name = "idx_executions_project_history", columnList = "project_id, executed_at, id")
+})
 public class ExecutionEntity {
 
+    // Pooled sequence ids let Hibernate batch inserts; see ExecutionIdSequence.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "executions_seq")
+    @SequenceGenerator(name = "executions_seq", sequenceName = "executions_seq",
+            allocationSize = ExecutionIdSequence.ALLOCATION_SIZE)
     private Long id;
 
     private String filename;
 
+    // Only a preview when the full text was offloaded to the blob store.
     @Column(columnDefinition = "TEXT")
     private String output;
 
     @Column(columnDefinition = "TEXT")
     private String error;
 
+    private Long outputBytes;
+
+    private Long errorBytes;
+
+    @Column(length = 64)
+    private String outputBlob;
+
+    @Column(length = 64)
+    private String errorBlob;
+
     private String status; // SUCCESS, ERROR, TIMEOUT
 
+    private Long peakMemoryBytes;
+
+    private Long cpuUserMs;
+
+    private Long cpuSystemMs;
+
+    private Boolean oomKilled;
+
     private LocalDateTime executedAt = LocalDateTime.now();
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "project_id", nullable = false)
     private ProjectEntity project;
 
@@ -41,9 +68,33 @@ public class ExecutionEntity {
     public String getError() { return error; }
     public void setError(String error) { this.error = error; }
 
+    public Long getOutputBytes() { return outputBytes; }
+    public void setOutputBytes(Long outputBytes) { this.outputBytes = outputBytes; }
+
+    public Long getErrorBytes() { return errorBytes; }
+    public void setErrorBytes(Long errorBytes) { this.errorBytes = errorBytes; }
+
+    public String getOutputBlob() { return outputBlob; }
+    public void setOutputBlob(String outputBlob) { this.outputBlob = outputBlob; }
+
+    public String getErrorBlob() { return errorBlob; }
+    public void setErrorBlob(String errorBlob) { this.errorBlob = errorBlob; }
+
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
 
+    public Long getPeakMemoryBytes() { return peakMemoryBytes; }
+    public void setPeakMemoryBytes(Long peakMemoryBytes) { this.peakMemoryBytes = peakMemoryBytes; }
+
+    public Long getCpuUserMs() { return cpuUserMs; }
+    public void setCpuUserMs(Long cpuUserMs) { this.cpuUserMs = cpuUserMs; }
+
+    public Long getCpuSystemMs() { return cpuSystemMs; }
+    public void setCpuSystemMs(Long cpuSystemMs) { this.cpuSystemMs = cpuSystemMs; }
+
+    public Boolean getOomKilled() { return oomKilled; }
+    public void setOomKilled(Boolean oomKilled) { this.oomKilled = oomKilled; }
+
     public LocalDateTime getExecutedAt() { return executedAt; }
 
     public ProjectEntity getProject() { return project; }
@@ -0,0 +1,83 @@
+package com.codesphere.backend.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Totals of the runs of one project, day and status whose execution rows
+ * have been removed by retention.
+ */
+@Entity
+@Table(
+    name = "execution_rollups",
+    uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"project_id", "run_day", "status"})
+    }
+)
+public class ExecutionRollupEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "project_id", nullable = false)
+    private ProjectEntity project;
+
+    // "day" is a reserved word in H2.
+    @Column(name = "run_day", nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false)
+    private String status;
+
+    private long runs;
+
+    private long cpuUserMs;
+
+    private long cpuSystemMs;
+
+    private long outputBytes;
+
+    private long oomKills;
+
+    private Long maxPeakMemoryBytes;
+
+    public ExecutionRollupEntity() {}
+
+    public ExecutionRollupEntity(ProjectEntity project, LocalDate day, String status) {
+        this.project = project;
+        this.day = day;
+        this.status = status;
+    }
+
+    /** Folds one run into the totals. */
+    public void add(ExecutionEntity execution) {
+        runs++;
+        cpuUserMs += valueOf(execution.getCpuUserMs());
+        cpuSystemMs += valueOf(execution.getCpuSystemMs());
+        outputBytes += valueOf(execution.getOutputBytes()) + valueOf(execution.getErrorBytes());
+        if (Boolean.TRUE.equals(execution.getOomKilled())) {
+            oomKills++;
+        }
+        Long peak = execution.getPeakMemoryBytes();
+        if (peak != null && (maxPeakMemoryBytes == null || peak > maxPeakMemoryBytes)) {
+            maxPeakMemoryBytes = peak;
+        }
+    }
+
+    private static long valueOf(Long value) {
+        return value == null ? 0 : value;
+    }
+
+    public Long getId() { return id; }
+    public ProjectEntity getProject() { return project; }
+    public LocalDate getDay() { return day; }
+    public String getStatus() { return status; }
+    public long getRuns() { return runs; }
+    public long getCpuUserMs() { return cpuUserMs; }
+    public long getCpuSystemMs() { return cpuSystemMs; }
+    public long getOutputBytes() { return outputBytes; }
+    public long getOomKills() { return oomKills; }
+    public Long getMaxPeakMemoryBytes() { return maxPeakMemoryBytes; }
+}
@@ -1,6 +1,9 @@
 package com.codesphere.backend.exception;
 
 import com.codesphere.backend.dto.ApiResponse;
+import com.codesphere.backend.execution.ExecutionRejectedException;
+import com.codesphere.backend.execution.ExecutionRequestException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -28,6 +31,21 @@ public class GlobalExceptionHandler {
             .body(new ApiResponse<>(false, ex.getMessage(), null));
     }
 
+    @ExceptionHandler(ExecutionRequestException.class)
+    public ResponseEntity<ApiResponse<String>> handleExecutionRequest(ExecutionRequestException ex) {
+        return ResponseEntity.status(ex.getStatus())
+            .body(new ApiResponse<>(false, ex.getMessage(), null));
+    }
+
+    @ExceptionHandler(ExecutionRejectedException.class)
+    public ResponseEntity<ApiResponse<String>> handleExecutionRejected(ExecutionRejectedException ex) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE);
+        if (ex.getRetryAfterSeconds() > 0) {
+            response.header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()));
+        }
+        return response.body(new ApiResponse<>(false, ex.getMessage(), null));
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<ApiResponse<String>> handleRuntime(RuntimeException ex) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -0,0 +1,162 @@
+package com.codesphere.backend.execution;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit for the execution workers, adjusted by AIMD on how
+ * congested the node was while runs executed: the share of each run's wall
+ * time in which the node stalled on CPU or memory (see {@link NodePressure}).
+ * Once a round of runs (as many as the limit) has finished, its median is
+ * compared with {@code stallTargetPercent}: above the target the limit
+ * shrinks by a quarter, below it the limit grows by one if the round
+ * actually used every slot. A node whose compilers start swapping therefore
+ * sheds parallelism quickly and wins it back slowly, while slow programs on
+ * an idle node leave the limit alone.
+ */
+public class AdaptiveLimit {
+
+    private static final double BACKOFF = 0.75;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long stallTargetPercent;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFree = lock.newCondition();
+
+    private int limit;
+    private int inUse;
+    private int running;
+    private long[] round;
+    private int samples;
+    private boolean saturated;
+    private long lastRoundMedianStallPercent;
+    private long increases;
+    private long decreases;
+
+    public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, long stallTargetPercent) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(initialLimit, this.maxLimit));
+        this.stallTargetPercent = stallTargetPercent;
+        this.round = new long[this.limit];
+    }
+
+    /**
+     * Blocks until fewer than {@link #getLimit()} slots are taken, then takes
+     * one. The holder reports {@link #started} when it has work for the slot.
+     */
+    public void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inUse >= limit) {
+                slotFree.await();
+            }
+            inUse++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void started() {
+        lock.lock();
+        try {
+            running++;
+            if (running >= limit) {
+                saturated = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Gives back a slot that never started a run. */
+    public void release() {
+        lock.lock();
+        try {
+            inUse--;
+            slotFree.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back the slot of a finished run and feeds the node's stall share
+     * during it into the limit; {@code null} when the run says nothing about
+     * load, e.g. it was cancelled or timed out.
+     */
+    public void finished(Long stallPercent) {
+        lock.lock();
+        try {
+            running--;
+            inUse--;
+            if (stallPercent != null) {
+                round[samples++] = stallPercent;
+                if (samples == round.length) {
+                    adjust();
+                }
+            }
+            slotFree.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjust() {
+        long[] sorted = Arrays.copyOf(round, samples);
+        Arrays.sort(sorted);
+        lastRoundMedianStallPercent = sorted[(sorted.length - 1) / 2];
+        if (lastRoundMedianStallPercent > stallTargetPercent && limit > minLimit) {
+            limit = Math.max(minLimit, (int) (limit * BACKOFF));
+            decreases++;
+        } else if (lastRoundMedianStallPercent <= stallTargetPercent && saturated && limit < maxLimit) {
+            limit++;
+            increases++;
+        }
+        round = new long[limit];
+        samples = 0;
+        saturated = running >= limit;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMinLimit() { return minLimit; }
+    public int getMaxLimit() { return maxLimit; }
+    public long getStallTargetPercent() { return stallTargetPercent; }
+
+    public long getLastRoundMedianStallPercent() {
+        lock.lock();
+        try {
+            return lastRoundMedianStallPercent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getIncreases() {
+        lock.lock();
+        try {
+            return increases;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDecreases() {
+        lock.lock();
+        try {
+            return decreases;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.codesphere.backend.execution;
+
+/**
+ * Captures program output in fixed memory: the first {@code headLimit}
+ * characters are kept verbatim, the last {@code tailLimit} characters are kept
+ * in a ring, and everything in between is counted but dropped. Rendering
+ * inserts a marker where characters were omitted.
+ */
+public class BoundedOutputBuffer {
+
+    private final int headLimit;
+    private final StringBuilder head = new StringBuilder();
+    private final char[] tail;
+    private int tailEnd;
+    private int tailSize;
+    private long total;
+
+    public BoundedOutputBuffer(int headLimit, int tailLimit) {
+        this.headLimit = Math.max(0, headLimit);
+        this.tail = new char[Math.max(1, tailLimit)];
+    }
+
+    public synchronized void append(String text) {
+        append(text.toCharArray(), 0, text.length());
+    }
+
+    public synchronized void append(char[] buffer, int offset, int length) {
+        total += length;
+        int toHead = Math.min(length, headLimit - head.length());
+        if (toHead > 0) {
+            head.append(buffer, offset, toHead);
+            offset += toHead;
+            length -= toHead;
+        }
+        if (length >= tail.length) {
+            System.arraycopy(buffer, offset + length - tail.length, tail, 0, tail.length);
+            tailEnd = 0;
+            tailSize = tail.length;
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            tail[tailEnd] = buffer[offset + i];
+            tailEnd = (tailEnd + 1) % tail.length;
+            if (tailSize < tail.length) {
+                tailSize++;
+            }
+        }
+    }
+
+    /** Total characters ever appended, including omitted ones. */
+    public synchronized long totalChars() {
+        return total;
+    }
+
+    public synchronized boolean isTruncated() {
+        return omitted() > 0;
+    }
+
+    public synchronized boolean isEmpty() {
+        return total == 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder out = new StringBuilder(head.length() + tailSize + 64);
+        out.append(head);
+        long omitted = omitted();
+        if (omitted > 0) {
+            out.append("\n... [output truncated: ").append(omitted).append(" characters omitted] ...\n");
+        }
+        int start = (tailEnd - tailSize + tail.length) % tail.length;
+        for (int i = 0; i < tailSize; i++) {
+            out.append(tail[(start + i) % tail.length]);
+        }
+        return out.toString();
+    }
+
+    private long omitted() {
+        return total - head.length() - tailSize;
+    }
+}
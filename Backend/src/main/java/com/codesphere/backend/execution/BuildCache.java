@@ -0,0 +1,307 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.ExecutionResult;
+import com.codesphere.backend.metrics.MetricsSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of compiler output. Each entry is a directory named
+ * after a hash of the sources, the compiler identity and the flags, so an
+ * unchanged program is never compiled twice. Entries live outside the
+ * workspace, on tmpfs when the node has one (see {@link ScratchSpace}), and
+ * are evicted least-recently-used once the cache exceeds its size budget.
+ * An entry is pinned from {@link #getOrBuild} until {@link Build#release},
+ * so a program is never evicted from under a run that is using it.
+ */
+@Component
+public class BuildCache implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(BuildCache.class);
+
+    /** Compiles into {@code outputDir}; returns {@code null} on success or the failure to report. */
+    @FunctionalInterface
+    public interface Builder {
+        ExecutionResult build(Path outputDir) throws Exception;
+    }
+
+    /** Outcome of {@link #getOrBuild}: a pinned entry directory, or the compile failure. */
+    public final class Build {
+        private final String key;
+        private final Path dir;
+        private final ExecutionResult failure;
+        private final boolean hit;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Build(String key, Path dir, ExecutionResult failure, boolean hit) {
+            this.key = key;
+            this.dir = dir;
+            this.failure = failure;
+            this.hit = hit;
+        }
+
+        public Path getDir() { return dir; }
+        public ExecutionResult getFailure() { return failure; }
+        public boolean isHit() { return hit; }
+        public boolean isSuccess() { return failure == null; }
+
+        /** Unpins the entry; it may be evicted from now on. Safe to call more than once. */
+        public void release() {
+            if (isSuccess() && released.compareAndSet(false, true)) {
+                unpin(key);
+            }
+        }
+    }
+
+    private final Path root;
+    private final long maxBytes;
+    // Access-ordered: iteration starts at the least recently used entry.
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Guarded by entries, like totalBytes.
+    private final Map<String, Integer> pins = new HashMap<>();
+    private final ConcurrentMap<String, Object> buildLocks = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BuildCache(@Value("${codesphere.build-cache.dir:}") String dir,
+                      @Value("${codesphere.build-cache.max-bytes:536870912}") long maxBytes) throws IOException {
+        this.root = dir == null || dir.isBlank()
+                ? ScratchSpace.defaultRoot().resolve("builds")
+                : Path.of(dir);
+        this.maxBytes = maxBytes;
+        Files.createDirectories(root);
+        loadExisting();
+    }
+
+    /**
+     * Hashes everything that determines the compiler output. Source paths are
+     * hashed relative to {@code baseDir} so the key is stable across users.
+     */
+    public static String keyOf(String compilerIdentity, List<String> flags,
+                               Path baseDir, List<Path> sources) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, compilerIdentity);
+        for (String flag : flags) {
+            update(digest, flag);
+        }
+        for (Path source : sources) {
+            update(digest, baseDir.relativize(source).toString());
+            digest.update(Files.readAllBytes(source));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the cached entry for {@code key}, running {@code builder} into a
+     * fresh directory on a miss. Concurrent callers with the same key wait for
+     * one build instead of compiling twice. Failed builds are not cached.
+     * A successful build must be {@linkplain Build#release released}.
+     */
+    public Build getOrBuild(String key, Builder builder) throws Exception {
+        Path entry = root.resolve(key);
+        if (touch(key)) {
+            hits.incrementAndGet();
+            return new Build(key, entry, null, true);
+        }
+        Object lock = buildLocks.computeIfAbsent(key, k -> new Object());
+        synchronized (lock) {
+            try {
+                if (touch(key)) {
+                    hits.incrementAndGet();
+                    return new Build(key, entry, null, true);
+                }
+                misses.incrementAndGet();
+                Path staging = root.resolve(key + ".tmp-" + UUID.randomUUID());
+                Files.createDirectories(staging);
+                ExecutionResult failure;
+                try {
+                    failure = builder.build(staging);
+                    if (failure == null) {
+                        Files.move(staging, entry, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                } finally {
+                    deleteTree(staging);
+                }
+                if (failure != null) {
+                    return new Build(key, null, failure, false);
+                }
+                register(key, sizeOf(entry));
+                return new Build(key, entry, null, false);
+            } finally {
+                buildLocks.remove(key);
+            }
+        }
+    }
+
+    public boolean contains(String key) {
+        synchronized (entries) {
+            return entries.containsKey(key);
+        }
+    }
+
+    /** Pins {@code key} if it is cached. */
+    private boolean touch(String key) {
+        synchronized (entries) {
+            if (entries.get(key) == null) {
+                return false;
+            }
+            pins.merge(key, 1, Integer::sum);
+        }
+        try {
+            Files.setLastModifiedTime(root.resolve(key), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Recency is persisted only to order entries after a restart.
+        }
+        return true;
+    }
+
+    /** Adds a new entry, pinned for its builder, and evicts down to the budget. */
+    private void register(String key, long size) {
+        synchronized (entries) {
+            entries.put(key, size);
+            totalBytes += size;
+            pins.merge(key, 1, Integer::sum);
+            evictOverBudget();
+        }
+    }
+
+    private void unpin(String key) {
+        synchronized (entries) {
+            // Eviction waits for the next new entry, which then goes by recency again.
+            pins.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> victim = eldest.next();
+            if (pins.containsKey(victim.getKey())) {
+                continue;
+            }
+            eldest.remove();
+            totalBytes -= victim.getValue();
+            evictions.incrementAndGet();
+            deleteTree(root.resolve(victim.getKey()));
+        }
+    }
+
+    private void loadExisting() throws IOException {
+        try (Stream<Path> children = Files.list(root)) {
+            children.sorted(Comparator.comparing(BuildCache::lastModified))
+                    .forEach(child -> {
+                        String name = child.getFileName().toString();
+                        if (name.contains(".tmp-")) {
+                            deleteTree(child);
+                        } else if (Files.isDirectory(child)) {
+                            long size = sizeOf(child);
+                            entries.put(name, size);
+                            totalBytes += size;
+                        }
+                    });
+        }
+        log.info("Build cache at {} holds {} entries ({} bytes)", root, entries.size(), totalBytes);
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long sizeOf(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    static void deleteTree(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not delete {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    @Override
+    public String metricsName() {
+        return "buildCache";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        synchronized (entries) {
+            out.put("entries", entries.size());
+            out.put("bytes", totalBytes);
+            out.put("pinned", pins.size());
+        }
+        out.put("maxBytes", maxBytes);
+        out.put("hits", hits.get());
+        out.put("misses", misses.get());
+        out.put("evictions", evictions.get());
+        return out;
+    }
+}
@@ -0,0 +1,260 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.ExecutionResult;
+import com.codesphere.backend.metrics.MetricsSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Single-flight in front of {@link ExecutionScheduler}: a run identical to
+ * one still in flight (same user, project, file, file content and stdin)
+ * attaches to that job instead of compiling and running again. Double
+ * clicks, client retries and several open tabs all produce these.
+ *
+ * <p>Requests marked deterministic may also reuse a finished run for
+ * {@code memo-ttl-seconds}. The key covers the file content and the size
+ * and modification time of every other project file, so saving a change to
+ * the file, a class or header it uses, or a data file it reads always runs
+ * again.
+ */
+@Component
+public class ExecutionCoalescer implements MetricsSource {
+
+    private static final int MAX_MEMO_ENTRIES = 1024;
+
+    private final ExecutionScheduler scheduler;
+    private final boolean enabled;
+    private final long memoTtlNanos;
+
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Flight> flightsByJob = new ConcurrentHashMap<>();
+    private final Map<String, Memo> memo = new ConcurrentHashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong memoHits = new AtomicLong();
+
+    public ExecutionCoalescer(ExecutionScheduler scheduler,
+                              @Value("${codesphere.execution-coalescing.enabled:true}") boolean enabled,
+                              @Value("${codesphere.execution-coalescing.memo-ttl-seconds:30}") long memoTtlSeconds) {
+        this.scheduler = scheduler;
+        this.enabled = enabled;
+        this.memoTtlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, memoTtlSeconds));
+    }
+
+    /**
+     * Queues {@code job}, or returns the identical job already in flight (or,
+     * for a deterministic request, recently finished) for the caller to wait
+     * on. Every caller must {@link #release} the returned job if it stops
+     * waiting before the job finishes.
+     */
+    public ExecutionJob submit(ExecutionJob job, boolean deterministic) {
+        submitted.incrementAndGet();
+        if (!enabled || job.isRedirected()) {
+            // Redirected runs each own their output file.
+            return scheduler.submit(job);
+        }
+        String key = keyOf(job);
+
+        if (deterministic) {
+            Memo hit = memo.get(key);
+            if (hit != null && hit.isFresh()) {
+                memoHits.incrementAndGet();
+                return hit.job();
+            }
+        }
+
+        while (true) {
+            Flight current = inFlight.get(key);
+            if (current != null && current.attach()) {
+                coalesced.incrementAndGet();
+                return current.job;
+            }
+            Flight flight = new Flight(job);
+            boolean claimed = current == null
+                    ? inFlight.putIfAbsent(key, flight) == null
+                    : inFlight.replace(key, current, flight);
+            if (!claimed) {
+                continue;
+            }
+            flightsByJob.put(job.getId(), flight);
+            try {
+                scheduler.submit(job);
+            } catch (RuntimeException e) {
+                inFlight.remove(key, flight);
+                flightsByJob.remove(job.getId());
+                throw e;
+            }
+            job.getCompletion().whenComplete((result, error) -> {
+                flight.close();
+                inFlight.remove(key, flight);
+                flightsByJob.remove(job.getId());
+                if (deterministic && memoable(result)) {
+                    remember(key, job);
+                }
+            });
+            return job;
+        }
+    }
+
+    /**
+     * One caller of {@link #submit} stopped waiting, e.g. its client went
+     * away. The job is cancelled once nobody waits for it any more.
+     */
+    public void release(ExecutionJob job) {
+        Flight flight = flightsByJob.get(job.getId());
+        if (flight == null || flight.detach()) {
+            scheduler.cancel(job);
+        }
+    }
+
+    /**
+     * A {@link #release} for one caller that only takes effect once, however
+     * many of the caller's cleanup paths (write failure, container error,
+     * interrupt) end up running it.
+     */
+    public Runnable releaseOnce(ExecutionJob job) {
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                release(job);
+            }
+        };
+    }
+
+    private static boolean memoable(ExecutionResult result) {
+        // Timeouts and cancellations say more about the node than about the program.
+        return result != null && ("SUCCESS".equals(result.getStatus()) || "ERROR".equals(result.getStatus()));
+    }
+
+    private void remember(String key, ExecutionJob job) {
+        if (memoTtlNanos == 0) {
+            return;
+        }
+        if (memo.size() >= MAX_MEMO_ENTRIES) {
+            memo.values().removeIf(entry -> !entry.isFresh());
+            if (memo.size() >= MAX_MEMO_ENTRIES) {
+                return;
+            }
+        }
+        memo.put(key, new Memo(job, System.nanoTime() + memoTtlNanos));
+    }
+
+    /**
+     * Identity of a run. Any run may read other files of its project:
+     * {@code javac -sourcepath} compiles sibling classes, C includes headers,
+     * Go builds the whole package, scripts import modules and open data
+     * files. The key therefore covers every project file's size and
+     * modification time besides the run file's content.
+     */
+    static String keyOf(ExecutionJob job) {
+        MessageDigest digest = sha256();
+        update(digest, job.getUsername());
+        update(digest, job.getProjectName());
+        update(digest, job.getFilename());
+        update(digest, job.getInput() == null ? "" : job.getInput());
+        try {
+            digest.update(Files.readAllBytes(job.getFilePath()));
+            update(digest, job.isProjectRun() ? "project" : "file");
+            try (Stream<Path> files = Files.walk(job.getProjectPath())) {
+                for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                    update(digest, job.getProjectPath().relativize(file) + ":" + Files.size(file)
+                            + ":" + Files.getLastModifiedTime(file).toMillis());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // Length-prefixed, so ("ab", "c") and ("a", "bc") differ.
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "coalescing";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("submitted", submitted.get());
+        out.put("coalesced", coalesced.get());
+        out.put("memoHits", memoHits.get());
+        out.put("inFlight", inFlight.size());
+        out.put("memoEntries", memo.size());
+        return out;
+    }
+
+    /** A job in flight and how many callers wait for it. */
+    private static final class Flight {
+
+        private final ExecutionJob job;
+        private int waiters = 1;
+        private boolean closed;
+
+        private Flight(ExecutionJob job) {
+            this.job = job;
+        }
+
+        synchronized boolean attach() {
+            if (closed || job.getCancellation().isCancelled()) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        /** Returns {@code true} when the last waiter left. */
+        synchronized boolean detach() {
+            waiters--;
+            if (waiters == 0) {
+                closed = true;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+    }
+
+    private record Memo(ExecutionJob job, long expiresAt) {
+
+        boolean isFresh() {
+            return System.nanoTime() - expiresAt < 0;
+        }
+    }
+}
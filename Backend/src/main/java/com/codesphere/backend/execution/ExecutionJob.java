@@ -0,0 +1,188 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.ExecutionResult;
+import com.codesphere.backend.entity.ProjectEntity;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * One queued or running execution. Created by the controller, run by an
+ * {@link ExecutionScheduler} worker, and kept around for a while after it
+ * finishes so clients can poll the result.
+ */
+public class ExecutionJob {
+
+    public static final String QUEUED = "QUEUED";
+    public static final String RUNNING = "RUNNING";
+    public static final String CANCELLED = "CANCELLED";
+
+    private final String id = UUID.randomUUID().toString();
+    private final String username;
+    private final ProjectEntity project;
+    private final String projectName;
+    private final String filename;
+    private final Path projectPath;
+    private final Path filePath;
+    private final String input;
+    private final Path inputFile;
+    private final boolean outputToFile;
+    private final boolean projectRun;
+    private final RunCancellation cancellation = new RunCancellation();
+    /** Set for a step run on another job's behalf; see {@link ExecutionScheduler#submitStep}. */
+    private Runnable step;
+
+    private final CompletableFuture<ExecutionResult> completion = new CompletableFuture<>();
+    private final List<Consumer<String>> outputListeners = new CopyOnWriteArrayList<>();
+    // Replay buffer for late stream subscribers; dropped once the result holds the output.
+    private BoundedOutputBuffer transcript = new BoundedOutputBuffer(8192, 8192);
+    private final Instant submittedAt = Instant.now();
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String status = QUEUED;
+    private volatile ExecutionResult result;
+    private volatile Throwable failure;
+
+    public ExecutionJob(String username,
+                        ProjectEntity project,
+                        String projectName,
+                        String filename,
+                        Path projectPath,
+                        Path filePath,
+                        String input) {
+        this(username, project, projectName, filename, projectPath, filePath, input, null, false);
+    }
+
+    /**
+     * A run in redirect mode: stdin is read from {@code inputFile} instead of
+     * {@code input}, and with {@code outputToFile} stdout goes to a file.
+     */
+    public ExecutionJob(String username,
+                        ProjectEntity project,
+                        String projectName,
+                        String filename,
+                        Path projectPath,
+                        Path filePath,
+                        String input,
+                        Path inputFile,
+                        boolean outputToFile) {
+        this.username = username;
+        this.project = project;
+        this.projectName = projectName;
+        this.filename = filename;
+        this.projectPath = projectPath;
+        this.filePath = filePath;
+        this.input = input;
+        this.inputFile = inputFile;
+        this.outputToFile = outputToFile;
+        this.projectRun = project != null && filename.equals(project.getMainFile());
+    }
+
+    /** A job that runs {@code step} as {@code owner}'s user instead of running a program. */
+    static ExecutionJob stepOf(ExecutionJob owner, Runnable step) {
+        ExecutionJob job = new ExecutionJob(owner.username, owner.project, owner.projectName, owner.filename,
+                owner.projectPath, owner.filePath, null);
+        job.step = step;
+        return job;
+    }
+
+    Runnable getStep() {
+        return step;
+    }
+
+    void markStarted() {
+        startedAt = Instant.now();
+        status = RUNNING;
+    }
+
+    void complete(ExecutionResult result) {
+        synchronized (this) {
+            transcript = null;
+        }
+        this.result = result;
+        finishedAt = Instant.now();
+        status = result.getStatus();
+        completion.complete(result);
+    }
+
+    void fail(Throwable error) {
+        synchronized (this) {
+            transcript = null;
+        }
+        failure = error;
+        finishedAt = Instant.now();
+        status = "ERROR";
+        completion.completeExceptionally(error);
+    }
+
+    /**
+     * Called by the runner for every chunk of program output while it runs.
+     * Listeners that throw are dropped (e.g. a closed SSE connection).
+     */
+    synchronized void publishOutput(String chunk) {
+        if (transcript != null) {
+            transcript.append(chunk);
+        }
+        for (Consumer<String> listener : outputListeners) {
+            try {
+                listener.accept(chunk);
+            } catch (RuntimeException e) {
+                outputListeners.remove(listener);
+            }
+        }
+    }
+
+    /**
+     * Replays everything printed so far to {@code listener}, then registers it
+     * for live chunks. Both happen under the job lock so nothing is missed or
+     * delivered out of order.
+     */
+    public synchronized void subscribe(Consumer<String> listener) {
+        if (transcript != null && !transcript.isEmpty()) {
+            listener.accept(transcript.toString());
+        }
+        outputListeners.add(listener);
+    }
+
+    public void unsubscribe(Consumer<String> listener) {
+        outputListeners.remove(listener);
+    }
+
+    public boolean isFinished() {
+        return completion.isDone();
+    }
+
+    /** Time spent waiting for a worker, or so far if still queued. */
+    public long getQueueWaitMs() {
+        Instant end = startedAt != null ? startedAt : Instant.now();
+        return end.toEpochMilli() - submittedAt.toEpochMilli();
+    }
+
+    public String getId() { return id; }
+    public String getUsername() { return username; }
+    public ProjectEntity getProject() { return project; }
+    public String getProjectName() { return projectName; }
+    public String getFilename() { return filename; }
+    public Path getProjectPath() { return projectPath; }
+    public Path getFilePath() { return filePath; }
+    public String getInput() { return input; }
+    public Path getInputFile() { return inputFile; }
+    public boolean isOutputToFile() { return outputToFile; }
+    /** Whether stdin or stdout is connected to a file rather than to us. */
+    public boolean isRedirected() { return inputFile != null || outputToFile; }
+    /** Whether the file is the project's configured main file, i.e. the whole project is run. */
+    public boolean isProjectRun() { return projectRun; }
+    public CompletableFuture<ExecutionResult> getCompletion() { return completion; }
+    public RunCancellation getCancellation() { return cancellation; }
+    public Instant getSubmittedAt() { return submittedAt; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public String getStatus() { return status; }
+    public ExecutionResult getResult() { return result; }
+    public Throwable getFailure() { return failure; }
+}
@@ -0,0 +1,96 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.entity.ProjectEntity;
+import com.codesphere.backend.entity.UserEntity;
+import com.codesphere.backend.repository.ProjectRepository;
+import com.codesphere.backend.repository.UserRepository;
+import com.codesphere.backend.util.WorkspacePaths;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Validates a run request against the user's workspace and turns it into an
+ * {@link ExecutionJob}. Shared by the REST endpoints and interactive
+ * sessions, which authenticate differently.
+ */
+@Component
+public class ExecutionJobFactory {
+
+    private final UserRepository userRepository;
+    private final ProjectRepository projectRepository;
+
+    public ExecutionJobFactory(UserRepository userRepository, ProjectRepository projectRepository) {
+        this.userRepository = userRepository;
+        this.projectRepository = projectRepository;
+    }
+
+    public ExecutionJob create(String username, String projectName, String filename, String input) {
+        return create(username, projectName, filename, input, null, false);
+    }
+
+    /** As above, optionally in redirect mode; see {@link ExecutionJob#isRedirected}. */
+    public ExecutionJob create(String username, String projectName, String filename, String input,
+                               String inputFile, boolean outputToFile) {
+        if (!WorkspacePaths.isSafeProjectName(projectName)) {
+            throw new ExecutionRequestException(400, "Invalid project name");
+        }
+        if (filename == null || filename.isBlank()) {
+            throw new ExecutionRequestException(400, "Filename is required");
+        }
+        if (!WorkspacePaths.isSafeFilename(filename)) {
+            throw new ExecutionRequestException(400, "Invalid filename");
+        }
+        if (input != null
+            && input.getBytes().length > WorkspacePaths.MAX_CONTENT_BYTES) {
+            throw new ExecutionRequestException(400, "Input too large");
+        }
+
+        UserEntity user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        // Validate project ownership
+        ProjectEntity project = projectRepository
+                .findByNameAndUser(projectName, user)
+                .orElseThrow(() -> new RuntimeException("Project not found"));
+
+        Path projectPath = WorkspacePaths.projectDir(user, projectName);
+        Path filePath = projectPath.resolve(filename).normalize();
+        if (!filePath.startsWith(projectPath)) {
+            throw new ExecutionRequestException(400, "Invalid filename path");
+        }
+        if (!Files.exists(filePath)) {
+            throw new ExecutionRequestException(404, "File not found");
+        }
+
+        Path inputPath = null;
+        if (inputFile != null && !inputFile.isBlank()) {
+            if (input != null && !input.isEmpty()) {
+                throw new ExecutionRequestException(400, "Use either input or inputFile");
+            }
+            if (!WorkspacePaths.isSafeFilename(inputFile)) {
+                throw new ExecutionRequestException(400, "Invalid input file");
+            }
+            inputPath = projectPath.resolve(inputFile).normalize();
+            if (!inputPath.startsWith(projectPath)) {
+                throw new ExecutionRequestException(400, "Invalid input file path");
+            }
+            if (!Files.isRegularFile(inputPath)) {
+                throw new ExecutionRequestException(404, "Input file not found");
+            }
+        }
+
+        String extension = ExecutionService.getExtension(filename);
+        if ("html".equals(extension) || "css".equals(extension)) {
+            throw new ExecutionRequestException(400, "Use frontend preview for web files");
+        }
+        if (!ExecutionService.isSupported(filename)) {
+            throw new ExecutionRequestException(400, "Unsupported file type");
+        }
+
+        return new ExecutionJob(username, project, projectName, filename,
+                projectPath, filePath, input, inputPath, outputToFile);
+    }
+}
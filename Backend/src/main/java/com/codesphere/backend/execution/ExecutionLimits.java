@@ -0,0 +1,71 @@
+package com.codesphere.backend.execution;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-execution resource limits, bound from {@code codesphere.limits.*}.
+ * Languages inherit {@code default} and override individual values:
+ *
+ * <pre>
+ * codesphere.limits.default.memory-mb=256
+ * codesphere.limits.languages.java.memory-mb=512
+ * </pre>
+ */
+@Component
+@ConfigurationProperties(prefix = "codesphere.limits")
+public class ExecutionLimits {
+
+    public static class Limit {
+        /** CPU cores the run may use (cgroup cpu.max); also bounds CPU seconds. */
+        private Double cpu;
+        private Integer memoryMb;
+        /** Processes plus threads (cgroup pids.max). */
+        private Integer pids;
+
+        public Limit() {}
+
+        Limit(Double cpu, Integer memoryMb, Integer pids) {
+            this.cpu = cpu;
+            this.memoryMb = memoryMb;
+            this.pids = pids;
+        }
+
+        public Double getCpu() { return cpu; }
+        public void setCpu(Double cpu) { this.cpu = cpu; }
+        public Integer getMemoryMb() { return memoryMb; }
+        public void setMemoryMb(Integer memoryMb) { this.memoryMb = memoryMb; }
+        public Integer getPids() { return pids; }
+        public void setPids(Integer pids) { this.pids = pids; }
+    }
+
+    private boolean enabled = true;
+    /** Delegated cgroup v2 directory; executions get child groups under it. */
+    private String cgroupRoot = "/sys/fs/cgroup/codesphere";
+    private Limit defaults = new Limit(1.0, 256, 64);
+    private Map<String, Limit> languages = new HashMap<>();
+
+    /** The limits for {@code language}, with unset values taken from the defaults. */
+    public Limit forLanguage(String language) {
+        Limit override = languages.get(language);
+        if (override == null) {
+            return defaults;
+        }
+        return new Limit(
+                override.getCpu() != null ? override.getCpu() : defaults.getCpu(),
+                override.getMemoryMb() != null ? override.getMemoryMb() : defaults.getMemoryMb(),
+                override.getPids() != null ? override.getPids() : defaults.getPids());
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public String getCgroupRoot() { return cgroupRoot; }
+    public void setCgroupRoot(String cgroupRoot) { this.cgroupRoot = cgroupRoot; }
+    public Limit getDefault() { return defaults; }
+    public void setDefault(Limit defaults) { this.defaults = defaults; }
+    public Map<String, Limit> getLanguages() { return languages; }
+    public void setLanguages(Map<String, Limit> languages) { this.languages = languages; }
+}
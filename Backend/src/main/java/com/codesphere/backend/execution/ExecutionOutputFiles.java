@@ -0,0 +1,153 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.metrics.MetricsSource;
+import com.codesphere.backend.util.WorkspacePaths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Files that runs in redirect mode write their stdout to. The kernel
+ * writes them directly, so the output never passes through the JVM; clients
+ * get a preview and download the rest. Files are kept as long as finished
+ * jobs can be polled ({@code job-retention-seconds}).
+ */
+@Component
+public class ExecutionOutputFiles implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionOutputFiles.class);
+
+    private static final int PREVIEW_BYTES = 4096;
+    private static final String SUFFIX = ".out";
+
+    private final Path root;
+    private final long maxBytes;
+    private final long retentionSeconds;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "output-file-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+
+    public ExecutionOutputFiles(@Value("${codesphere.execution-output-files.dir:}") String dir,
+                                @Value("${codesphere.execution-output-files.max-bytes:268435456}") long maxBytes,
+                                @Value("${codesphere.execution.job-retention-seconds:600}") long retentionSeconds)
+            throws IOException {
+        this.root = dir == null || dir.isBlank() ? WorkspacePaths.baseDir().resolve(".outputs") : Path.of(dir);
+        this.maxBytes = maxBytes;
+        this.retentionSeconds = retentionSeconds;
+        Files.createDirectories(root);
+        long period = Math.max(1, Math.min(60, retentionSeconds));
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.SECONDS);
+    }
+
+    /** Where the stdout of job {@code jobId} goes. */
+    public Path pathFor(String jobId) {
+        return root.resolve(jobId + SUFFIX);
+    }
+
+    public Optional<Path> find(String jobId) {
+        Path path = pathFor(jobId);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    /** Largest file a run may write; enforced with {@code RLIMIT_FSIZE}. */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** Counts a finished file towards the metrics and returns its size. */
+    long finished(Path file) throws IOException {
+        long size = Files.size(file);
+        written.incrementAndGet();
+        writtenBytes.addAndGet(size);
+        return size;
+    }
+
+    /** The start of the file as text; only these bytes are read. */
+    static String preview(Path file) throws IOException {
+        byte[] head;
+        try (InputStream in = Files.newInputStream(file)) {
+            head = in.readNBytes(PREVIEW_BYTES);
+        }
+        // A character cut off at the end of the preview is dropped, not replaced.
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.IGNORE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(ByteBuffer.wrap(head))
+                .toString();
+    }
+
+    private void sweep() {
+        Instant cutoff = Instant.now().minusSeconds(retentionSeconds);
+        try (Stream<Path> files = Files.list(root)) {
+            files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .filter(path -> modifiedBefore(path, cutoff))
+                    .forEach(this::delete);
+        } catch (IOException e) {
+            log.warn("Could not sweep execution output files: {}", e.getMessage());
+        }
+    }
+
+    private static boolean modifiedBefore(Path path, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(path).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void delete(Path path) {
+        try {
+            if (Files.deleteIfExists(path)) {
+                deleted.incrementAndGet();
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    @Override
+    public String metricsName() {
+        return "outputFiles";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("written", written.get());
+        out.put("writtenBytes", writtenBytes.get());
+        out.put("deleted", deleted.get());
+        return out;
+    }
+}
@@ -0,0 +1,118 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.entity.ExecutionEntity;
+import com.codesphere.backend.metrics.MetricsSource;
+import com.codesphere.backend.storage.BlobStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the executions table narrow: output and error text longer than the
+ * preview limit move to the {@link BlobStore}, and the row keeps the first
+ * characters, the full size in bytes and the blob key. The full text is read
+ * back only on request.
+ */
+@Component
+public class ExecutionOutputStore implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionOutputStore.class);
+
+    private final BlobStore blobs;
+    private final int previewChars;
+
+    private final AtomicLong offloaded = new AtomicLong();
+    private final AtomicLong offloadedBytes = new AtomicLong();
+    private final AtomicLong offloadFailures = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+
+    public ExecutionOutputStore(BlobStore blobs,
+                                @Value("${codesphere.execution-output.preview-chars:2048}") int previewChars) {
+        this.blobs = blobs;
+        this.previewChars = previewChars;
+    }
+
+    /** Moves long output and error text of a not yet saved record to the blob store. */
+    public void offload(ExecutionEntity record) {
+        if (record.getOutputBytes() == null) {
+            record.setOutputBytes(offload(record.getOutput(), record::setOutput, record::setOutputBlob));
+        }
+        if (record.getErrorBytes() == null) {
+            record.setErrorBytes(offload(record.getError(), record::setError, record::setErrorBlob));
+        }
+    }
+
+    /** Full output of a saved record. */
+    public String loadOutput(ExecutionEntity record) throws IOException {
+        return load(record.getOutput(), record.getOutputBlob());
+    }
+
+    /** Full error text of a saved record. */
+    public String loadError(ExecutionEntity record) throws IOException {
+        return load(record.getError(), record.getErrorBlob());
+    }
+
+    private Long offload(String text, Consumer<String> setPreview, Consumer<String> setBlob) {
+        if (text == null) {
+            return null;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (text.length() <= previewChars) {
+            return (long) bytes.length;
+        }
+        try {
+            setBlob.accept(blobs.put(bytes));
+            setPreview.accept(preview(text));
+            offloaded.incrementAndGet();
+            offloadedBytes.addAndGet(bytes.length);
+        } catch (IOException e) {
+            // Keeping the text in the row is better than losing it.
+            offloadFailures.incrementAndGet();
+            log.warn("Could not offload execution output: {}", e.getMessage());
+        }
+        return (long) bytes.length;
+    }
+
+    private String preview(String text) {
+        int end = previewChars;
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    private String load(String column, String blobKey) throws IOException {
+        if (blobKey == null) {
+            return column;
+        }
+        loads.incrementAndGet();
+        return blobs.get(blobKey)
+                .map(bytes -> new String(bytes, StandardCharsets.UTF_8))
+                .orElseThrow(() -> new IOException("Output blob " + blobKey + " is missing"));
+    }
+
+    @Override
+    public String metricsName() {
+        return "executionOutput";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("previewChars", previewChars);
+        out.put("offloaded", offloaded.get());
+        out.put("offloadedBytes", offloadedBytes.get());
+        out.put("offloadFailures", offloadFailures.get());
+        out.put("loads", loads.get());
+        return out;
+    }
+}
@@ -0,0 +1,229 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.config.ExecutionIdSequence;
+import com.codesphere.backend.entity.ExecutionEntity;
+import com.codesphere.backend.metrics.LatencyWindow;
+import com.codesphere.backend.metrics.MetricsSource;
+import com.codesphere.backend.repository.ExecutionRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind persistence of execution records. Runs hand their record to
+ * a bounded in-memory queue and return; a background writer inserts what has
+ * accumulated as JDBC batches. A full queue falls back to a synchronous
+ * insert on the caller rather than dropping records, and whatever is still
+ * queued at shutdown is written before the application stops.
+ */
+@Component
+public class ExecutionRecordWriter implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionRecordWriter.class);
+    private static final long RETRY_BACKOFF_MS = 1000;
+
+    private static final class Queued {
+        final ExecutionEntity record;
+        final long enqueuedNanos = System.nanoTime();
+
+        Queued(ExecutionEntity record) {
+            this.record = record;
+        }
+    }
+
+    private final ExecutionRepository executionRepository;
+    private final ExecutionOutputStore outputStore;
+    private final int batchSize;
+    private final long flushMillis;
+    private final BlockingQueue<Queued> queue;
+    /** Serialises writes so {@link #flush()} can wait out the writer's current batch. */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /** Taken from the queue but not yet written; guarded by {@link #writeLock}. */
+    private final List<Queued> unwritten = new ArrayList<>();
+    private Thread writer;
+    private volatile boolean stopping;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong synchronousWrites = new AtomicLong();
+    private final LatencyWindow flushLag = new LatencyWindow(1024);
+
+    public ExecutionRecordWriter(ExecutionRepository executionRepository,
+                                 ExecutionIdSequence idSequence,
+                                 ExecutionOutputStore outputStore,
+                                 @Value("${codesphere.execution-writer.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${codesphere.execution-writer.batch-size:50}") int batchSize,
+                                 @Value("${codesphere.execution-writer.flush-ms:200}") long flushMillis) {
+        this.executionRepository = executionRepository;
+        this.outputStore = outputStore;
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushMillis = flushMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        writer = new Thread(this::writeLoop, "execution-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Queues a record for insertion; inserts it right away if the queue is full. */
+    public void submit(ExecutionEntity record) {
+        if (stopping || !queue.offer(new Queued(record))) {
+            synchronousWrites.incrementAndGet();
+            outputStore.offload(record);
+            executionRepository.save(record);
+            written.incrementAndGet();
+        }
+    }
+
+    /**
+     * Writes everything queued so far before returning, e.g. before rows a
+     * queued record refers to are deleted.
+     */
+    public void flush() {
+        writeLock.lock();
+        try {
+            while (!unwritten.isEmpty() || !queue.isEmpty()) {
+                if (!writeBatch()) {
+                    break;
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void writeLoop() {
+        while (!stopping) {
+            try {
+                Queued first = queue.poll(1, TimeUnit.SECONDS);
+                // Let a batch accumulate unless it is already full.
+                if (first != null && queue.size() + 1 < batchSize) {
+                    Thread.sleep(flushMillis);
+                }
+                boolean written;
+                writeLock.lock();
+                try {
+                    if (first != null) {
+                        unwritten.add(first);
+                    }
+                    written = writeBatch();
+                } finally {
+                    writeLock.unlock();
+                }
+                if (!written) {
+                    Thread.sleep(RETRY_BACKOFF_MS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Inserts up to one batch. Returns false when the database could not be
+     * reached; the batch is then kept for the next attempt.
+     */
+    private boolean writeBatch() {
+        List<Queued> batch = new ArrayList<>(unwritten);
+        unwritten.clear();
+        queue.drainTo(batch, batchSize - Math.min(batch.size(), batchSize));
+        if (batch.isEmpty()) {
+            return true;
+        }
+        batch.forEach(queued -> outputStore.offload(queued.record));
+        try {
+            executionRepository.saveAll(batch.stream().map(q -> q.record).toList());
+            completed(batch);
+            return true;
+        } catch (TransientDataAccessException | CannotCreateTransactionException e) {
+            failures.incrementAndGet();
+            unwritten.addAll(batch);
+            log.warn("Execution records not written, will retry: {}", e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            // One bad record must not hold back the others: write them one by one.
+            for (Queued queued : batch) {
+                try {
+                    executionRepository.save(queued.record);
+                    completed(List.of(queued));
+                } catch (RuntimeException single) {
+                    dropped.incrementAndGet();
+                    log.error("Dropping execution record for {}: {}", queued.record.getFilename(),
+                            single.getMessage());
+                }
+            }
+            return true;
+        }
+    }
+
+    private void completed(List<Queued> batch) {
+        batches.incrementAndGet();
+        written.addAndGet(batch.size());
+        long oldest = batch.stream().mapToLong(q -> q.enqueuedNanos).min().orElse(System.nanoTime());
+        flushLag.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        if (writer != null) {
+            // Not interrupted: that could abort a batch in the middle of its JDBC calls.
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        writeLock.lock();
+        try {
+            if (!queue.isEmpty() || !unwritten.isEmpty()) {
+                log.error("{} execution records could not be written before shutdown",
+                        queue.size() + unwritten.size());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "executionWriter";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("queueDepth", queue.size());
+        out.put("written", written.get());
+        out.put("batches", batches.get());
+        out.put("failures", failures.get());
+        out.put("dropped", dropped.get());
+        out.put("synchronousWrites", synchronousWrites.get());
+        out.put("flushLag", flushLag.snapshot());
+        return out;
+    }
+}
@@ -0,0 +1,25 @@
+package com.codesphere.backend.execution;
+
+/**
+ * Thrown when the scheduler cannot admit another execution.
+ */
+public class ExecutionRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Suggested wait before retrying, in seconds; 0 when there is no estimate. */
+    private final long retryAfterSeconds;
+
+    public ExecutionRejectedException(String message) {
+        this(message, 0);
+    }
+
+    public ExecutionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
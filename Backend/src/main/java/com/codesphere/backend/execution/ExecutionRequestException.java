@@ -0,0 +1,20 @@
+package com.codesphere.backend.execution;
+
+/**
+ * An execution request that cannot be accepted, with the HTTP status to report.
+ */
+public class ExecutionRequestException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public ExecutionRequestException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,229 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.ExecutionSummary;
+import com.codesphere.backend.entity.ExecutionEntity;
+import com.codesphere.backend.entity.ExecutionRollupEntity;
+import com.codesphere.backend.metrics.MetricsSource;
+import com.codesphere.backend.repository.ExecutionRepository;
+import com.codesphere.backend.repository.ExecutionRollupRepository;
+import com.codesphere.backend.storage.BlobStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the executions table bounded. Each sweep deletes, per project, the
+ * runs that are both older than the TTL and not among the newest
+ * {@code keep-per-project}, folding them into per-day, per-status
+ * {@link ExecutionRollupEntity} rows first so long-term totals survive.
+ *
+ * <p>Rows go oldest first in chunks of {@code batch-size}, one short
+ * transaction per chunk, so a sweep never holds locks on many rows at once.
+ * Afterwards output blobs no row refers to any more are removed.
+ */
+@Component
+public class ExecutionRetention implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionRetention.class);
+
+    // A blob stored this recently may belong to a record the writer has not inserted yet.
+    private static final Duration BLOB_GRACE = Duration.ofHours(1);
+
+    private final ExecutionRepository executionRepository;
+    private final ExecutionRollupRepository rollupRepository;
+    private final ExecutionRecordWriter recordWriter;
+    private final BlobStore blobs;
+    private final TransactionTemplate transactions;
+    private final boolean enabled;
+    private final int keepPerProject;
+    private final long ttlDays;
+    private final int batchSize;
+    private final long intervalSeconds;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "execution-retention");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong sweeps = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong blobsDeleted = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastSweepMs;
+
+    public ExecutionRetention(ExecutionRepository executionRepository,
+                              ExecutionRollupRepository rollupRepository,
+                              ExecutionRecordWriter recordWriter,
+                              BlobStore blobs,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${codesphere.execution-retention.enabled:true}") boolean enabled,
+                              @Value("${codesphere.execution-retention.keep-per-project:100}") int keepPerProject,
+                              @Value("${codesphere.execution-retention.ttl-days:30}") long ttlDays,
+                              @Value("${codesphere.execution-retention.batch-size:500}") int batchSize,
+                              @Value("${codesphere.execution-retention.interval-seconds:3600}") long intervalSeconds) {
+        this.executionRepository = executionRepository;
+        this.rollupRepository = rollupRepository;
+        this.recordWriter = recordWriter;
+        this.blobs = blobs;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.keepPerProject = Math.max(0, keepPerProject);
+        this.ttlDays = Math.max(0, ttlDays);
+        this.batchSize = Math.max(1, batchSize);
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            sweeper.scheduleWithFixedDelay(this::sweepSafely, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private void sweepSafely() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            log.warn("Execution retention sweep failed: {}", e.getMessage());
+        }
+    }
+
+    /** Runs one sweep over all projects and the blob store. */
+    public void sweep() {
+        long started = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(ttlDays);
+        for (Long projectId : executionRepository.findProjectIds()) {
+            try {
+                sweepProject(projectId, cutoff);
+            } catch (RuntimeException e) {
+                // A project deleted mid-sweep, or a rollup written concurrently; next sweep retries.
+                failures.incrementAndGet();
+                log.warn("Retention of project {} failed: {}", projectId, e.getMessage());
+            }
+        }
+        sweepBlobs();
+        sweeps.incrementAndGet();
+        lastSweepMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+
+    private void sweepProject(Long projectId, LocalDateTime cutoff) {
+        LocalDateTime keptAt = cutoff;
+        long keptId = Long.MAX_VALUE;
+        if (keepPerProject > 0) {
+            List<ExecutionSummary> oldestKept =
+                    executionRepository.findHistoryPage(projectId, PageRequest.of(keepPerProject - 1, 1));
+            if (oldestKept.isEmpty()) {
+                return;
+            }
+            keptAt = oldestKept.get(0).getExecutedAt();
+            keptId = oldestKept.get(0).getId();
+        }
+        LocalDateTime boundaryAt = keptAt;
+        long boundaryId = keptId;
+        int removed;
+        do {
+            removed = transactions.execute(status -> {
+                List<ExecutionEntity> batch = executionRepository.findExpired(
+                        projectId, cutoff, boundaryAt, boundaryId, Limit.of(batchSize));
+                if (!batch.isEmpty()) {
+                    rollUp(projectId, batch);
+                    executionRepository.deleteAllByIdInBatch(batch.stream().map(ExecutionEntity::getId).toList());
+                }
+                return batch.size();
+            });
+            deleted.addAndGet(removed);
+        } while (removed == batchSize);
+    }
+
+    private void rollUp(Long projectId, List<ExecutionEntity> batch) {
+        Map<String, ExecutionRollupEntity> rollups = new HashMap<>();
+        for (ExecutionEntity execution : batch) {
+            LocalDate day = execution.getExecutedAt().toLocalDate();
+            String status = execution.getStatus() == null ? "UNKNOWN" : execution.getStatus();
+            rollups.computeIfAbsent(day + "/" + status, key -> rollupRepository
+                    .findRollup(projectId, day, status)
+                    .orElseGet(() -> new ExecutionRollupEntity(execution.getProject(), day, status)))
+                    .add(execution);
+        }
+        rollupRepository.saveAll(rollups.values());
+    }
+
+    private void sweepBlobs() {
+        // Cutoff first: anything older that is still in use is referenced by the time we look.
+        Instant cutoff = Instant.now().minus(BLOB_GRACE);
+        recordWriter.flush();
+        Set<String> referenced = new HashSet<>(executionRepository.findOutputBlobKeys());
+        referenced.addAll(executionRepository.findErrorBlobKeys());
+
+        List<String> unreferenced = new ArrayList<>();
+        try (Stream<String> keys = blobs.keysStoredBefore(cutoff)) {
+            keys.filter(key -> !referenced.contains(key)).forEach(unreferenced::add);
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            log.warn("Could not list output blobs: {}", e.getMessage());
+            return;
+        }
+        for (String key : unreferenced) {
+            try {
+                blobs.delete(key);
+                blobsDeleted.incrementAndGet();
+            } catch (IOException e) {
+                failures.incrementAndGet();
+                log.warn("Could not delete output blob {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    @Override
+    public String metricsName() {
+        return "executionRetention";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("keepPerProject", keepPerProject);
+        out.put("ttlDays", ttlDays);
+        out.put("sweeps", sweeps.get());
+        out.put("lastSweepMs", lastSweepMs);
+        out.put("deleted", deleted.get());
+        out.put("blobsDeleted", blobsDeleted.get());
+        out.put("failures", failures.get());
+        return out;
+    }
+}
@@ -0,0 +1,329 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.ResourceUsage;
+import com.codesphere.backend.metrics.MetricsSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Confines each execution to its configured {@link ExecutionLimits}.
+ *
+ * <p>With a delegated cgroup v2 subtree every run gets its own group with
+ * {@code cpu.max}, {@code memory.max} and {@code pids.max}, which also
+ * provides accounting and lets us kill everything the program spawned.
+ * Without one we fall back to {@code prlimit} rlimits (CPU seconds, and
+ * address space where the runtime tolerates it), which cannot cap process
+ * count or report usage.
+ */
+@Component
+public class ExecutionSandbox implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionSandbox.class);
+
+    private static final String CONTROLLERS = "+cpu +memory +pids";
+    private static final long CPU_PERIOD_US = 100_000;
+    // JVMs, V8, Go and Mono reserve far more address space than they use.
+    private static final Set<String> ADDRESS_SPACE_LIMITED = Set.of("python", "c", "cpp");
+
+    public enum Mode { CGROUP2, PRLIMIT, NONE }
+
+    private final ExecutionLimits limits;
+    private final ToolchainRegistry toolchains;
+    private volatile Mode mode = Mode.NONE;
+    private Path cgroupRoot;
+
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong oomKills = new AtomicLong();
+    private final AtomicLong setupFailures = new AtomicLong();
+
+    public ExecutionSandbox(ExecutionLimits limits, ToolchainRegistry toolchains) {
+        this.limits = limits;
+        this.toolchains = toolchains;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!limits.isEnabled()) {
+            log.warn("Execution resource limits are disabled");
+            return;
+        }
+        try {
+            cgroupRoot = prepareCgroupRoot(Path.of(limits.getCgroupRoot()));
+            mode = Mode.CGROUP2;
+            log.info("Execution limits use cgroup v2 under {}", cgroupRoot);
+        } catch (IOException e) {
+            if (toolchains.isAvailable("prlimit")) {
+                mode = Mode.PRLIMIT;
+                log.warn("cgroup v2 unavailable ({}), limiting executions with prlimit", e.getMessage());
+            } else {
+                log.warn("cgroup v2 and prlimit unavailable ({}), executions are not resource limited",
+                        e.getMessage());
+            }
+        }
+    }
+
+    private static Path prepareCgroupRoot(Path root) throws IOException {
+        Path parent = root.getParent();
+        if (parent == null || !Files.exists(parent.resolve("cgroup.controllers"))) {
+            throw new IOException(parent + " is not a cgroup v2 directory");
+        }
+        Files.createDirectories(root);
+        String available = Files.readString(root.resolve("cgroup.controllers"));
+        for (String controller : List.of("cpu", "memory", "pids")) {
+            if (!List.of(available.trim().split("\\s+")).contains(controller)) {
+                throw new IOException("controller " + controller + " not delegated to " + root);
+            }
+        }
+        Files.writeString(root.resolve("cgroup.subtree_control"), CONTROLLERS);
+        return root;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Starts confinement for one run of {@code language}. The caller launches
+     * through {@link Lease#wrap} (or {@link Lease#cgroupProcs} for a process
+     * that places itself) and must close the lease when the run ends.
+     */
+    public Lease open(String language, long timeoutMillis) {
+        leases.incrementAndGet();
+        ExecutionLimits.Limit limit = limits.forLanguage(language);
+        Path group = null;
+        if (mode == Mode.CGROUP2) {
+            group = cgroupRoot.resolve("exec-" + UUID.randomUUID());
+            try {
+                Files.createDirectory(group);
+                Files.writeString(group.resolve("cpu.max"),
+                        Math.round(limit.getCpu() * CPU_PERIOD_US) + " " + CPU_PERIOD_US);
+                Files.writeString(group.resolve("memory.max"), String.valueOf(limit.getMemoryMb() * 1024L * 1024L));
+                writeIfPresent(group.resolve("memory.swap.max"), "0");
+                Files.writeString(group.resolve("pids.max"), String.valueOf(limit.getPids()));
+            } catch (IOException e) {
+                setupFailures.incrementAndGet();
+                log.warn("Could not create cgroup for execution: {}", e.getMessage());
+                removeGroup(group);
+                group = null;
+            }
+        }
+        return new Lease(language, limit, group, timeoutMillis);
+    }
+
+    /**
+     * {@code command} under rlimits for {@code language} when running in
+     * prlimit mode, otherwise unchanged. For processes started ahead of the
+     * run they will serve.
+     */
+    public List<String> rlimited(String language, long timeoutMillis, List<String> command) {
+        if (mode != Mode.PRLIMIT) {
+            return command;
+        }
+        ExecutionLimits.Limit limit = limits.forLanguage(language);
+        List<String> wrapped = new ArrayList<>();
+        wrapped.add(toolchains.command("prlimit"));
+        wrapped.add("--cpu=" + cpuSeconds(limit, timeoutMillis));
+        long addressSpace = addressSpaceBytes(language, limit);
+        if (addressSpace > 0) {
+            wrapped.add("--as=" + addressSpace);
+        }
+        wrapped.add("--");
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    private static long cpuSeconds(ExecutionLimits.Limit limit, long timeoutMillis) {
+        return Math.max(1, (long) Math.ceil(timeoutMillis / 1000.0 * limit.getCpu()));
+    }
+
+    private long addressSpaceBytes(String language, ExecutionLimits.Limit limit) {
+        return mode == Mode.PRLIMIT && ADDRESS_SPACE_LIMITED.contains(language)
+                ? limit.getMemoryMb() * 1024L * 1024L : 0;
+    }
+
+    private static void writeIfPresent(Path file, String value) throws IOException {
+        if (Files.exists(file)) {
+            Files.writeString(file, value);
+        }
+    }
+
+    private static void removeGroup(Path group) {
+        if (group == null) {
+            return;
+        }
+        try {
+            Path kill = group.resolve("cgroup.kill");
+            if (Files.exists(kill)) {
+                Files.writeString(kill, "1");
+            } else {
+                for (String pid : Files.readAllLines(group.resolve("cgroup.procs"))) {
+                    ProcessHandle.of(Long.parseLong(pid.trim())).ifPresent(ProcessHandle::destroyForcibly);
+                }
+            }
+            // rmdir fails with EBUSY until the killed tasks are gone.
+            for (int attempt = 0; attempt < 50; attempt++) {
+                try {
+                    Files.deleteIfExists(group);
+                    return;
+                } catch (IOException busy) {
+                    Thread.sleep(10);
+                }
+            }
+            log.warn("Could not remove cgroup {}", group);
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Could not clean up cgroup {}: {}", group, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "sandbox";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("mode", mode.name().toLowerCase());
+        out.put("leases", leases.get());
+        out.put("oomKills", oomKills.get());
+        out.put("setupFailures", setupFailures.get());
+        return out;
+    }
+
+    /** Confinement for one run; closing it kills anything left in the group. */
+    public final class Lease implements AutoCloseable {
+        private final String language;
+        private final ExecutionLimits.Limit limit;
+        private final Path group;
+        private final long timeoutMillis;
+        private boolean closed;
+
+        private Lease(String language, ExecutionLimits.Limit limit, Path group, long timeoutMillis) {
+            this.language = language;
+            this.limit = limit;
+            this.group = group;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        public ExecutionLimits.Limit getLimit() {
+            return limit;
+        }
+
+        /** The command that starts {@code command} inside this lease's limits. */
+        public List<String> wrap(List<String> command) {
+            List<String> wrapped = new ArrayList<>();
+            if (group != null) {
+                // Join the group before exec so nothing the program does escapes it.
+                wrapped.addAll(List.of("sh", "-c", "echo $$ > \"$0\" && exec \"$@\"", cgroupProcs().toString()));
+                wrapped.addAll(command);
+                return wrapped;
+            }
+            return rlimited(language, timeoutMillis, command);
+        }
+
+        /** {@code cgroup.procs} of this run's group, or {@code null} without cgroups. */
+        public Path cgroupProcs() {
+            return group == null ? null : group.resolve("cgroup.procs");
+        }
+
+        /** Moves an already running process (one waiting for work) into this lease. */
+        public void attach(long pid) throws IOException {
+            if (group != null) {
+                Files.writeString(cgroupProcs(), Long.toString(pid));
+            }
+        }
+
+        /** CPU seconds allowed over the wall-clock timeout at the configured core share. */
+        public long cpuSeconds() {
+            return ExecutionSandbox.cpuSeconds(limit, timeoutMillis);
+        }
+
+        /** Address-space cap in bytes for rlimit fallbacks, or 0 when none applies. */
+        public long addressSpaceBytes() {
+            return group == null ? ExecutionSandbox.this.addressSpaceBytes(language, limit) : 0;
+        }
+
+        public boolean hasCgroup() {
+            return group != null;
+        }
+
+        /** CPU time the run has used so far in microseconds, or -1 without cgroups. */
+        public long cpuMicros() {
+            if (group == null) {
+                return -1;
+            }
+            return readKeyed(group.resolve("cpu.stat")).getOrDefault("usage_usec", -1L);
+        }
+
+        /** Reads accounting for the run; {@code null} when the node cannot measure it. */
+        public ResourceUsage usage() {
+            if (group == null) {
+                return null;
+            }
+            Map<String, Long> cpu = readKeyed(group.resolve("cpu.stat"));
+            Map<String, Long> events = readKeyed(group.resolve("memory.events"));
+            Long peak = readLong(group.resolve("memory.peak"));
+            if (peak == null) {
+                // Kernels before 5.19 have no memory.peak.
+                peak = readLong(group.resolve("memory.current"));
+            }
+            boolean oom = events.getOrDefault("oom_kill", 0L) > 0;
+            if (oom) {
+                oomKills.incrementAndGet();
+            }
+            return new ResourceUsage(peak,
+                    cpu.containsKey("user_usec") ? cpu.get("user_usec") / 1000 : null,
+                    cpu.containsKey("system_usec") ? cpu.get("system_usec") / 1000 : null,
+                    oom);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                removeGroup(group);
+            }
+        }
+
+        private Map<String, Long> readKeyed(Path file) {
+            Map<String, Long> values = new LinkedHashMap<>();
+            try {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    String[] parts = line.trim().split("\\s+");
+                    if (parts.length == 2) {
+                        values.put(parts[0], Long.parseLong(parts[1]));
+                    }
+                }
+            } catch (IOException | NumberFormatException ignored) {
+                // Missing controller file: report what we have.
+            }
+            return values;
+        }
+
+        private Long readLong(Path file) {
+            try {
+                return Long.parseLong(Files.readString(file).trim());
+            } catch (IOException | NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.ExecutionResult;
+import com.codesphere.backend.dto.ResourceUsage;
+import com.codesphere.backend.metrics.LatencyWindow;
+import com.codesphere.backend.metrics.MetricsSource;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded worker pool with an admission queue in front of process launch.
+ * How many executions run at once is set by an {@link AdaptiveLimit} that
+ * starts at {@code workers} and moves between {@code min-workers} and
+ * {@code max-workers} with how congested the node is while runs execute
+ * ({@link NodePressure}); runs that timed out, were cancelled, or are steps
+ * of judge and interactive work are not sampled. Up to
+ * {@code queueCapacity} more wait their turn; anything beyond that, or
+ * anything arriving while the oldest waiting job has already waited longer
+ * than {@code queue-delay-target-ms}, is rejected with a retry hint instead
+ * of queueing behind work that will time out. Waiting jobs are dispatched
+ * fairly across users by {@link FairShareQueue}.
+ */
+@Component
+public class ExecutionScheduler implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionScheduler.class);
+
+    private final ExecutionService executionService;
+    private final NodePressure pressure;
+    private final FairShareQueue queue;
+    private final ConcurrentMap<String, ExecutionJob> jobs = new ConcurrentHashMap<>();
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private final AdaptiveLimit limit;
+    private final int queueCapacity;
+    private final long queueDelayTargetMs;
+    private final Duration retention;
+
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final LatencyWindow queueWait = new LatencyWindow(1024);
+    private final LatencyWindow runTime = new LatencyWindow(1024);
+    private final ConcurrentMap<String, UserQueueWait> userQueueWait = new ConcurrentHashMap<>();
+    private final long startedNanos = System.nanoTime();
+
+    public ExecutionScheduler(ExecutionService executionService,
+                              NodePressure pressure,
+                              @Value("${codesphere.execution.workers:4}") int workers,
+                              @Value("${codesphere.execution.queue-capacity:64}") int queueCapacity,
+                              @Value("${codesphere.execution.queue-capacity-per-user:16}") int perUserCapacity,
+                              @Value("${codesphere.execution.fair-share-quantum-ms:1000}") long quantumMs,
+                              @Value("${codesphere.execution.job-retention-seconds:600}") long retentionSeconds,
+                              @Value("${codesphere.execution.adaptive-limit:true}") boolean adaptive,
+                              @Value("${codesphere.execution.min-workers:1}") int minWorkers,
+                              @Value("${codesphere.execution.max-workers:0}") int maxWorkers,
+                              @Value("${codesphere.execution.stall-target-percent:20}") long stallTargetPercent,
+                              @Value("${codesphere.execution.queue-delay-target-ms:2000}") long queueDelayTargetMs) {
+        this.executionService = executionService;
+        this.pressure = pressure;
+        workers = Math.max(1, workers);
+        if (!adaptive) {
+            minWorkers = workers;
+            maxWorkers = workers;
+        } else if (maxWorkers <= 0) {
+            maxWorkers = Math.max(workers, 2 * Runtime.getRuntime().availableProcessors());
+        }
+        this.limit = new AdaptiveLimit(workers, minWorkers, maxWorkers, stallTargetPercent);
+        this.queueDelayTargetMs = queueDelayTargetMs;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.queue = new FairShareQueue(this.queueCapacity,
+                Math.max(1, Math.min(perUserCapacity, this.queueCapacity)), Math.max(1, quantumMs));
+        this.retention = Duration.ofSeconds(retentionSeconds);
+
+        // One thread per slot the limit could ever grant; the limit decides how many run.
+        for (int i = 0; i < limit.getMaxLimit(); i++) {
+            Thread thread = new Thread(this::workLoop, "exec-worker-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            workerThreads.add(thread);
+        }
+    }
+
+    /**
+     * Queues the job and returns immediately.
+     *
+     * @throws ExecutionRejectedException if the admission queue is full or
+     *         waiting jobs are already past the queue delay target
+     */
+    public ExecutionJob submit(ExecutionJob job) {
+        purgeExpired();
+        shedIfBacklogged();
+        jobs.put(job.getId(), job);
+        try {
+            offer(job);
+        } catch (ExecutionRejectedException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Runs {@code step} on a worker on behalf of {@code owner}'s user, for
+     * work that feeds a program run elsewhere: compiling an interactive
+     * session or a judge batch, or one judge case. Steps wait in the same
+     * fair-share queue as runs, take a slot of the concurrency limit and are
+     * charged to the user like runs. They are not listed by {@link #find}.
+     *
+     * <p>With {@code newWork} the step is refused like a new run once the
+     * queue is past its delay target; steps continuing work that was already
+     * admitted are only refused when the queue is full. Cancelling the
+     * returned future takes a waiting step out of the queue; a result that
+     * arrives after that is closed if it holds resources.
+     *
+     * @throws ExecutionRejectedException if the step cannot be queued
+     */
+    public <T> CompletableFuture<T> submitStep(ExecutionJob owner, boolean newWork, Callable<T> step) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ExecutionJob carrier = ExecutionJob.stepOf(owner, () -> {
+            T value;
+            try {
+                value = step.call();
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            if (!result.complete(value) && value instanceof AutoCloseable resource) {
+                try {
+                    resource.close();
+                } catch (Exception e) {
+                    log.warn("Could not release abandoned step result: {}", e.getMessage());
+                }
+            }
+        });
+        if (newWork) {
+            shedIfBacklogged();
+        }
+        offer(carrier);
+        // Only reached without a result when the step was cancelled before it ran.
+        carrier.getCompletion().whenComplete((done, error) ->
+                result.completeExceptionally(new CancellationException("Execution cancelled")));
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                cancel(carrier);
+            }
+        });
+        return result;
+    }
+
+    private void shedIfBacklogged() {
+        if (queueDelayTargetMs > 0 && queue.oldestWaitMs() > queueDelayTargetMs) {
+            shed.incrementAndGet();
+            throw new ExecutionRejectedException("Execution backlog is too long, try again shortly",
+                    retryAfterSeconds());
+        }
+    }
+
+    private void offer(ExecutionJob job) {
+        if (!queue.offer(job)) {
+            rejected.incrementAndGet();
+            throw new ExecutionRejectedException("Execution queue is full, try again shortly",
+                    retryAfterSeconds());
+        }
+        submitted.incrementAndGet();
+    }
+
+    public Optional<ExecutionJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Stops a job: a waiting one leaves the queue at once, a running one has
+     * its processes killed and frees its worker as soon as they are gone.
+     * Returns {@code false} if the job had already finished.
+     */
+    public boolean cancel(ExecutionJob job) {
+        if (job.isFinished()) {
+            return false;
+        }
+        if (job.getCancellation().cancel()) {
+            cancelled.incrementAndGet();
+        }
+        if (queue.remove(job)) {
+            job.complete(cancelledResult());
+        }
+        return true;
+    }
+
+    /** Roughly how long the current backlog takes to drain at the current limit. */
+    private long retryAfterSeconds() {
+        long drainMs = queue.size() * Math.max(runTime.percentile(50), 100) / limit.getLimit();
+        return Math.max(1, Math.min(30, (drainMs + 999) / 1000));
+    }
+
+    static ExecutionResult cancelledResult() {
+        return new ExecutionResult(null, "Execution cancelled", ExecutionJob.CANCELLED);
+    }
+
+    /** True while runs are waiting or every worker is busy; background work should hold off. */
+    public boolean isBusy() {
+        return queue.size() > 0 || busyWorkers.get() >= limit.getLimit();
+    }
+
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            ExecutionJob job;
+            try {
+                limit.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                limit.release();
+                Thread.currentThread().interrupt();
+                return;
+            }
+            runJob(job);
+        }
+    }
+
+    private void runJob(ExecutionJob job) {
+        if (job.getCancellation().isCancelled()) {
+            // Cancelled between leaving the queue and reaching this worker.
+            job.complete(cancelledResult());
+            limit.release();
+            return;
+        }
+        job.markStarted();
+        queueWait.record(job.getQueueWaitMs());
+        userQueueWait.computeIfAbsent(job.getUsername(), u -> new UserQueueWait())
+                .record(job.getQueueWaitMs());
+        limit.started();
+        busyWorkers.incrementAndGet();
+        long stallBefore = pressure.stallMicros();
+        long start = System.nanoTime();
+        ExecutionResult result = null;
+        try {
+            if (job.getStep() != null) {
+                job.getStep().run();
+                result = new ExecutionResult(null, null, "SUCCESS");
+            } else {
+                result = executionService.run(job);
+            }
+            job.complete(result);
+        } catch (Exception e) {
+            log.warn("Execution {} failed: {}", job.getId(), e.getMessage());
+            job.fail(e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            queue.charge(job.getUsername(), cost(result, elapsed / 1_000_000));
+            busyNanos.addAndGet(elapsed);
+            runTime.record(elapsed / 1_000_000);
+            busyWorkers.decrementAndGet();
+            limit.finished(stallPercent(job, result, stallBefore, elapsed));
+            completed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Share of the run's wall time in which the node stalled, or {@code null}
+     * when the run should not steer the limit: a cancelled run ended early,
+     * a timed-out one ran for as long as it was allowed whatever the load,
+     * and steps are sampled through the runs they belong to.
+     */
+    private Long stallPercent(ExecutionJob job, ExecutionResult result, long stallBefore, long elapsedNanos) {
+        if (stallBefore < 0 || job.getStep() != null || job.getCancellation().isCancelled()
+                || result == null || "TIMEOUT".equals(result.getStatus())) {
+            return null;
+        }
+        long stallAfter = pressure.stallMicros();
+        if (stallAfter < stallBefore) {
+            return null;
+        }
+        return (stallAfter - stallBefore) * 1000 * 100 / Math.max(1, elapsedNanos);
+    }
+
+    /**
+     * What a run is charged against its owner's fair share: CPU time when the
+     * sandbox measured it, otherwise how long it held a worker.
+     */
+    private static long cost(ExecutionResult result, long elapsedMs) {
+        ResourceUsage usage = result == null ? null : result.getUsage();
+        if (usage == null || usage.getCpuUserMs() == null || usage.getCpuSystemMs() == null) {
+            return elapsedMs;
+        }
+        return usage.getCpuUserMs() + usage.getCpuSystemMs();
+    }
+
+    private void purgeExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinished()
+                && job.getFinishedAt() != null
+                && job.getFinishedAt().isBefore(cutoff));
+        userQueueWait.values().removeIf(wait -> wait.lastRecorded.isBefore(cutoff));
+    }
+
+    /** Queue wait percentiles of {@code username}'s recent runs, if it had any. */
+    public Optional<Map<String, Object>> queueWaitOf(String username) {
+        return Optional.ofNullable(userQueueWait.get(username)).map(wait -> wait.window.snapshot());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workerThreads.forEach(Thread::interrupt);
+    }
+
+    @Override
+    public String metricsName() {
+        return "scheduler";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        long uptime = System.nanoTime() - startedNanos;
+        Map<String, Object> out = new LinkedHashMap<>();
+        int currentLimit = limit.getLimit();
+        out.put("workers", currentLimit);
+        out.put("busyWorkers", busyWorkers.get());
+        out.put("utilisation", uptime == 0 ? 0.0 : (double) busyNanos.get() / ((double) uptime * currentLimit));
+        Map<String, Object> adaptive = new LinkedHashMap<>();
+        adaptive.put("limit", currentLimit);
+        adaptive.put("minLimit", limit.getMinLimit());
+        adaptive.put("maxLimit", limit.getMaxLimit());
+        adaptive.put("signal", pressure.isAvailable() ? "stall" : "none");
+        adaptive.put("stallTargetPercent", limit.getStallTargetPercent());
+        adaptive.put("lastRoundMedianStallPercent", limit.getLastRoundMedianStallPercent());
+        adaptive.put("increases", limit.getIncreases());
+        adaptive.put("decreases", limit.getDecreases());
+        out.put("concurrencyLimit", adaptive);
+        out.put("queueDepth", queue.size());
+        out.put("queuedUsers", queue.activeUsers());
+        out.put("queueCapacity", queueCapacity);
+        out.put("oldestQueuedMs", queue.oldestWaitMs());
+        out.put("queueDelayTargetMs", queueDelayTargetMs);
+        out.put("submitted", submitted.get());
+        out.put("rejected", rejected.get());
+        out.put("shed", shed.get());
+        out.put("completed", completed.get());
+        out.put("cancelled", cancelled.get());
+        out.put("queueWait", queueWait.snapshot());
+        out.put("runTime", runTime.snapshot());
+        // Who ran what is not for every account to see; only how unfair the worst case is.
+        out.put("queueWaitUsers", userQueueWait.size());
+        out.put("worstUserQueueWaitP95Ms", userQueueWait.values().stream()
+                .mapToLong(wait -> wait.window.percentile(95))
+                .max()
+                .orElse(0));
+        return out;
+    }
+
+    /** One user's recent queue waits; dropped after {@code job-retention-seconds} without a run. */
+    private static final class UserQueueWait {
+
+        private final LatencyWindow window = new LatencyWindow(256);
+        private volatile Instant lastRecorded = Instant.now();
+
+        void record(long millis) {
+            window.record(millis);
+            lastRecorded = Instant.now();
+        }
+    }
+}
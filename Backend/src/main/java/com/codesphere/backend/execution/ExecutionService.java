@@ -0,0 +1,511 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.ExecutionResult;
+import com.codesphere.backend.dto.ResourceUsage;
+import com.codesphere.backend.entity.ExecutionEntity;
+
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Runs a single source file with the toolchain matching its extension and
+ * records the outcome. Called from {@link ExecutionScheduler} worker threads,
+ * never directly from a request thread.
+ */
+@Service
+public class ExecutionService {
+
+    private static final Set<String> SUPPORTED_EXTENSIONS =
+            Set.of("java", "py", "js", "c", "cpp", "cc", "cxx", "go", "cs");
+
+    private static final long COMPILE_TIMEOUT_MS = 5000;
+    static final long RUN_TIMEOUT_MS = 5000;
+    private static final Set<String> C_HEADERS = Set.of("h");
+    private static final Set<String> CPP_HEADERS = Set.of("h", "hpp", "hh", "hxx");
+    private static final Set<String> C_UNITS = Set.of("c");
+    private static final Set<String> CPP_UNITS = Set.of("cpp", "cc", "cxx");
+    /** Everything {@code go build} may read besides the entry file: packages of the module and its manifest. */
+    private static final Set<String> GO_SOURCES = Set.of("go", "mod", "sum");
+
+    private final ExecutionRecordWriter recordWriter;
+    private final ProcessIoPump ioPump;
+    private final BuildCache buildCache;
+    private final InProcessJavaCompiler javaCompiler;
+    private final WarmJavaRunnerPool javaRunnerPool;
+    private final PythonForkServer pythonForkServer;
+    private final NodeSparePool nodeSpares;
+    private final ToolchainRegistry toolchains;
+    private final ExecutionSandbox sandbox;
+    private final GoBuildCache goBuildCache;
+    private final NativeProjectBuilder nativeProjects;
+    private final JavaProjectBuilder javaProjects;
+    private final ScratchSpace scratchSpace;
+    private final ExecutionOutputFiles outputFiles;
+
+    public ExecutionService(ExecutionRecordWriter recordWriter,
+                            ProcessIoPump ioPump,
+                            BuildCache buildCache,
+                            InProcessJavaCompiler javaCompiler,
+                            WarmJavaRunnerPool javaRunnerPool,
+                            PythonForkServer pythonForkServer,
+                            NodeSparePool nodeSpares,
+                            ToolchainRegistry toolchains,
+                            ExecutionSandbox sandbox,
+                            GoBuildCache goBuildCache,
+                            NativeProjectBuilder nativeProjects,
+                            JavaProjectBuilder javaProjects,
+                            ScratchSpace scratchSpace,
+                            ExecutionOutputFiles outputFiles) {
+        this.recordWriter = recordWriter;
+        this.ioPump = ioPump;
+        this.buildCache = buildCache;
+        this.javaCompiler = javaCompiler;
+        this.javaRunnerPool = javaRunnerPool;
+        this.pythonForkServer = pythonForkServer;
+        this.nodeSpares = nodeSpares;
+        this.toolchains = toolchains;
+        this.sandbox = sandbox;
+        this.goBuildCache = goBuildCache;
+        this.nativeProjects = nativeProjects;
+        this.javaProjects = javaProjects;
+        this.scratchSpace = scratchSpace;
+        this.outputFiles = outputFiles;
+    }
+
+    /** Language name used for limits and toolchain reports. */
+    static String languageOf(String extension) {
+        return switch (extension) {
+            case "java" -> "java";
+            case "py" -> "python";
+            case "js" -> "javascript";
+            case "c" -> "c";
+            case "cpp", "cc", "cxx" -> "cpp";
+            case "go" -> "go";
+            case "cs" -> "csharp";
+            default -> extension;
+        };
+    }
+
+    public static boolean isSupported(String filename) {
+        return SUPPORTED_EXTENSIONS.contains(getExtension(filename));
+    }
+
+    public static String getExtension(String filename) {
+        int index = filename.lastIndexOf('.');
+        return index == -1 ? "" : filename.substring(index + 1).toLowerCase();
+    }
+
+    /**
+     * Executes the job's file and stores the result in the executions table.
+     */
+    public ExecutionResult run(ExecutionJob job) throws Exception {
+        RunCancellation cancellation = job.getCancellation();
+        ExecutionResult result = job.isRedirected()
+                ? executeRedirected(job, cancellation)
+                : execute(job.getUsername(), job.getProjectPath(), job.getFilePath(), job.isProjectRun(),
+                        job.getInput(), job::publishOutput, cancellation);
+        if (cancellation.isCancelled()) {
+            ResourceUsage usage = result.getUsage();
+            result = ExecutionScheduler.cancelledResult();
+            result.setUsage(usage);
+        }
+
+        ExecutionEntity execution = new ExecutionEntity();
+        execution.setProject(job.getProject());
+        execution.setFilename(job.getFilename());
+        execution.setStatus(result.getStatus());
+        execution.setOutput(result.getOutput());
+        execution.setError(result.getError());
+        ResourceUsage usage = result.getUsage();
+        if (usage != null) {
+            execution.setPeakMemoryBytes(usage.getPeakMemoryBytes());
+            execution.setCpuUserMs(usage.getCpuUserMs());
+            execution.setCpuSystemMs(usage.getCpuSystemMs());
+            execution.setOomKilled(usage.isOomKilled());
+        }
+
+        recordWriter.submit(execution);
+        return result;
+    }
+
+    private ExecutionResult execute(String username,
+                                    Path projectPath,
+                                    Path filePath,
+                                    boolean projectRun,
+                                    String input,
+                                    Consumer<String> sink,
+                                    RunCancellation cancellation) throws Exception {
+        try (PreparedProgram program = prepare(projectPath, filePath, projectRun)) {
+            if (!program.isReady() || cancellation.isCancelled()) {
+                return program.isReady() ? ExecutionScheduler.cancelledResult() : program.getFailure();
+            }
+            if (program.getMainClass() != null) {
+                ExecutionResult warm = javaRunnerPool.tryRun(username, program.getClassesDir(),
+                        program.getMainClass(), input, sink, RUN_TIMEOUT_MS, cancellation);
+                if (warm != null) {
+                    return warm;
+                }
+            }
+            String language = languageOf(getExtension(filePath.getFileName().toString()));
+            try (ScratchSpace.Scratch scratch = scratchSpace.open(projectPath);
+                 ExecutionSandbox.Lease lease = sandbox.open(language, RUN_TIMEOUT_MS)) {
+                scratch.onOverflow(cancellation::stop);
+                ExecutionResult result = null;
+                if ("python".equals(language)) {
+                    result = pythonForkServer.tryRun(scratch.dir(), filePath, input, sink, RUN_TIMEOUT_MS,
+                            lease, cancellation);
+                }
+                if ("javascript".equals(language)) {
+                    Process spare = nodeSpares.claim(scratch.dir(), filePath, lease);
+                    if (spare != null) {
+                        result = runWithInput(spare, input, sink, cancellation);
+                    }
+                }
+                if (result == null) {
+                    ProcessBuilder builder = program.processBuilder().directory(scratch.dir().toFile());
+                    builder.command(lease.wrap(fileSizeLimited(builder.command(), scratchSpace.getRunMaxBytes())));
+                    result = runWithInput(builder.start(), input, sink, cancellation);
+                }
+                if (scratch.overflowMessage() != null) {
+                    result = new ExecutionResult(null, scratch.overflowMessage(), "ERROR");
+                }
+                return withUsage(result, lease);
+            }
+        }
+    }
+
+    /**
+     * Redirect mode: stdin is read from a workspace file and/or stdout written
+     * to an output file by the kernel, so large data is never copied through
+     * the JVM. Warm runners are skipped since they are fed through pipes.
+     */
+    private ExecutionResult executeRedirected(ExecutionJob job, RunCancellation cancellation) throws Exception {
+        try (PreparedProgram program = prepare(job.getProjectPath(), job.getFilePath(), job.isProjectRun())) {
+            if (!program.isReady() || cancellation.isCancelled()) {
+                return program.isReady() ? ExecutionScheduler.cancelledResult() : program.getFailure();
+            }
+            String language = languageOf(getExtension(job.getFilename()));
+            Path outputFile = job.isOutputToFile() ? outputFiles.pathFor(job.getId()) : null;
+            try (ScratchSpace.Scratch scratch = scratchSpace.open(job.getProjectPath());
+                 ExecutionSandbox.Lease lease = sandbox.open(language, RUN_TIMEOUT_MS)) {
+                ProcessBuilder builder = program.processBuilder().directory(scratch.dir().toFile());
+                if (job.getInputFile() != null) {
+                    builder.redirectInput(job.getInputFile().toFile());
+                }
+                long fileSizeLimit = scratchSpace.getRunMaxBytes();
+                if (outputFile != null) {
+                    // stderr stays on a pipe so errors still show up in the result.
+                    builder.redirectErrorStream(false).redirectOutput(outputFile.toFile());
+                    fileSizeLimit = Math.max(fileSizeLimit, outputFiles.getMaxBytes());
+                }
+                builder.command(lease.wrap(fileSizeLimited(builder.command(), fileSizeLimit)));
+
+                Process run = builder.start();
+                cancellation.onCancel(() -> ProcessIoPump.destroyTree(run.toHandle()));
+                scratch.onOverflow(cancellation::stop);
+                ProcessOutcome outcome;
+                try {
+                    outcome = ioPump.run(run, job.getInputFile() == null ? job.getInput() : null, RUN_TIMEOUT_MS,
+                            ioPump.newBuffer(), job::publishOutput, ioPump.newBuffer(), job::publishOutput);
+                } finally {
+                    cancellation.onCancel(null);
+                }
+                if (scratch.overflowMessage() != null) {
+                    return withUsage(new ExecutionResult(null, scratch.overflowMessage(), "ERROR"), lease);
+                }
+                return withUsage(redirectedResult(outcome, outputFile), lease);
+            }
+        }
+    }
+
+    private ExecutionResult redirectedResult(ProcessOutcome outcome, Path outputFile) throws IOException {
+        if (outputFile == null) {
+            return resultOf(outcome);
+        }
+        long bytes = outputFiles.finished(outputFile);
+        ExecutionResult result;
+        if (outcome.isTimedOut()) {
+            result = new ExecutionResult(null, "Execution timed out", "TIMEOUT");
+        } else if (outcome.getExitCode() != 0) {
+            String error = outcome.getStderr().toString();
+            if (bytes >= outputFiles.getMaxBytes()) {
+                error += "\nKilled: output file limit of " + outputFiles.getMaxBytes() / (1024 * 1024)
+                        + " MB exceeded";
+            }
+            result = new ExecutionResult(null, error, "ERROR");
+        } else {
+            BoundedOutputBuffer stderr = outcome.getStderr();
+            result = new ExecutionResult(ExecutionOutputFiles.preview(outputFile),
+                    stderr.isEmpty() ? null : stderr.toString(), "SUCCESS");
+        }
+        result.setOutputFileBytes(bytes);
+        return result;
+    }
+
+    /** Caps the size of files the program writes, when {@code prlimit} is there to do it. */
+    List<String> fileSizeLimited(List<String> command, long maxBytes) {
+        if (!toolchains.isAvailable("prlimit")) {
+            return command;
+        }
+        List<String> limited = new ArrayList<>();
+        limited.add(toolchains.command("prlimit"));
+        limited.add("--fsize=" + maxBytes);
+        limited.add("--");
+        limited.addAll(command);
+        return limited;
+    }
+
+    /** Attaches the run's accounting and explains a kill by the memory limit. */
+    private static ExecutionResult withUsage(ExecutionResult result, ExecutionSandbox.Lease lease) {
+        ResourceUsage usage = lease.usage();
+        if (usage != null && usage.isOomKilled() && !"SUCCESS".equals(result.getStatus())) {
+            String error = result.getError() == null ? "" : result.getError();
+            result = new ExecutionResult(result.getOutput(),
+                    error + "\nKilled: memory limit of " + lease.getLimit().getMemoryMb() + " MB exceeded",
+                    result.getStatus());
+        }
+        result.setUsage(usage);
+        return result;
+    }
+
+    /**
+     * Compiles the file if its language needs it (reusing a cached build when
+     * the sources are unchanged) and returns the command that runs it. A
+     * project run of Java, C or C++ builds every source file of the project
+     * incrementally instead of the single file.
+     */
+    public PreparedProgram prepare(Path projectPath, Path filePath, boolean projectRun) throws Exception {
+        String extension = getExtension(filePath.getFileName().toString());
+        return switch (extension) {
+            case "java" -> projectRun && javaProjects.isAvailable()
+                    ? prepareJavaProject(projectPath, filePath)
+                    : prepareJava(projectPath, filePath);
+            case "py" -> preparePython(projectPath, filePath);
+            case "js" -> prepareNode(projectPath, filePath);
+            case "c" -> projectRun
+                    ? prepareNativeProject("gcc", projectPath, C_UNITS)
+                    : prepareNative("gcc", projectPath, filePath, C_HEADERS);
+            case "cpp", "cc", "cxx" -> projectRun
+                    ? prepareNativeProject("g++", projectPath, CPP_UNITS)
+                    : prepareNative("g++", projectPath, filePath, CPP_HEADERS);
+            case "go" -> prepareGo(projectPath, filePath);
+            case "cs" -> prepareCSharp(projectPath, filePath);
+            default -> PreparedProgram.failed("Unsupported file type");
+        };
+    }
+
+    /** Whether this node can run each supported language, from the toolchain registry. */
+    public Map<String, Boolean> languageSupport() {
+        boolean cSharp = (toolchains.isAvailable("mcs") && toolchains.isAvailable("mono"))
+                || (toolchains.isAvailable("csc")
+                        && (toolchains.isAvailable("mono") || toolchains.isAvailable("dotnet")));
+        Map<String, Boolean> support = new LinkedHashMap<>();
+        support.put("java", toolchains.isAvailable("java")
+                && (javaCompiler.isAvailable() || toolchains.isAvailable("javac")));
+        support.put("python", toolchains.isAvailable("python3"));
+        support.put("javascript", toolchains.isAvailable("node"));
+        support.put("c", toolchains.isAvailable("gcc"));
+        support.put("cpp", toolchains.isAvailable("g++"));
+        support.put("go", toolchains.isAvailable("go"));
+        support.put("csharp", cSharp);
+        return support;
+    }
+
+    // ---------------- helpers ----------------
+
+    private PreparedProgram prepareJava(Path projectPath, Path filePath) throws Exception {
+        boolean inProcess = javaCompiler.isAvailable();
+        if (!inProcess && !toolchains.isAvailable("javac")) {
+            return PreparedProgram.failed("javac is not installed on server");
+        }
+        if (!toolchains.isAvailable("java")) {
+            return PreparedProgram.failed("java runtime is not installed on server");
+        }
+
+        // javac resolves other classes from sibling sources, so all of them feed the key.
+        List<Path> sources = companionSources(projectPath, filePath, Set.of("java"));
+        String identity = inProcess ? javaCompiler.identity() : toolchains.identity("javac");
+        String key = BuildCache.keyOf(identity, List.of("javac", relativeName(projectPath, filePath)),
+                projectPath, sources);
+        BuildCache.Build build = buildCache.getOrBuild(key, outputDir -> {
+            if (!inProcess) {
+                return compile(new ProcessBuilder(
+                        toolchains.command("javac"), "-d", outputDir.toString(),
+                        filePath.getFileName().toString())
+                        .directory(projectPath.toFile()));
+            }
+            InProcessJavaCompiler.Result compiled =
+                    javaCompiler.compile(projectPath, filePath, COMPILE_TIMEOUT_MS);
+            if (!compiled.isSuccess()) {
+                return compiled.getFailure();
+            }
+            InProcessJavaCompiler.writeClasses(compiled.getClasses(), outputDir);
+            return null;
+        });
+        if (!build.isSuccess()) {
+            return PreparedProgram.failed(build.getFailure());
+        }
+
+        String className = filePath.getFileName().toString().replace(".java", "");
+        return PreparedProgram.java(projectPath, toolchains.command("java"), build.getDir(), className)
+                .releasing(build::release);
+    }
+
+    private PreparedProgram prepareJavaProject(Path projectPath, Path filePath) throws Exception {
+        if (!toolchains.isAvailable("java")) {
+            return PreparedProgram.failed("java runtime is not installed on server");
+        }
+        return javaProjects.build(projectPath, filePath, toolchains.command("java"), COMPILE_TIMEOUT_MS);
+    }
+
+    private PreparedProgram preparePython(Path projectPath, Path filePath) {
+        if (!toolchains.isAvailable("python3")) {
+            return PreparedProgram.failed("python3 is not installed on server");
+        }
+        return PreparedProgram.ready(projectPath, toolchains.command("python3"), filePath.toString());
+    }
+
+    private PreparedProgram prepareNode(Path projectPath, Path filePath) {
+        if (!toolchains.isAvailable("node")) {
+            return PreparedProgram.failed("Node.js is not installed on server");
+        }
+        return PreparedProgram.ready(projectPath, toolchains.command("node"), filePath.toString());
+    }
+
+    private PreparedProgram prepareNative(String compiler, Path projectPath, Path filePath,
+                                          Set<String> headerExtensions) throws Exception {
+        if (!toolchains.isAvailable(compiler)) {
+            return PreparedProgram.failed(compiler + " is not installed on server");
+        }
+        List<Path> sources = companionSources(projectPath, filePath, headerExtensions);
+        String key = BuildCache.keyOf(toolchains.identity(compiler),
+                List.of(compiler, relativeName(projectPath, filePath)), projectPath, sources);
+        BuildCache.Build build = buildCache.getOrBuild(key, outputDir -> compile(new ProcessBuilder(
+                toolchains.command(compiler), filePath.getFileName().toString(),
+                "-o", outputDir.resolve("a.out").toString())
+                .directory(projectPath.toFile())));
+        if (!build.isSuccess()) {
+            return PreparedProgram.failed(build.getFailure());
+        }
+        return PreparedProgram.ready(projectPath, build.getDir().resolve("a.out").toString())
+                .releasing(build::release);
+    }
+
+    /** Builds every C or C++ source of the project, recompiling only changed units. */
+    private PreparedProgram prepareNativeProject(String compiler, Path projectPath,
+                                                 Set<String> unitExtensions) throws Exception {
+        if (!toolchains.isAvailable(compiler)) {
+            return PreparedProgram.failed(compiler + " is not installed on server");
+        }
+        return nativeProjects.build(compiler, toolchains.command(compiler), toolchains.identity(compiler),
+                projectPath, unitExtensions, COMPILE_TIMEOUT_MS);
+    }
+
+    /**
+     * Builds a binary instead of using {@code go run}, which relinks on every
+     * run. Package compilation is shared through the managed GOCACHE and
+     * {@code -trimpath} keeps its entries independent of the workspace path.
+     */
+    private PreparedProgram prepareGo(Path projectPath, Path filePath) throws Exception {
+        if (!toolchains.isAvailable("go")) {
+            return PreparedProgram.failed("Go is not installed on server");
+        }
+        List<Path> sources = companionSources(projectPath, filePath, GO_SOURCES);
+        String key = BuildCache.keyOf(toolchains.identity("go"),
+                List.of("go", "build", "-trimpath", relativeName(projectPath, filePath)), projectPath, sources);
+        BuildCache.Build build = buildCache.getOrBuild(key, outputDir -> compile(goBuildCache.configure(
+                new ProcessBuilder(toolchains.command("go"), "build", "-trimpath",
+                        "-o", outputDir.resolve("main").toString(), filePath.getFileName().toString())
+                        .directory(projectPath.toFile()))));
+        if (!build.isSuccess()) {
+            return PreparedProgram.failed(build.getFailure());
+        }
+        return PreparedProgram.ready(projectPath, build.getDir().resolve("main").toString())
+                .releasing(build::release);
+    }
+
+    private PreparedProgram prepareCSharp(Path projectPath, Path filePath) throws Exception {
+        String compiler = toolchains.isAvailable("mcs") ? "mcs" : toolchains.isAvailable("csc") ? "csc" : null;
+        if (compiler == null) {
+            return PreparedProgram.failed("C# compiler not installed on server");
+        }
+        String runtime = toolchains.isAvailable("mono") ? "mono"
+                : "csc".equals(compiler) && toolchains.isAvailable("dotnet") ? "dotnet" : null;
+        if (runtime == null) {
+            return PreparedProgram.failed("mcs".equals(compiler)
+                    ? "mono is not installed on server"
+                    : "C# runtime not installed on server");
+        }
+
+        String key = BuildCache.keyOf(toolchains.identity(compiler),
+                List.of(compiler, relativeName(projectPath, filePath)), projectPath, List.of(filePath));
+        BuildCache.Build build = buildCache.getOrBuild(key, outputDir -> compile(new ProcessBuilder(
+                toolchains.command(compiler), filePath.getFileName().toString(),
+                "-out:" + outputDir.resolve("Program.exe"))
+                .directory(projectPath.toFile())));
+        if (!build.isSuccess()) {
+            return PreparedProgram.failed(build.getFailure());
+        }
+        return PreparedProgram.ready(projectPath,
+                toolchains.command(runtime), build.getDir().resolve("Program.exe").toString())
+                .releasing(build::release);
+    }
+
+    /**
+     * The file itself plus every project file with one of {@code extensions},
+     * in a stable order, i.e. everything the compiler might read.
+     */
+    private static List<Path> companionSources(Path projectPath, Path filePath,
+                                               Set<String> extensions) throws IOException {
+        try (Stream<Path> files = Files.walk(projectPath)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .filter(file -> file.equals(filePath)
+                            || extensions.contains(getExtension(file.getFileName().toString())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /** The entry file as passed to the compiler; part of every cache key. */
+    private static String relativeName(Path projectPath, Path filePath) {
+        return projectPath.relativize(filePath).toString();
+    }
+
+    /** {@link NativeProjectBuilder#compile} with the usual compile timeout. */
+    private ExecutionResult compile(ProcessBuilder builder) throws Exception {
+        return NativeProjectBuilder.compile(ioPump, builder, COMPILE_TIMEOUT_MS);
+    }
+
+    private ExecutionResult runWithInput(Process run, String input, Consumer<String> sink,
+                                         RunCancellation cancellation) throws Exception {
+        cancellation.onCancel(() -> ProcessIoPump.destroyTree(run.toHandle()));
+        ProcessOutcome outcome;
+        try {
+            outcome = ioPump.run(run, input, sink, RUN_TIMEOUT_MS);
+        } finally {
+            cancellation.onCancel(null);
+        }
+        return resultOf(outcome);
+    }
+
+    private static ExecutionResult resultOf(ProcessOutcome outcome) {
+        if (outcome.isTimedOut()) {
+            return new ExecutionResult(null, "Execution timed out", "TIMEOUT");
+        }
+        if (outcome.getExitCode() != 0) {
+            return new ExecutionResult(null, outcome.getOutput(), "ERROR");
+        }
+        return new ExecutionResult(outcome.getOutput(), null, "SUCCESS");
+    }
+}
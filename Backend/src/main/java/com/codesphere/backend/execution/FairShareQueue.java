@@ -0,0 +1,198 @@
+package com.codesphere.backend.execution;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission queue that shares workers fairly between users using deficit
+ * round robin. Every user with waiting jobs gets {@code quantumMs} of credit
+ * per round and is charged afterwards for what each run actually consumed,
+ * so an account that floods the queue with long runs falls behind users
+ * submitting short ones instead of making them wait.
+ */
+public class FairShareQueue {
+
+    private static final class UserQueue {
+        final Deque<ExecutionJob> jobs = new ArrayDeque<>();
+        long deficit;
+    }
+
+    private static final long MAX_DEBT_QUANTA = 30;
+
+    private final int capacity;
+    private final int perUserCapacity;
+    private final long quantumMs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<String, UserQueue> users = new HashMap<>();
+    /** Users with waiting jobs, in round-robin order. */
+    private final Deque<String> active = new ArrayDeque<>();
+    private int size;
+
+    public FairShareQueue(int capacity, int perUserCapacity, long quantumMs) {
+        this.capacity = capacity;
+        this.perUserCapacity = perUserCapacity;
+        this.quantumMs = quantumMs;
+    }
+
+    /** Queues the job unless the queue, or the user's share of it, is full. */
+    public boolean offer(ExecutionJob job) {
+        lock.lock();
+        try {
+            UserQueue user = users.computeIfAbsent(job.getUsername(), u -> new UserQueue());
+            if (size >= capacity || user.jobs.size() >= perUserCapacity) {
+                return false;
+            }
+            if (user.jobs.isEmpty()) {
+                active.addLast(job.getUsername());
+            }
+            user.jobs.addLast(job);
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Blocks until a job is waiting and returns the one whose owner is next in line. */
+    public ExecutionJob take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Like {@link #take()} but gives up after {@code timeout}, returning {@code null}. */
+    public ExecutionJob poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Takes a job out of the queue before it starts; false if it is not waiting. */
+    public boolean remove(ExecutionJob job) {
+        lock.lock();
+        try {
+            UserQueue user = users.get(job.getUsername());
+            if (user == null || !user.jobs.remove(job)) {
+                return false;
+            }
+            size--;
+            if (user.jobs.isEmpty()) {
+                active.remove(job.getUsername());
+                forgetIfIdle(job.getUsername(), user);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Charges {@code username} for a finished run. */
+    public void charge(String username, long costMs) {
+        lock.lock();
+        try {
+            UserQueue user = users.get(username);
+            if (user != null) {
+                // Cap the debt so one heavy burst is not held against a user for ever.
+                user.deficit = Math.max(user.deficit - costMs, -MAX_DEBT_QUANTA * quantumMs);
+                forgetIfIdle(username, user);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** How long the longest-waiting job has been queued; 0 when nothing waits. */
+    public long oldestWaitMs() {
+        lock.lock();
+        try {
+            long oldest = 0;
+            for (String username : active) {
+                // Each user's jobs are queued in order, so only the heads matter.
+                oldest = Math.max(oldest, users.get(username).jobs.peekFirst().getQueueWaitMs());
+            }
+            return oldest;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int activeUsers() {
+        lock.lock();
+        try {
+            return active.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ExecutionJob next() {
+        // Nobody has credit left: give every waiting user as many quanta as the
+        // least indebted one needs to get back above zero.
+        long bestDeficit = Long.MIN_VALUE;
+        for (String username : active) {
+            bestDeficit = Math.max(bestDeficit, users.get(username).deficit);
+        }
+        if (bestDeficit <= 0) {
+            long rounds = (-bestDeficit) / quantumMs + 1;
+            for (String username : active) {
+                users.get(username).deficit += rounds * quantumMs;
+            }
+        }
+
+        while (true) {
+            String username = active.pollFirst();
+            UserQueue user = users.get(username);
+            if (user.deficit > 0) {
+                ExecutionJob job = user.jobs.pollFirst();
+                size--;
+                if (!user.jobs.isEmpty()) {
+                    active.addLast(username);
+                }
+                return job;
+            }
+            active.addLast(username);
+        }
+    }
+
+    private void forgetIfIdle(String username, UserQueue user) {
+        if (!user.jobs.isEmpty()) {
+            return;
+        }
+        // Unused credit is not banked; debt is kept until later rounds pay it off.
+        if (user.deficit >= 0) {
+            users.remove(username);
+        }
+    }
+}
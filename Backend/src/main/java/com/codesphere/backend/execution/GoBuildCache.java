@@ -0,0 +1,158 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.metrics.MetricsSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * The {@code GOCACHE} shared by every Go build on this node. One stable
+ * directory lets the go tool reuse compiled packages (the standard library
+ * above all) across runs and projects. The go tool itself only drops entries
+ * unused for days, so the cache is trimmed here, least recently used files
+ * first, whenever it outgrows its budget.
+ */
+@Component
+public class GoBuildCache implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(GoBuildCache.class);
+
+    /** Cache entries live in 256 two-hex-digit subdirectories; other files are the tool's own. */
+    private static final Pattern ENTRY_DIR = Pattern.compile("[0-9a-f]{2}");
+
+    private final Path root;
+    private final long maxBytes;
+    private final long trimSeconds;
+    private final ScheduledExecutorService trimmer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "go-cache-trim");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long sizeBytes;
+    private final AtomicLong trims = new AtomicLong();
+    private final AtomicLong trimmedBytes = new AtomicLong();
+
+    public GoBuildCache(@Value("${codesphere.go-cache.dir:}") String dir,
+                        @Value("${codesphere.go-cache.max-bytes:1073741824}") long maxBytes,
+                        @Value("${codesphere.go-cache.trim-seconds:600}") long trimSeconds) throws IOException {
+        this.root = dir == null || dir.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "codesphere-go-cache")
+                : Path.of(dir);
+        this.maxBytes = maxBytes;
+        this.trimSeconds = trimSeconds;
+        Files.createDirectories(root);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (trimSeconds > 0) {
+            trimmer.scheduleWithFixedDelay(this::trim, 0, trimSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /** Points a go command at the managed cache. */
+    public ProcessBuilder configure(ProcessBuilder builder) {
+        builder.environment().put("GOCACHE", root.toString());
+        return builder;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Deletes the least recently used cache files until the cache is back
+     * under three quarters of its budget. The go tool refreshes an entry's
+     * modification time when it uses it, so that time orders entries by use.
+     * A deleted entry is just a cache miss for the next build.
+     */
+    public synchronized void trim() {
+        List<Path> files = new ArrayList<>();
+        Map<Path, BasicFileAttributes> attributes = new LinkedHashMap<>();
+        long total = 0;
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : dirs.filter(Files::isDirectory)
+                    .filter(d -> ENTRY_DIR.matcher(d.getFileName().toString()).matches())
+                    .toList()) {
+                try (Stream<Path> entries = Files.list(dir)) {
+                    for (Path file : entries.toList()) {
+                        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                        if (attrs.isRegularFile()) {
+                            files.add(file);
+                            attributes.put(file, attrs);
+                            total += attrs.size();
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not scan Go build cache {}: {}", root, e.getMessage());
+            return;
+        }
+
+        if (total > maxBytes) {
+            long target = maxBytes / 4 * 3;
+            files.sort(Comparator.comparing(file -> attributes.get(file).lastModifiedTime()));
+            long freed = 0;
+            for (Path file : files) {
+                if (total - freed <= target) {
+                    break;
+                }
+                try {
+                    Files.deleteIfExists(file);
+                    freed += attributes.get(file).size();
+                } catch (IOException e) {
+                    // Being written or already gone; the next pass retries.
+                }
+            }
+            trims.incrementAndGet();
+            trimmedBytes.addAndGet(freed);
+            total -= freed;
+            log.info("Trimmed {} bytes from Go build cache {}", freed, root);
+        }
+        sizeBytes = total;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        trimmer.shutdownNow();
+    }
+
+    @Override
+    public String metricsName() {
+        return "goBuildCache";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("dir", root.toString());
+        out.put("sizeBytes", sizeBytes);
+        out.put("maxBytes", maxBytes);
+        out.put("trims", trims.get());
+        out.put("trimmedBytes", trimmedBytes.get());
+        return out;
+    }
+}
@@ -0,0 +1,257 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.ExecutionResult;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compiles user Java sources inside the backend JVM with {@link JavaCompiler},
+ * which avoids forking a {@code javac} JVM per run. Class files are collected
+ * in memory and never touch the project directory; diagnostics are rendered
+ * in javac's own {@code File.java:line: error: message} shape.
+ *
+ * <p>Compiles run on one thread per CPU. javac cannot be interrupted, so a
+ * compile that times out still holds its caller, usually a scheduler worker,
+ * until it really ends; that keeps runaway compiles counted against the
+ * scheduler's limit instead of piling up behind it.
+ */
+@Component
+public class InProcessJavaCompiler {
+
+    /** Compiled classes keyed by binary name, or the diagnostics that stopped compilation. */
+    public static final class Result {
+        private final Map<String, byte[]> classes;
+        private final Map<String, Path> sources;
+        private final ExecutionResult failure;
+
+        private Result(Map<String, byte[]> classes, Map<String, Path> sources, ExecutionResult failure) {
+            this.classes = classes;
+            this.sources = sources;
+            this.failure = failure;
+        }
+
+        public Map<String, byte[]> getClasses() { return classes; }
+        /** The source file each class was compiled from. */
+        public Map<String, Path> getSources() { return sources; }
+        public ExecutionResult getFailure() { return failure; }
+        public boolean isSuccess() { return failure == null; }
+    }
+
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    private final boolean enabled;
+    private final ExecutorService compileThreads = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "javac-in-process");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public InProcessJavaCompiler(@Value("${codesphere.execution.java-compiler:in-process}") String mode) {
+        this.enabled = "in-process".equalsIgnoreCase(mode);
+    }
+
+    /** True when configured for in-process mode and the backend runs on a JDK. */
+    public boolean isAvailable() {
+        return enabled && compiler != null;
+    }
+
+    /** Identity for build-cache keys; changes when the backend JDK is upgraded. */
+    public String identity() {
+        return "javax.tools " + System.getProperty("java.version");
+    }
+
+    /**
+     * Compiles {@code filePath}; other classes it references are resolved from
+     * sources under {@code projectPath}, just like running javac in that directory.
+     * A compile that times out is reported only once javac has finished.
+     */
+    public Result compile(Path projectPath, Path filePath, long timeoutMillis) throws Exception {
+        return compile(projectPath, List.of(filePath), List.of(
+                "-sourcepath", projectPath.toString(),
+                // Keep the backend's own classpath away from user code.
+                "-classpath", projectPath.toString()), timeoutMillis);
+    }
+
+    /**
+     * Compiles exactly {@code sources}; other classes they reference must be
+     * on {@code classpath}, e.g. the output of an earlier build.
+     */
+    public Result compile(Path projectPath, List<Path> sources, Path classpath,
+                          long timeoutMillis) throws Exception {
+        return compile(projectPath, sources, List.of(
+                "-sourcepath", "",
+                "-classpath", classpath.toString(),
+                "-implicit:none"), timeoutMillis);
+    }
+
+    private Result compile(Path projectPath, List<Path> sources, List<String> pathOptions,
+                           long timeoutMillis) throws Exception {
+        // Claimed by whichever comes first: the compile thread, or a caller giving up while it is queued.
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<Result> task = compileThreads.submit(
+                () -> claimed.compareAndSet(false, true) ? doCompile(projectPath, sources, pathOptions) : null);
+        try {
+            return task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (claimed.compareAndSet(false, true)) {
+                task.cancel(false);
+            } else {
+                awaitEnd(task);
+            }
+            return new Result(null, null, new ExecutionResult(null, "Compilation timed out", "TIMEOUT"));
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /** Waits for a compile that is past its timeout; javac does not react to interrupts. */
+    private static void awaitEnd(Future<Result> task) {
+        try {
+            task.get();
+        } catch (ExecutionException ignored) {
+            // Timed out already; how it ended does not matter.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Result doCompile(Path projectPath, List<Path> sources, List<String> pathOptions)
+            throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, MemoryClassFile> outputs = new ConcurrentHashMap<>();
+
+        try (StandardJavaFileManager standard =
+                     compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8);
+             JavaFileManager files = new MemoryFileManager(standard, outputs)) {
+
+            List<String> options = new ArrayList<>(pathOptions);
+            options.addAll(List.of("-proc:none", "-encoding", "UTF-8"));
+            Iterable<? extends JavaFileObject> units = standard.getJavaFileObjectsFromPaths(sources);
+            boolean ok = compiler.getTask(null, files, diagnostics, options, null, units).call();
+
+            if (!ok) {
+                return new Result(null, null, new ExecutionResult(null,
+                        render(projectPath, diagnostics.getDiagnostics()), "ERROR"));
+            }
+        }
+
+        Map<String, byte[]> classes = new ConcurrentHashMap<>();
+        Map<String, Path> origins = new ConcurrentHashMap<>();
+        outputs.forEach((name, file) -> {
+            classes.put(name, file.bytes());
+            if (file.source != null) {
+                origins.put(name, file.source);
+            }
+        });
+        return new Result(classes, origins, null);
+    }
+
+    /**
+     * Writes compiled classes as {@code .class} files in package directories
+     * under {@code outputDir}, i.e. a classpath root.
+     */
+    public static void writeClasses(Map<String, byte[]> classes, Path outputDir) throws IOException {
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            Path target = outputDir.resolve(entry.getKey().replace('.', '/') + ".class");
+            Files.createDirectories(target.getParent());
+            Files.write(target, entry.getValue());
+        }
+    }
+
+    private static String render(Path projectPath, List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        StringBuilder out = new StringBuilder();
+        int errors = 0;
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors++;
+            }
+            if (diagnostic.getSource() != null) {
+                Path source = Path.of(diagnostic.getSource().toUri());
+                out.append(source.startsWith(projectPath) ? projectPath.relativize(source) : source.getFileName())
+                        .append(':').append(diagnostic.getLineNumber()).append(": ");
+            }
+            out.append(diagnostic.getKind() == Diagnostic.Kind.ERROR ? "error" : "warning")
+                    .append(": ")
+                    .append(diagnostic.getMessage(Locale.ROOT))
+                    .append('\n');
+        }
+        out.append(errors).append(errors == 1 ? " error" : " errors").append('\n');
+        return out.toString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compileThreads.shutdownNow();
+    }
+
+    private static final class MemoryClassFile extends SimpleJavaFileObject {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final Path source;
+
+        MemoryClassFile(String className, Path source) {
+            super(URI.create("mem:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.source = source;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+
+        byte[] bytes() {
+            return bytes.toByteArray();
+        }
+    }
+
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, MemoryClassFile> outputs;
+
+        MemoryFileManager(StandardJavaFileManager delegate, Map<String, MemoryClassFile> outputs) {
+            super(delegate);
+            this.outputs = outputs;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) {
+            Path source = sibling != null && "file".equals(sibling.toUri().getScheme())
+                    ? Path.of(sibling.toUri()) : null;
+            MemoryClassFile file = new MemoryClassFile(className, source);
+            outputs.put(className, file);
+            return file;
+        }
+    }
+}
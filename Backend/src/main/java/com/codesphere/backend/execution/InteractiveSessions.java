@@ -0,0 +1,640 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.ExecutionResult;
+import com.codesphere.backend.dto.ResourceUsage;
+import com.codesphere.backend.entity.ExecutionEntity;
+import com.codesphere.backend.metrics.MetricsSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Interactive runs: the program's stdin and output stay connected to a
+ * client for as long as it lives, instead of stdin being passed up front.
+ * The compile step is queued on the {@link ExecutionScheduler} like any run,
+ * so it counts against fair share and the concurrency limit; the running
+ * program then leaves the scheduler's workers, which are sized for short
+ * runs, and is capped per node by {@code max-sessions} and per user by
+ * {@code max-sessions-per-user} instead.
+ *
+ * <p>Sessions are cheap to hold while idle. Java 17 has no virtual threads,
+ * so rather than parking reader threads per session, one poller thread checks
+ * every session's output pipe with {@code available()} and reads only what
+ * is there, polling idle sessions less often. Pool threads are taken only to
+ * start programs, to write stdin and to send output, and block only while the
+ * program does not read its stdin or the client does not read its socket.
+ *
+ * <p>Both directions are bounded. Output stops being read once
+ * {@code output-high-water} bytes wait to be sent, so a slow client leaves the
+ * program blocked on a full pipe; stdin beyond {@code stdin-high-water}
+ * unwritten bytes is refused until the program catches up.
+ *
+ * <p>A session may use as much CPU time as a one-shot run, however long it
+ * stays open. Under prlimit the kernel enforces that; a cgroup's
+ * {@code cpu.max} only throttles, so there the poller reads the group's CPU
+ * usage and ends the session once it is spent.
+ */
+@Component
+public class InteractiveSessions implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(InteractiveSessions.class);
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final long TICK_MS = 10;
+    private static final long MAX_POLL_INTERVAL_MS = 200;
+    private static final int TRANSCRIPT_HEAD_CHARS = 8192;
+    private static final int TRANSCRIPT_TAIL_CHARS = 8192;
+
+    /** The client end of a session. {@link #send} may block while the client is slow. */
+    public interface Peer {
+        void send(Map<String, Object> frame) throws IOException;
+
+        void close(String reason);
+    }
+
+    private final ExecutionService executionService;
+    private final ExecutionScheduler scheduler;
+    private final ExecutionSandbox sandbox;
+    private final ScratchSpace scratchSpace;
+    private final ExecutionRecordWriter recordWriter;
+    private final int maxSessions;
+    private final int maxSessionsPerUser;
+    private final long idleTimeoutMs;
+    private final long maxDurationMs;
+    private final long outputHighWater;
+    private final long stdinHighWater;
+
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final Map<String, AtomicInteger> reservedByUser = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "interactive-poll");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService ioThreads = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "interactive-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong idleTimeouts = new AtomicLong();
+    private final AtomicLong stdinRefused = new AtomicLong();
+    private final AtomicLong outputStalls = new AtomicLong();
+    private final AtomicLong cpuTimeouts = new AtomicLong();
+
+    public InteractiveSessions(ExecutionService executionService,
+                               ExecutionScheduler scheduler,
+                               ExecutionSandbox sandbox,
+                               ScratchSpace scratchSpace,
+                               ExecutionRecordWriter recordWriter,
+                               @Value("${codesphere.interactive.max-sessions:500}") int maxSessions,
+                               @Value("${codesphere.interactive.max-sessions-per-user:5}") int maxSessionsPerUser,
+                               @Value("${codesphere.interactive.idle-timeout-seconds:300}") long idleTimeoutSeconds,
+                               @Value("${codesphere.interactive.max-duration-seconds:3600}") long maxDurationSeconds,
+                               @Value("${codesphere.interactive.output-high-water:65536}") long outputHighWater,
+                               @Value("${codesphere.interactive.stdin-high-water:65536}") long stdinHighWater) {
+        this.executionService = executionService;
+        this.scheduler = scheduler;
+        this.sandbox = sandbox;
+        this.scratchSpace = scratchSpace;
+        this.recordWriter = recordWriter;
+        this.maxSessions = Math.max(1, maxSessions);
+        this.maxSessionsPerUser = Math.max(1, maxSessionsPerUser);
+        this.idleTimeoutMs = TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+        this.maxDurationMs = TimeUnit.SECONDS.toMillis(maxDurationSeconds);
+        this.outputHighWater = Math.max(CHUNK_SIZE, outputHighWater);
+        this.stdinHighWater = Math.max(CHUNK_SIZE, stdinHighWater);
+        poller.scheduleWithFixedDelay(this::pollAll, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a compile of {@code job}'s file and starts it connected to
+     * {@code peer} once built. Throws {@link ExecutionRejectedException} when
+     * the node already holds {@code max-sessions} sessions, the user holds
+     * {@code max-sessions-per-user}, or the scheduler refuses the compile.
+     */
+    public Session open(ExecutionJob job, Peer peer) {
+        reserve(job.getUsername());
+        Session session = new Session(job, peer);
+        CompletableFuture<PreparedProgram> build;
+        try {
+            build = scheduler.submitStep(job, true, () -> executionService.prepare(job.getProjectPath(),
+                    job.getFilePath(), job.isProjectRun()));
+        } catch (ExecutionRejectedException e) {
+            unreserve(job.getUsername());
+            throw e;
+        }
+        session.building(build);
+        build.whenCompleteAsync(session::start, ioThreads);
+        return session;
+    }
+
+    /** Connects an already started process; {@code job} may be {@code null}, which skips recording. */
+    Session attach(ExecutionJob job, Peer peer, Process process) {
+        reserve(job == null ? null : job.getUsername());
+        Session session = new Session(job, peer);
+        session.started(process, List.of());
+        return session;
+    }
+
+    private void reserve(String username) {
+        if (reserved.incrementAndGet() > maxSessions) {
+            reserved.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new ExecutionRejectedException("Too many interactive sessions, try again later");
+        }
+        if (username != null) {
+            AtomicInteger mine = reservedByUser.computeIfAbsent(username, u -> new AtomicInteger());
+            if (mine.incrementAndGet() > maxSessionsPerUser) {
+                unreserve(username);
+                rejected.incrementAndGet();
+                throw new ExecutionRejectedException("You already have " + maxSessionsPerUser
+                        + " interactive sessions open");
+            }
+        }
+        opened.incrementAndGet();
+    }
+
+    private void unreserve(String username) {
+        reserved.decrementAndGet();
+        if (username != null) {
+            reservedByUser.computeIfPresent(username, (u, count) -> count.decrementAndGet() <= 0 ? null : count);
+        }
+    }
+
+    private void pollAll() {
+        long now = System.nanoTime();
+        for (Session session : sessions) {
+            try {
+                session.poll(now);
+            } catch (RuntimeException e) {
+                log.warn("Interactive session poll failed", e);
+                session.finish("ERROR", null, "Session failed: " + e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+        for (Session session : sessions) {
+            session.finish(ExecutionJob.CANCELLED, null, "Server is shutting down");
+        }
+        ioThreads.shutdown();
+    }
+
+    @Override
+    public String metricsName() {
+        return "interactive";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("open", reserved.get());
+        out.put("maxSessions", maxSessions);
+        out.put("maxSessionsPerUser", maxSessionsPerUser);
+        out.put("opened", opened.get());
+        out.put("rejected", rejected.get());
+        out.put("idleTimeouts", idleTimeouts.get());
+        out.put("stdinRefused", stdinRefused.get());
+        out.put("outputStalls", outputStalls.get());
+        out.put("cpuTimeouts", cpuTimeouts.get());
+        return out;
+    }
+
+    /** One connected program. */
+    public final class Session {
+
+        private final ExecutionJob job;
+        private final Peer peer;
+        private final SerialIo toPeer = new SerialIo(this::peerFailed);
+        private final SerialIo toStdin = new SerialIo(this::stdinFailed);
+        private final long openedAt = System.nanoTime();
+        private final BoundedOutputBuffer transcript =
+                new BoundedOutputBuffer(TRANSCRIPT_HEAD_CHARS, TRANSCRIPT_TAIL_CHARS);
+        private final ByteBuffer undecoded = ByteBuffer.allocate(CHUNK_SIZE);
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private Process process;
+        private CompletableFuture<PreparedProgram> build;
+        private List<AutoCloseable> resources = List.of();
+        private ExecutionSandbox.Lease lease;
+        private boolean finished;
+        private boolean stalled;
+        private volatile boolean peerGone;
+        private volatile long lastActivity = System.nanoTime();
+        private long nextPoll;
+        private long nextCpuCheck;
+        private long pollInterval = TimeUnit.MILLISECONDS.toNanos(TICK_MS);
+
+        private Session(ExecutionJob job, Peer peer) {
+            this.job = job;
+            this.peer = peer;
+        }
+
+        /** Queues {@code data} for the program's stdin; refused while too much is still unwritten. */
+        public void write(String data) {
+            byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                if (process == null) {
+                    sendError("Program has not started yet");
+                    return;
+                }
+                if (toStdin.pendingBytes() + bytes.length > stdinHighWater) {
+                    stdinRefused.incrementAndGet();
+                    sendError("Input refused: the program has not read earlier input yet");
+                    return;
+                }
+                lastActivity = System.nanoTime();
+                pollSoon();
+                OutputStream stdin = process.getOutputStream();
+                toStdin.submit(bytes.length, () -> {
+                    stdin.write(bytes);
+                    stdin.flush();
+                });
+            }
+        }
+
+        /** Closes the program's stdin once everything queued has been written. */
+        public synchronized void closeStdin() {
+            if (process != null && !finished) {
+                OutputStream stdin = process.getOutputStream();
+                toStdin.submit(0, stdin::close);
+            }
+        }
+
+        /** The client went away: kill the program. */
+        public void disconnect() {
+            peerGone = true;
+            finish(ExecutionJob.CANCELLED, null, "Client disconnected");
+        }
+
+        private synchronized void building(CompletableFuture<PreparedProgram> pending) {
+            build = pending;
+        }
+
+        private void start(PreparedProgram program, Throwable error) {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (cause instanceof CancellationException) {
+                    // The client left while the compile was queued.
+                    finish(ExecutionJob.CANCELLED, null, "Execution cancelled");
+                } else {
+                    finish("ERROR", null, "Could not start program: " + cause.getMessage());
+                }
+                return;
+            }
+            List<AutoCloseable> held = new ArrayList<>();
+            try {
+                held.add(program);
+                if (!program.isReady()) {
+                    closeAll(held);
+                    finish("ERROR", null, program.getFailure().getError());
+                    return;
+                }
+                String language = ExecutionService.languageOf(ExecutionService.getExtension(job.getFilename()));
+                ScratchSpace.Scratch scratch = scratchSpace.open(job.getProjectPath());
+                held.add(scratch);
+                // A one-shot run's CPU budget, enforced by prlimit or by poll(); waiting for input costs none.
+                ExecutionSandbox.Lease opened = sandbox.open(language, ExecutionService.RUN_TIMEOUT_MS);
+                held.add(opened);
+                ProcessBuilder builder = program.processBuilder().directory(scratch.dir().toFile());
+                builder.command(opened.wrap(
+                        executionService.fileSizeLimited(builder.command(), scratchSpace.getRunMaxBytes())));
+                // Prints should reach the client as they happen, not when Python's buffer fills.
+                builder.environment().put("PYTHONUNBUFFERED", "1");
+                synchronized (this) {
+                    lease = opened;
+                }
+                started(builder.start(), held);
+                scratch.onOverflow(() -> finish("ERROR", null, scratch.overflowMessage()));
+            } catch (Exception e) {
+                closeAll(held);
+                finish("ERROR", null, "Could not start program: " + e.getMessage());
+            }
+        }
+
+        private void started(Process started, List<AutoCloseable> held) {
+            synchronized (this) {
+                if (finished) {
+                    // Disconnected while compiling.
+                    ProcessIoPump.destroyTree(started.toHandle());
+                    closeAll(held);
+                    return;
+                }
+                process = started;
+                resources = held;
+                lastActivity = System.nanoTime();
+                nextPoll = lastActivity;
+                sessions.add(this);
+                send(Map.of("type", "started"));
+            }
+        }
+
+        private synchronized void poll(long now) {
+            if (finished || process == null || now < nextPoll) {
+                return;
+            }
+            // Sampled before reading: everything printed before the exit is then already in the pipe.
+            boolean alive = process.isAlive();
+            boolean drained;
+            try {
+                drained = readAvailable();
+            } catch (IOException e) {
+                drained = true;
+            }
+
+            if (!alive && drained) {
+                flushDecoder();
+                int exitCode = process.exitValue();
+                finish(exitCode == 0 ? "SUCCESS" : "ERROR", exitCode, null);
+            } else if (now - lastActivity > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs)) {
+                idleTimeouts.incrementAndGet();
+                finish("TIMEOUT", null, "Session idle for " + idleTimeoutMs / 1000 + " s");
+            } else if (now - openedAt > TimeUnit.MILLISECONDS.toNanos(maxDurationMs)) {
+                finish("TIMEOUT", null, "Session time limit of " + maxDurationMs / 1000 + " s reached");
+            } else if (cpuSpent(now)) {
+                cpuTimeouts.incrementAndGet();
+                finish("TIMEOUT", null, "CPU time limit of " + lease.cpuSeconds() + " s reached");
+            } else {
+                nextPoll = now + pollInterval;
+                // Quiet sessions are polled less often; any activity resets this.
+                pollInterval = Math.min(pollInterval * 2, TimeUnit.MILLISECONDS.toNanos(MAX_POLL_INTERVAL_MS));
+            }
+        }
+
+        /** Whether the group has used up the lease's CPU seconds; read at most every {@value #MAX_POLL_INTERVAL_MS} ms. */
+        private boolean cpuSpent(long now) {
+            if (lease == null || !lease.hasCgroup() || now < nextCpuCheck) {
+                return false;
+            }
+            nextCpuCheck = now + TimeUnit.MILLISECONDS.toNanos(MAX_POLL_INTERVAL_MS);
+            return lease.cpuMicros() > TimeUnit.SECONDS.toMicros(lease.cpuSeconds());
+        }
+
+        /** Reads what the pipe holds without blocking; {@code false} if output was left unread. */
+        private boolean readAvailable() throws IOException {
+            InputStream out = process.getInputStream();
+            int available;
+            while ((available = out.available()) > 0) {
+                if (toPeer.pendingBytes() >= outputHighWater) {
+                    if (!stalled) {
+                        stalled = true;
+                        outputStalls.incrementAndGet();
+                    }
+                    return false;
+                }
+                stalled = false;
+                int read = out.read(undecoded.array(), undecoded.position(),
+                        Math.min(available, undecoded.remaining()));
+                if (read < 0) {
+                    return true;
+                }
+                undecoded.position(undecoded.position() + read);
+                decode(false);
+                lastActivity = System.nanoTime();
+                pollSoon();
+            }
+            return true;
+        }
+
+        private void flushDecoder() {
+            decode(true);
+        }
+
+        private void decode(boolean endOfInput) {
+            undecoded.flip();
+            CharBuffer chars = CharBuffer.allocate(undecoded.remaining() + 1);
+            decoder.decode(undecoded, chars, endOfInput);
+            if (endOfInput) {
+                decoder.flush(chars);
+            }
+            // A character split across reads stays behind for the next one.
+            undecoded.compact();
+            chars.flip();
+            if (chars.hasRemaining()) {
+                String text = chars.toString();
+                transcript.append(text);
+                Map<String, Object> frame = new LinkedHashMap<>();
+                frame.put("type", "output");
+                frame.put("data", text);
+                send(frame, text.length());
+            }
+        }
+
+        private void pollSoon() {
+            pollInterval = TimeUnit.MILLISECONDS.toNanos(TICK_MS);
+            nextPoll = Math.min(nextPoll, System.nanoTime());
+        }
+
+        private void finish(String status, Integer exitCode, String message) {
+            ResourceUsage usage;
+            List<AutoCloseable> held;
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                if (process != null) {
+                    // Also takes down anything the program left running in the background.
+                    ProcessIoPump.destroyTree(process.toHandle());
+                }
+                usage = lease == null ? null : lease.usage();
+                if (build != null) {
+                    // Leaves the scheduler's queue if the compile has not started yet.
+                    build.cancel(false);
+                }
+                held = resources;
+                resources = List.of();
+            }
+            sessions.remove(this);
+            unreserve(job == null ? null : job.getUsername());
+            closeAll(held);
+            record(status, message, usage);
+
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("type", "exit");
+            frame.put("status", status);
+            frame.put("exitCode", exitCode);
+            frame.put("message", message);
+            frame.put("usage", usage);
+            if (!peerGone) {
+                send(frame);
+                toPeer.submit(0, () -> peer.close(status));
+            }
+        }
+
+        private void record(String status, String message, ResourceUsage usage) {
+            if (job == null || recordWriter == null) {
+                return;
+            }
+            String output = transcript.toString();
+            ExecutionResult result = switch (status) {
+                case "SUCCESS" -> new ExecutionResult(output, null, status);
+                case "ERROR" -> new ExecutionResult(null, message == null ? output : message, status);
+                default -> new ExecutionResult(output, message, status);
+            };
+            ExecutionEntity execution = new ExecutionEntity();
+            execution.setProject(job.getProject());
+            execution.setFilename(job.getFilename());
+            execution.setStatus(result.getStatus());
+            execution.setOutput(result.getOutput());
+            execution.setError(result.getError());
+            if (usage != null) {
+                execution.setPeakMemoryBytes(usage.getPeakMemoryBytes());
+                execution.setCpuUserMs(usage.getCpuUserMs());
+                execution.setCpuSystemMs(usage.getCpuSystemMs());
+                execution.setOomKilled(usage.isOomKilled());
+            }
+            recordWriter.submit(execution);
+        }
+
+        private void sendError(String message) {
+            send(Map.of("type", "error", "message", message));
+        }
+
+        private void send(Map<String, Object> frame) {
+            send(frame, 0);
+        }
+
+        private void send(Map<String, Object> frame, int bytes) {
+            toPeer.submit(bytes, () -> peer.send(frame));
+        }
+
+        private void peerFailed(IOException e) {
+            peerGone = true;
+            finish(ExecutionJob.CANCELLED, null, "Client disconnected");
+        }
+
+        private synchronized void stdinFailed(IOException e) {
+            // The program closed stdin or exited; the poller reports an exit.
+            if (!finished) {
+                sendError("Program is no longer reading input");
+            }
+        }
+    }
+
+    private static void closeAll(List<AutoCloseable> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            try {
+                held.get(i).close();
+            } catch (Exception e) {
+                log.warn("Could not release interactive session resource: {}", e.getMessage());
+            }
+        }
+    }
+
+    /** A blocking operation run by {@link SerialIo}. */
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    /**
+     * Runs blocking writes one at a time and in order on the shared pool.
+     * A thread is held only while there is something to write.
+     */
+    private final class SerialIo {
+
+        private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final Consumer<IOException> onFailure;
+        private volatile boolean failed;
+
+        private SerialIo(Consumer<IOException> onFailure) {
+            this.onFailure = onFailure;
+        }
+
+        long pendingBytes() {
+            return pendingBytes.get();
+        }
+
+        void submit(int bytes, IoAction action) {
+            if (failed) {
+                return;
+            }
+            pendingBytes.addAndGet(bytes);
+            queue.add(new Pending(bytes, action));
+            schedule();
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    ioThreads.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                Pending next;
+                while ((next = queue.poll()) != null) {
+                    try {
+                        if (!failed) {
+                            next.action().run();
+                        }
+                    } catch (IOException e) {
+                        failed = true;
+                        onFailure.accept(e);
+                    } finally {
+                        pendingBytes.addAndGet(-next.bytes());
+                    }
+                }
+            } finally {
+                draining.set(false);
+            }
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private record Pending(int bytes, IoAction action) {
+    }
+}
@@ -0,0 +1,477 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.metrics.MetricsSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Incremental build of all Java sources of a project. For every source file
+ * it remembers the content hash, the classes it produced and the project
+ * classes those refer to (read from their constant pools). A build
+ * recompiles the changed sources plus every source that depends on them,
+ * directly or transitively; everything else is taken from the previous output.
+ *
+ * <p>Runs load classes lazily straight from the classes directory, so a
+ * build never changes one that a run may use. It writes a new directory
+ * instead, hard-linking the classes it reuses, and then makes that one
+ * current. Earlier directories are deleted once no run holds them.
+ */
+@Component
+public class JavaProjectBuilder implements MetricsSource {
+
+    /** What one source file contributed to the last successful build. */
+    static final class Unit {
+        final String hash;
+        final Set<String> classes;
+        final Set<String> references;
+        /** Declares compile-time constants, which javac inlines into users without a reference. */
+        final boolean constants;
+
+        Unit(String hash, Set<String> classes, Set<String> references, boolean constants) {
+            this.hash = hash;
+            this.classes = classes;
+            this.references = references;
+            this.constants = constants;
+        }
+    }
+
+    /** Referenced class names and whether any field holds a compile-time constant. */
+    static final class ClassInfo {
+        final Set<String> references;
+        final boolean constants;
+
+        ClassInfo(Set<String> references, boolean constants) {
+            this.references = references;
+            this.constants = constants;
+        }
+    }
+
+    private static final Pattern TYPE_IN_DESCRIPTOR = Pattern.compile("L([^;<>()\\[]+)[;<]");
+    private static final String CLASSES_PREFIX = "classes";
+
+    private final InProcessJavaCompiler compiler;
+    private final Path root;
+    private final ConcurrentMap<Path, Object> buildLocks = new ConcurrentHashMap<>();
+    /** Runs holding each classes directory; guarded by itself. */
+    private final Map<Path, Integer> pins = new HashMap<>();
+
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong fullBuilds = new AtomicLong();
+    private final AtomicLong unitsCompiled = new AtomicLong();
+    private final AtomicLong unitsReused = new AtomicLong();
+
+    public JavaProjectBuilder(InProcessJavaCompiler compiler,
+                              @Value("${codesphere.java-build.dir:}") String dir) {
+        this.compiler = compiler;
+        this.root = dir == null || dir.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "codesphere-java-build")
+                : Path.of(dir);
+    }
+
+    public boolean isAvailable() {
+        return compiler.isAvailable();
+    }
+
+    /**
+     * Brings the project's classes up to date and returns the program that
+     * runs the class declared in {@code mainFile}.
+     */
+    public PreparedProgram build(Path projectPath, Path mainFile, String java,
+                                 long timeoutMillis) throws Exception {
+        Path dir = buildDir(projectPath);
+        synchronized (buildLocks.computeIfAbsent(dir, d -> new Object())) {
+            builds.incrementAndGet();
+            Path current = currentClasses(dir);
+            Path stateFile = dir.resolve("units");
+            Map<String, Unit> units = current == null ? new HashMap<>() : readState(stateFile, compiler.identity());
+
+            Map<String, String> hashes = new LinkedHashMap<>();
+            try (Stream<Path> files = Files.walk(projectPath)) {
+                for (Path source : files.filter(Files::isRegularFile)
+                        .filter(file -> file.getFileName().toString().endsWith(".java"))
+                        .sorted()
+                        .toList()) {
+                    hashes.put(projectPath.relativize(source).toString(), hash(Files.readAllBytes(source)));
+                }
+            }
+
+            Set<String> changed = new HashSet<>();
+            hashes.forEach((name, hash) -> {
+                Unit unit = units.get(name);
+                if (unit == null || !unit.hash.equals(hash)) {
+                    changed.add(name);
+                }
+            });
+            Set<String> removed = new HashSet<>(units.keySet());
+            removed.removeAll(hashes.keySet());
+
+            Set<String> dirty = dirtyUnits(units, changed, removed);
+            if (!dirty.isEmpty() && dirty.size() == hashes.size()) {
+                fullBuilds.incrementAndGet();
+            }
+            units.keySet().removeAll(union(dirty, removed));
+            unitsReused.addAndGet(hashes.size() - dirty.size());
+
+            Path classesDir = current;
+            if (current == null || !dirty.isEmpty() || !removed.isEmpty()) {
+                classesDir = dir.resolve(CLASSES_PREFIX + "-" + UUID.randomUUID());
+                Files.createDirectories(classesDir);
+                for (Unit unit : units.values()) {
+                    for (String className : unit.classes) {
+                        linkOrCopy(classFile(current, className), classFile(classesDir, className));
+                    }
+                }
+                if (!dirty.isEmpty()) {
+                    unitsCompiled.addAndGet(dirty.size());
+                    List<Path> sources = dirty.stream().sorted().map(projectPath::resolve).toList();
+                    InProcessJavaCompiler.Result compiled =
+                            compiler.compile(projectPath, sources, classesDir, timeoutMillis);
+                    if (!compiled.isSuccess()) {
+                        BuildCache.deleteTree(classesDir);
+                        // The dirty units stay out of the state, so the next build retries them.
+                        writeState(stateFile, compiler.identity(), units);
+                        return PreparedProgram.failed(compiled.getFailure());
+                    }
+                    record(projectPath, classesDir, compiled, dirty, hashes, units);
+                }
+                writeState(stateFile, compiler.identity(), units);
+                makeCurrent(dir, classesDir);
+                deleteUnused(dir, classesDir);
+            }
+
+            String mainClass = mainClass(units.get(projectPath.relativize(mainFile).toString()), mainFile);
+            if (mainClass == null) {
+                return PreparedProgram.failed(mainFile.getFileName() + " does not declare a class to run");
+            }
+            Path pinned = classesDir;
+            pin(pinned);
+            return PreparedProgram.java(projectPath, java, pinned, mainClass).releasing(() -> unpin(dir, pinned));
+        }
+    }
+
+    /** The classes directory of the last successful build, or {@code null} before the first. */
+    private static Path currentClasses(Path dir) throws IOException {
+        Path pointer = dir.resolve("current");
+        if (!Files.exists(pointer)) {
+            return null;
+        }
+        Path classesDir = dir.resolve(Files.readString(pointer).trim());
+        return Files.isDirectory(classesDir) ? classesDir : null;
+    }
+
+    private static void makeCurrent(Path dir, Path classesDir) throws IOException {
+        Path staging = dir.resolve("current.tmp");
+        Files.writeString(staging, classesDir.getFileName().toString());
+        Files.move(staging, dir.resolve("current"), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void linkOrCopy(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.createLink(target, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source, target);
+        }
+    }
+
+    private void pin(Path classesDir) {
+        synchronized (pins) {
+            pins.merge(classesDir, 1, Integer::sum);
+        }
+    }
+
+    private void unpin(Path dir, Path classesDir) {
+        synchronized (pins) {
+            pins.computeIfPresent(classesDir, (d, count) -> count == 1 ? null : count - 1);
+            if (pins.containsKey(classesDir)) {
+                return;
+            }
+        }
+        try {
+            // The current directory only goes once a newer build replaces it.
+            if (!classesDir.equals(currentClasses(dir))) {
+                BuildCache.deleteTree(classesDir);
+            }
+        } catch (IOException ignored) {
+            // Left for the next build of the project to clear.
+        }
+    }
+
+    /** Deletes the classes directories of earlier builds that no run holds any more. */
+    private void deleteUnused(Path dir, Path current) throws IOException {
+        List<Path> unused;
+        try (Stream<Path> entries = Files.list(dir)) {
+            unused = entries.filter(entry -> entry.getFileName().toString().startsWith(CLASSES_PREFIX))
+                    .filter(entry -> !entry.equals(current))
+                    .toList();
+        }
+        synchronized (pins) {
+            for (Path classesDir : unused) {
+                if (!pins.containsKey(classesDir)) {
+                    BuildCache.deleteTree(classesDir);
+                }
+            }
+        }
+    }
+
+    /** Drops everything kept for a project, e.g. once it is deleted. */
+    public void discard(Path projectPath) {
+        Path dir = buildDir(projectPath);
+        synchronized (buildLocks.computeIfAbsent(dir, d -> new Object())) {
+            BuildCache.deleteTree(dir);
+        }
+    }
+
+    /**
+     * Changed units plus everything that references their classes, followed
+     * transitively. Changing a unit that declares constants rebuilds all,
+     * since inlined constants leave no reference behind.
+     */
+    static Set<String> dirtyUnits(Map<String, Unit> units, Set<String> changed, Set<String> removed) {
+        Set<String> all = new HashSet<>(units.keySet());
+        all.addAll(changed);
+        all.removeAll(removed);
+        for (String name : union(changed, removed)) {
+            Unit unit = units.get(name);
+            if (unit != null && unit.constants) {
+                return all;
+            }
+        }
+
+        Map<String, String> unitOfClass = new HashMap<>();
+        units.forEach((name, unit) -> unit.classes.forEach(c -> unitOfClass.put(c, name)));
+        Map<String, Set<String>> dependents = new HashMap<>();
+        units.forEach((name, unit) -> {
+            for (String reference : unit.references) {
+                String target = unitOfClass.get(reference);
+                if (target != null && !target.equals(name)) {
+                    dependents.computeIfAbsent(target, t -> new HashSet<>()).add(name);
+                }
+            }
+        });
+
+        Set<String> dirty = new HashSet<>(changed);
+        Deque<String> pending = new ArrayDeque<>(union(changed, removed));
+        while (!pending.isEmpty()) {
+            for (String dependent : dependents.getOrDefault(pending.pop(), Set.of())) {
+                if (!removed.contains(dependent) && dirty.add(dependent)) {
+                    pending.push(dependent);
+                }
+            }
+        }
+        return dirty;
+    }
+
+    private void record(Path projectPath, Path classesDir, InProcessJavaCompiler.Result compiled,
+                        Set<String> dirty, Map<String, String> hashes, Map<String, Unit> units)
+            throws IOException {
+        Map<String, Set<String>> classes = new HashMap<>();
+        Map<String, Set<String>> references = new HashMap<>();
+        Set<String> withConstants = new HashSet<>();
+        for (Map.Entry<String, byte[]> entry : compiled.getClasses().entrySet()) {
+            Path source = compiled.getSources().get(entry.getKey());
+            if (source == null) {
+                continue;
+            }
+            String name = projectPath.toAbsolutePath().relativize(source).toString();
+            ClassInfo info = readClass(entry.getValue());
+            classes.computeIfAbsent(name, n -> new HashSet<>()).add(entry.getKey());
+            references.computeIfAbsent(name, n -> new HashSet<>()).addAll(info.references);
+            if (info.constants) {
+                withConstants.add(name);
+            }
+
+            // Replace rather than write through, in case the name is a link into an older build.
+            Path target = classFile(classesDir, entry.getKey());
+            Files.createDirectories(target.getParent());
+            Path staging = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.write(staging, entry.getValue());
+            Files.move(staging, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        // Sources without classes are recorded too, so they are not compiled again.
+        for (String name : dirty) {
+            units.put(name, new Unit(hashes.get(name), classes.getOrDefault(name, new HashSet<>()),
+                    references.getOrDefault(name, new HashSet<>()), withConstants.contains(name)));
+        }
+    }
+
+    /**
+     * The class to run for {@code mainFile}: the top-level class named after
+     * the file, in whatever package it declares.
+     */
+    private static String mainClass(Unit unit, Path mainFile) {
+        if (unit == null) {
+            return null;
+        }
+        String simpleName = mainFile.getFileName().toString().replaceFirst("\\.java$", "");
+        return unit.classes.stream()
+                .filter(c -> c.equals(simpleName) || c.endsWith("." + simpleName))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /** Reads the constant pool and fields of a class file. */
+    static ClassInfo readClass(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        in.skipBytes(8); // magic, minor and major version
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        List<Integer> classNames = new ArrayList<>();
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1 -> utf8[i] = in.readUTF();
+                case 7 -> classNames.add(in.readUnsignedShort());
+                case 8, 16, 19, 20 -> in.skipBytes(2);
+                case 15 -> in.skipBytes(3);
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipBytes(4);
+                case 5, 6 -> {
+                    in.skipBytes(8);
+                    i++; // longs and doubles take two slots
+                }
+                default -> throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        Set<String> references = new HashSet<>();
+        for (int index : classNames) {
+            String name = utf8[index];
+            if (name.startsWith("[")) {
+                addDescriptorTypes(name, references);
+            } else {
+                references.add(name.replace('/', '.'));
+            }
+        }
+        // Types that appear only in field and method signatures.
+        for (String value : utf8) {
+            if (value != null && value.indexOf('L') != -1 && value.indexOf(';') != -1) {
+                addDescriptorTypes(value, references);
+            }
+        }
+
+        in.skipBytes(6); // access flags, this class, super class
+        in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+        boolean constants = false;
+        int fields = in.readUnsignedShort();
+        for (int f = 0; f < fields; f++) {
+            in.skipBytes(6); // access flags, name, descriptor
+            int attributes = in.readUnsignedShort();
+            for (int a = 0; a < attributes; a++) {
+                constants |= "ConstantValue".equals(utf8[in.readUnsignedShort()]);
+                in.skipBytes(in.readInt());
+            }
+        }
+        return new ClassInfo(references, constants);
+    }
+
+    private static void addDescriptorTypes(String descriptor, Set<String> references) {
+        Matcher matcher = TYPE_IN_DESCRIPTOR.matcher(descriptor);
+        while (matcher.find()) {
+            references.add(matcher.group(1).replace('/', '.'));
+        }
+    }
+
+    /** Previous units, or none when the state is missing or was written by another compiler. */
+    private static Map<String, Unit> readState(Path stateFile, String identity) throws IOException {
+        Map<String, Unit> units = new HashMap<>();
+        if (!Files.exists(stateFile)) {
+            return units;
+        }
+        List<String> lines = Files.readAllLines(stateFile);
+        if (lines.isEmpty() || !lines.get(0).equals(identity)) {
+            return units;
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t", -1);
+            units.put(fields[0], new Unit(fields[1], words(fields[2]), words(fields[3]), "1".equals(fields[4])));
+        }
+        return units;
+    }
+
+    private static void writeState(Path stateFile, String identity, Map<String, Unit> units) throws IOException {
+        StringBuilder out = new StringBuilder(identity).append('\n');
+        units.forEach((name, unit) -> out.append(name).append('\t')
+                .append(unit.hash).append('\t')
+                .append(String.join(" ", unit.classes)).append('\t')
+                .append(String.join(" ", unit.references)).append('\t')
+                .append(unit.constants ? '1' : '0').append('\n'));
+        Files.createDirectories(stateFile.getParent());
+        Path staging = stateFile.resolveSibling("units.tmp");
+        Files.writeString(staging, out);
+        Files.move(staging, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Set<String> words(String field) {
+        return field.isEmpty() ? new HashSet<>() : new HashSet<>(List.of(field.split(" ")));
+    }
+
+    private static Set<String> union(Set<String> a, Set<String> b) {
+        Set<String> all = new HashSet<>(a);
+        all.addAll(b);
+        return all;
+    }
+
+    private static Path classFile(Path classesDir, String className) {
+        return classesDir.resolve(className.replace('.', '/') + ".class");
+    }
+
+    private Path buildDir(Path projectPath) {
+        return root.resolve(hash(projectPath.toAbsolutePath().normalize().toString()
+                .getBytes(StandardCharsets.UTF_8)).substring(0, 32));
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "javaProjectBuilds";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("builds", builds.get());
+        out.put("fullBuilds", fullBuilds.get());
+        out.put("unitsCompiled", unitsCompiled.get());
+        out.put("unitsReused", unitsReused.get());
+        synchronized (pins) {
+            out.put("pinnedBuilds", pins.size());
+        }
+        return out;
+    }
+}
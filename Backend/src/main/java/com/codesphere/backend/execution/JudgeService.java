@@ -0,0 +1,485 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.JudgeCase;
+import com.codesphere.backend.dto.JudgeCaseResult;
+import com.codesphere.backend.dto.JudgeResponse;
+import com.codesphere.backend.dto.ResourceUsage;
+import com.codesphere.backend.entity.ExecutionEntity;
+import com.codesphere.backend.metrics.MetricsSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks one file against a batch of test cases: the program is compiled
+ * once, cases run in parallel (at most {@code parallel-per-user} of one
+ * user's at a time, across all of their batches) and each case's output is
+ * compared while it streams, so a wrong answer stops the program early. One
+ * executions row is written per batch.
+ *
+ * <p>The compile and every case are {@link ExecutionScheduler} steps, so
+ * judge traffic shares the workers, fair share, concurrency limit and load
+ * shedding with ordinary runs, and no request thread waits on it.
+ */
+@Service
+public class JudgeService implements MetricsSource {
+
+    public static final String ACCEPTED = "ACCEPTED";
+    public static final String WRONG_ANSWER = "WRONG_ANSWER";
+    public static final String TIME_LIMIT_EXCEEDED = "TIME_LIMIT_EXCEEDED";
+    public static final String MEMORY_LIMIT_EXCEEDED = "MEMORY_LIMIT_EXCEEDED";
+    public static final String RUNTIME_ERROR = "RUNTIME_ERROR";
+    public static final String COMPILE_ERROR = "COMPILE_ERROR";
+
+    private static final int PREVIEW_HEAD_CHARS = 1024;
+    private static final int PREVIEW_TAIL_CHARS = 256;
+
+    private final ExecutionService executionService;
+    private final ExecutionScheduler scheduler;
+    private final ExecutionSandbox sandbox;
+    private final ProcessIoPump ioPump;
+    private final ExecutionRecordWriter recordWriter;
+    private final ScratchSpace scratchSpace;
+    private final int parallelPerUser;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong cases = new AtomicLong();
+    private final AtomicLong stoppedEarly = new AtomicLong();
+
+    /** Cases queued or running per user, across all of their batches; guarded by itself. */
+    private final Map<String, Integer> casesByUser = new HashMap<>();
+    /** Batches with cases left that found their user's slots taken, oldest first; guarded by casesByUser. */
+    private final Map<String, Deque<Batch>> waitingByUser = new HashMap<>();
+
+    public JudgeService(ExecutionService executionService,
+                        ExecutionScheduler scheduler,
+                        ExecutionSandbox sandbox,
+                        ProcessIoPump ioPump,
+                        ExecutionRecordWriter recordWriter,
+                        ScratchSpace scratchSpace,
+                        @Value("${codesphere.judge.parallel-per-user:4}") int parallelPerUser) {
+        this.executionService = executionService;
+        this.scheduler = scheduler;
+        this.sandbox = sandbox;
+        this.ioPump = ioPump;
+        this.recordWriter = recordWriter;
+        this.scratchSpace = scratchSpace;
+        this.parallelPerUser = Math.max(1, parallelPerUser);
+    }
+
+    /**
+     * Queues a compile of {@code job}'s file and then every case against it.
+     * Cancelling the returned future stops cases that have not run yet.
+     *
+     * @throws ExecutionRejectedException if the scheduler refuses the compile
+     */
+    public CompletableFuture<JudgeResponse> judge(ExecutionJob job, List<JudgeCase> testCases) {
+        CompletableFuture<PreparedProgram> build = scheduler.submitStep(job, true,
+                () -> executionService.prepare(job.getProjectPath(), job.getFilePath(), job.isProjectRun()));
+        batches.incrementAndGet();
+        Batch batch = new Batch(job, testCases);
+        batch.whenComplete((response, error) -> build.cancel(false));
+        build.whenComplete((program, error) -> {
+            if (error != null) {
+                batch.completeExceptionally(error);
+            } else {
+                batch.start(program);
+            }
+        });
+        return batch;
+    }
+
+    /**
+     * Takes one of the batch's user's case slots, or puts the batch in line
+     * for the next one that frees up.
+     */
+    private boolean takeSlot(Batch batch) {
+        String username = batch.job.getUsername();
+        synchronized (casesByUser) {
+            int used = casesByUser.getOrDefault(username, 0);
+            if (used < parallelPerUser) {
+                casesByUser.put(username, used + 1);
+                return true;
+            }
+            Deque<Batch> waiting = waitingByUser.computeIfAbsent(username, u -> new ArrayDeque<>());
+            if (!waiting.contains(batch)) {
+                waiting.add(batch);
+            }
+            return false;
+        }
+    }
+
+    /** Frees a case slot and hands it to the user's longest waiting batch that still has cases. */
+    private void giveSlot(String username) {
+        synchronized (casesByUser) {
+            casesByUser.computeIfPresent(username, (u, used) -> used <= 1 ? null : used - 1);
+        }
+        while (true) {
+            Batch waiter;
+            synchronized (casesByUser) {
+                Deque<Batch> waiting = waitingByUser.get(username);
+                waiter = waiting == null ? null : waiting.poll();
+                if (waiting != null && waiting.isEmpty()) {
+                    waitingByUser.remove(username);
+                }
+            }
+            // Called without any batch's lock, so a batch never waits on another one's.
+            if (waiter == null || waiter.fill()) {
+                return;
+            }
+        }
+    }
+
+    private void stopWaiting(Batch batch) {
+        String username = batch.job.getUsername();
+        synchronized (casesByUser) {
+            Deque<Batch> waiting = waitingByUser.get(username);
+            if (waiting != null && waiting.remove(batch) && waiting.isEmpty()) {
+                waitingByUser.remove(username);
+            }
+        }
+    }
+
+    /**
+     * One request's cases. Each queued or running case holds one of its
+     * user's {@code parallelPerUser} slots.
+     */
+    private final class Batch extends CompletableFuture<JudgeResponse> {
+
+        private final ExecutionJob job;
+        private final List<JudgeCase> testCases;
+        private final JudgeCaseResult[] results;
+        private final List<CompletableFuture<JudgeCaseResult>> pending = new ArrayList<>();
+        private PreparedProgram program;
+        private String language;
+        private int next;
+        private int done;
+        /** Cases executing on a worker right now; the program is closed only when none are. */
+        private int active;
+
+        private Batch(ExecutionJob job, List<JudgeCase> testCases) {
+            this.job = job;
+            this.testCases = testCases;
+            this.results = new JudgeCaseResult[testCases.size()];
+        }
+
+        private void start(PreparedProgram prepared) {
+            synchronized (this) {
+                program = prepared;
+                if (isDone()) {
+                    // Cancelled while compiling.
+                    closeProgram();
+                    return;
+                }
+            }
+            if (!prepared.isReady()) {
+                JudgeResponse response = new JudgeResponse(COMPILE_ERROR, 0, testCases.size(),
+                        prepared.getFailure().getError(), List.of());
+                record(job, response);
+                complete(response);
+                return;
+            }
+            language = ExecutionService.languageOf(ExecutionService.getExtension(job.getFilename()));
+            fill();
+        }
+
+        /**
+         * Queues cases while the user has slots free. Called without the
+         * lock; returns whether it queued any.
+         */
+        private boolean fill() {
+            boolean queued = false;
+            while (true) {
+                synchronized (this) {
+                    if (isDone() || language == null || next >= testCases.size()) {
+                        return queued;
+                    }
+                }
+                if (!takeSlot(this)) {
+                    return queued;
+                }
+                int index;
+                synchronized (this) {
+                    index = isDone() || next >= testCases.size() ? -1 : next++;
+                }
+                if (index < 0) {
+                    giveSlot(job.getUsername());
+                    return queued;
+                }
+                submit(index);
+                queued = true;
+            }
+        }
+
+        /** Queues one case, which has already taken a slot. */
+        private void submit(int index) {
+            JudgeCase testCase = testCases.get(index);
+            CaseSlot slot = new CaseSlot();
+            CompletableFuture<JudgeCaseResult> future;
+            try {
+                // Part of a batch that was already admitted, so not shed half way through.
+                future = scheduler.submitStep(job, false, () -> runCase(slot, index, testCase));
+            } catch (ExecutionRejectedException e) {
+                giveSlot(job.getUsername());
+                completeExceptionally(e);
+                return;
+            }
+            boolean over;
+            synchronized (this) {
+                over = isDone();
+                if (!over) {
+                    pending.add(future);
+                }
+            }
+            future.whenComplete((result, error) -> {
+                if (slot.futureDone()) {
+                    giveSlot(job.getUsername());
+                }
+                caseDone(future, index, result, error);
+            });
+            if (over) {
+                future.cancel(false);
+            }
+        }
+
+        private JudgeCaseResult runCase(CaseSlot slot, int index, JudgeCase testCase) throws Exception {
+            if (!slot.begin()) {
+                throw new CancellationException("Judge case was cancelled");
+            }
+            try {
+                PreparedProgram held;
+                synchronized (this) {
+                    if (isDone() || program == null) {
+                        throw new CancellationException("Judge batch is over");
+                    }
+                    held = program;
+                    active++;
+                }
+                try {
+                    return JudgeService.this.runCase(job.getProjectPath(), held, language, index, testCase);
+                } finally {
+                    synchronized (this) {
+                        active--;
+                        if (isDone() && active == 0) {
+                            closeProgram();
+                        }
+                    }
+                }
+            } finally {
+                if (slot.end()) {
+                    giveSlot(job.getUsername());
+                }
+            }
+        }
+
+        private void caseDone(CompletableFuture<JudgeCaseResult> future, int index,
+                              JudgeCaseResult result, Throwable error) {
+            if (error != null) {
+                completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+                return;
+            }
+            boolean last;
+            synchronized (this) {
+                pending.remove(future);
+                results[index] = result;
+                done++;
+                last = done == testCases.size();
+            }
+            if (last) {
+                List<JudgeCaseResult> all = List.of(results);
+                long passed = all.stream().filter(r -> ACCEPTED.equals(r.getVerdict())).count();
+                String verdict = all.stream()
+                        .map(JudgeCaseResult::getVerdict)
+                        .filter(v -> !ACCEPTED.equals(v))
+                        .findFirst()
+                        .orElse(ACCEPTED);
+                JudgeResponse response = new JudgeResponse(verdict, (int) passed, testCases.size(), null, all);
+                record(job, response);
+                complete(response);
+            }
+        }
+
+        @Override
+        public boolean complete(JudgeResponse response) {
+            boolean first = super.complete(response);
+            stop();
+            return first;
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable error) {
+            boolean first = super.completeExceptionally(error);
+            stop();
+            return first;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean first = super.cancel(mayInterruptIfRunning);
+            stop();
+            return first;
+        }
+
+        /** The batch is over: drop queued cases, and free the program unless a case still uses it. */
+        private void stop() {
+            stopWaiting(this);
+            List<CompletableFuture<JudgeCaseResult>> outstanding;
+            synchronized (this) {
+                outstanding = List.copyOf(pending);
+                pending.clear();
+            }
+            outstanding.forEach(future -> future.cancel(false));
+            synchronized (this) {
+                if (active == 0) {
+                    closeProgram();
+                }
+            }
+        }
+
+        /** Caller holds the lock. */
+        private void closeProgram() {
+            if (program == null) {
+                return;
+            }
+            program.close();
+            program = null;
+        }
+    }
+
+    /**
+     * When a case gives its slot back: once its future is complete and its
+     * process, if it started one, has ended. A case cancelled while running
+     * keeps the slot until the program actually stops.
+     */
+    private static final class CaseSlot {
+
+        private boolean running;
+        private boolean futureDone;
+        private boolean released;
+
+        /** False if the case was cancelled before it could start. */
+        synchronized boolean begin() {
+            if (futureDone) {
+                return false;
+            }
+            running = true;
+            return true;
+        }
+
+        /** True if the caller must give the slot back. */
+        synchronized boolean end() {
+            running = false;
+            return release();
+        }
+
+        /** True if the caller must give the slot back. */
+        synchronized boolean futureDone() {
+            futureDone = true;
+            return release();
+        }
+
+        private boolean release() {
+            if (running || !futureDone || released) {
+                return false;
+            }
+            released = true;
+            return true;
+        }
+    }
+
+    private JudgeCaseResult runCase(Path projectPath, PreparedProgram program, String language,
+                                    int index, JudgeCase testCase) throws Exception {
+        cases.incrementAndGet();
+        long timeLimit = timeLimitOf(testCase);
+        try (ScratchSpace.Scratch scratch = scratchSpace.open(projectPath);
+             ExecutionSandbox.Lease lease = sandbox.open(language, timeLimit)) {
+            // Only stdout is compared; stderr is kept for the preview.
+            ProcessBuilder builder = program.processBuilder()
+                    .directory(scratch.dir().toFile())
+                    .redirectErrorStream(false);
+            builder.command(lease.wrap(
+                    executionService.fileSizeLimited(builder.command(), scratchSpace.getRunMaxBytes())));
+            long start = System.nanoTime();
+            Process process = builder.start();
+            scratch.onOverflow(() -> ProcessIoPump.destroyTree(process.toHandle()));
+            OutputMatcher matcher = new OutputMatcher(testCase.getExpectedOutput(),
+                    () -> ProcessIoPump.destroyTree(process.toHandle()));
+            ProcessOutcome outcome = ioPump.run(process, testCase.getInput(), timeLimit,
+                    new BoundedOutputBuffer(PREVIEW_HEAD_CHARS, PREVIEW_TAIL_CHARS), matcher,
+                    new BoundedOutputBuffer(PREVIEW_HEAD_CHARS, PREVIEW_TAIL_CHARS), null);
+            long timeMs = (System.nanoTime() - start) / 1_000_000;
+            ResourceUsage usage = lease.usage();
+
+            String verdict;
+            if (matcher.isMismatch()) {
+                stoppedEarly.incrementAndGet();
+                verdict = WRONG_ANSWER;
+            } else if (outcome.isTimedOut()) {
+                verdict = TIME_LIMIT_EXCEEDED;
+            } else if (usage != null && usage.isOomKilled()) {
+                verdict = MEMORY_LIMIT_EXCEEDED;
+            } else if (outcome.getExitCode() != 0) {
+                verdict = RUNTIME_ERROR;
+            } else {
+                verdict = matcher.finish() ? ACCEPTED : WRONG_ANSWER;
+            }
+            return new JudgeCaseResult(index, verdict, timeMs,
+                    usage == null ? null : usage.getPeakMemoryBytes(),
+                    ACCEPTED.equals(verdict) ? null : outcome.getOutput());
+        }
+    }
+
+    /** The run time all of a batch's cases may use together. */
+    public static long totalTimeLimitMs(List<JudgeCase> testCases) {
+        return testCases.stream().mapToLong(JudgeService::timeLimitOf).sum();
+    }
+
+    private static long timeLimitOf(JudgeCase testCase) {
+        return testCase.getTimeLimitMs() != null ? testCase.getTimeLimitMs() : ExecutionService.RUN_TIMEOUT_MS;
+    }
+
+    private void record(ExecutionJob job, JudgeResponse response) {
+        ExecutionEntity execution = new ExecutionEntity();
+        execution.setProject(job.getProject());
+        execution.setFilename(job.getFilename());
+        execution.setStatus(ACCEPTED.equals(response.getVerdict()) ? "SUCCESS" : "ERROR");
+        execution.setOutput("Judge: " + response.getPassed() + "/" + response.getTotal() + " cases passed");
+        if (response.getCompileError() != null) {
+            execution.setError(response.getCompileError());
+        } else if (!ACCEPTED.equals(response.getVerdict())) {
+            execution.setError(response.getVerdict());
+        }
+        recordWriter.submit(execution);
+    }
+
+    @Override
+    public String metricsName() {
+        return "judge";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("batches", batches.get());
+        out.put("cases", cases.get());
+        out.put("stoppedEarly", stoppedEarly.get());
+        synchronized (casesByUser) {
+            out.put("usersAtLimit", casesByUser.values().stream().filter(used -> used >= parallelPerUser).count());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,296 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.ExecutionResult;
+import com.codesphere.backend.metrics.MetricsSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Make-style build of a whole C or C++ project: every translation unit is
+ * compiled to its own object file, in parallel, and linked into one program.
+ * Objects are kept per project with the header dependencies the compiler
+ * reports ({@code -MMD}), so a later build recompiles only the units whose
+ * source or included headers changed and relinks only when an object did.
+ */
+@Component
+public class NativeProjectBuilder implements MetricsSource {
+
+    private static final String PROGRAM = "program";
+
+    private final ProcessIoPump ioPump;
+    private final Path root;
+    private final ExecutorService compilers;
+    private final ConcurrentMap<Path, Object> buildLocks = new ConcurrentHashMap<>();
+
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong unitsCompiled = new AtomicLong();
+    private final AtomicLong unitsReused = new AtomicLong();
+    private final AtomicLong links = new AtomicLong();
+
+    public NativeProjectBuilder(ProcessIoPump ioPump,
+                                @Value("${codesphere.native-build.dir:}") String dir,
+                                @Value("${codesphere.native-build.jobs:0}") int jobs) {
+        this.ioPump = ioPump;
+        this.root = dir == null || dir.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "codesphere-native-build")
+                : Path.of(dir);
+        int threads = jobs > 0 ? jobs : Runtime.getRuntime().availableProcessors();
+        this.compilers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "native-compile");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Brings the project's program up to date and returns the command that
+     * runs it. {@code unitExtensions} selects the translation units, e.g.
+     * {@code c} for gcc.
+     */
+    public PreparedProgram build(String compiler, String compilerCommand, String compilerIdentity,
+                                 Path projectPath, Set<String> unitExtensions,
+                                 long timeoutMillis) throws Exception {
+        Path dir = buildDir(projectPath).resolve(compiler);
+        synchronized (buildLocks.computeIfAbsent(dir, d -> new Object())) {
+            builds.incrementAndGet();
+            prepareDir(dir, compilerIdentity);
+
+            List<Path> units;
+            try (Stream<Path> files = Files.walk(projectPath)) {
+                units = files.filter(Files::isRegularFile)
+                        .filter(file -> unitExtensions.contains(
+                                ExecutionService.getExtension(file.getFileName().toString())))
+                        .sorted()
+                        .toList();
+            }
+            if (units.isEmpty()) {
+                return PreparedProgram.failed("No source files to build");
+            }
+
+            List<Path> objects = new ArrayList<>();
+            List<Future<ExecutionResult>> compiling = new ArrayList<>();
+            for (Path unit : units) {
+                String name = projectPath.relativize(unit).toString();
+                Path object = dir.resolve("obj").resolve(name + ".o");
+                Path depFile = dir.resolve("obj").resolve(name + ".d");
+                objects.add(object);
+                if (isUpToDate(projectPath, object, depFile)) {
+                    unitsReused.incrementAndGet();
+                    continue;
+                }
+                Files.createDirectories(object.getParent());
+                compiling.add(compilers.submit(() -> {
+                    FileTime startedAt = FileTime.fromMillis(System.currentTimeMillis());
+                    ExecutionResult failure = compile(ioPump, new ProcessBuilder(
+                            compilerCommand, "-c", name, "-o", object.toString(),
+                            "-MMD", "-MF", depFile.toString(), "-iquote", ".")
+                            .directory(projectPath.toFile()), timeoutMillis);
+                    if (failure == null) {
+                        // Edits made while the unit compiled must still count as newer.
+                        Files.setLastModifiedTime(object, startedAt);
+                    }
+                    return failure;
+                }));
+            }
+            unitsCompiled.addAndGet(compiling.size());
+
+            ExecutionResult failure = null;
+            StringBuilder errors = new StringBuilder();
+            for (Future<ExecutionResult> unit : compiling) {
+                ExecutionResult result = unit.get();
+                if (result != null) {
+                    failure = failure == null || "TIMEOUT".equals(result.getStatus()) ? result : failure;
+                    if (result.getError() != null) {
+                        errors.append(result.getError());
+                    }
+                }
+            }
+            if (failure != null) {
+                return PreparedProgram.failed("TIMEOUT".equals(failure.getStatus())
+                        ? failure : new ExecutionResult(null, errors.toString(), "ERROR"));
+            }
+
+            Path program = dir.resolve(PROGRAM);
+            Path linkInputs = dir.resolve("link-inputs");
+            String inputs = objects.stream().map(Path::toString).collect(Collectors.joining("\n"));
+            boolean relink = !compiling.isEmpty() || !Files.exists(program)
+                    || !Files.exists(linkInputs) || !inputs.equals(Files.readString(linkInputs));
+            if (relink) {
+                links.incrementAndGet();
+                Path staging = dir.resolve(PROGRAM + ".tmp");
+                List<String> command = new ArrayList<>();
+                command.add(compilerCommand);
+                objects.forEach(object -> command.add(object.toString()));
+                command.addAll(List.of("-o", staging.toString()));
+                ExecutionResult linkFailure = compile(ioPump,
+                        new ProcessBuilder(command).directory(projectPath.toFile()), timeoutMillis);
+                if (linkFailure != null) {
+                    Files.deleteIfExists(linkInputs);
+                    return PreparedProgram.failed(linkFailure);
+                }
+                // Runs still using the previous binary keep their copy.
+                Files.move(staging, program, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.writeString(linkInputs, inputs);
+                removeStaleObjects(dir.resolve("obj"), objects);
+            }
+            return PreparedProgram.ready(projectPath, program.toString());
+        }
+    }
+
+    /** Drops everything kept for a project, e.g. once it is deleted. */
+    public void discard(Path projectPath) {
+        Path dir = buildDir(projectPath);
+        synchronized (buildLocks.computeIfAbsent(dir, d -> new Object())) {
+            BuildCache.deleteTree(dir);
+        }
+    }
+
+    /**
+     * Runs a compiler to completion. Returns {@code null} on success, or the
+     * result to report when compilation failed or timed out.
+     */
+    static ExecutionResult compile(ProcessIoPump ioPump, ProcessBuilder builder,
+                                   long timeoutMillis) throws Exception {
+        Process compile = builder.redirectErrorStream(true).start();
+        ProcessOutcome outcome = ioPump.run(compile, null, null, timeoutMillis);
+        if (outcome.isTimedOut()) {
+            return new ExecutionResult(null, "Compilation timed out", "TIMEOUT");
+        }
+        if (outcome.getExitCode() != 0) {
+            return new ExecutionResult(null, outcome.getOutput(), "ERROR");
+        }
+        return null;
+    }
+
+    /**
+     * An object is current when it is at least as new as its source and every
+     * header the compiler reported reading for it.
+     */
+    static boolean isUpToDate(Path projectPath, Path object, Path depFile) throws IOException {
+        if (!Files.exists(object) || !Files.exists(depFile)) {
+            return false;
+        }
+        FileTime builtAt = Files.getLastModifiedTime(object);
+        for (String dependency : parseDependencies(Files.readString(depFile))) {
+            Path file = projectPath.resolve(dependency);
+            if (!Files.exists(file) || Files.getLastModifiedTime(file).compareTo(builtAt) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Prerequisites of the first rule in a make fragment written by {@code -MMD}. */
+    static List<String> parseDependencies(String makeRule) {
+        String joined = makeRule.replace("\\\r\n", " ").replace("\\\n", " ");
+        int newline = joined.indexOf('\n');
+        String rule = newline == -1 ? joined : joined.substring(0, newline);
+        int colon = rule.indexOf(": ");
+        if (colon == -1) {
+            return List.of();
+        }
+        List<String> dependencies = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        String prerequisites = rule.substring(colon + 2);
+        for (int i = 0; i < prerequisites.length(); i++) {
+            char c = prerequisites.charAt(i);
+            if (c == '\\' && i + 1 < prerequisites.length() && prerequisites.charAt(i + 1) == ' ') {
+                current.append(' ');
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                if (current.length() > 0) {
+                    dependencies.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            dependencies.add(current.toString());
+        }
+        return dependencies;
+    }
+
+    /** Starts over when the compiler changed, since no existing object can be trusted. */
+    private static void prepareDir(Path dir, String compilerIdentity) throws IOException {
+        Path stamp = dir.resolve("compiler");
+        if (Files.exists(stamp) && !compilerIdentity.equals(Files.readString(stamp))) {
+            BuildCache.deleteTree(dir);
+        }
+        Files.createDirectories(dir);
+        Files.writeString(stamp, compilerIdentity);
+    }
+
+    private static void removeStaleObjects(Path objectDir, List<Path> objects) throws IOException {
+        Set<Path> live = Set.copyOf(objects);
+        try (Stream<Path> files = Files.walk(objectDir)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                String name = file.toString();
+                Path object = name.endsWith(".d") ? Path.of(name.substring(0, name.length() - 2) + ".o") : file;
+                if (!live.contains(object)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private Path buildDir(Path projectPath) {
+        return root.resolve(hash(projectPath.toAbsolutePath().normalize().toString()));
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compilers.shutdownNow();
+    }
+
+    @Override
+    public String metricsName() {
+        return "nativeProjectBuilds";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("builds", builds.get());
+        out.put("unitsCompiled", unitsCompiled.get());
+        out.put("unitsReused", unitsReused.get());
+        out.put("links", links.get());
+        return out;
+    }
+}
@@ -0,0 +1,69 @@
+package com.codesphere.backend.execution;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads the kernel's pressure stall information ({@code /proc/pressure}):
+ * how long tasks on this node were ready to run but waited for a CPU, or
+ * for memory to be reclaimed. Unlike how long a run takes, which depends on
+ * what the program does, stall time only grows when the node is congested,
+ * so it is what {@link AdaptiveLimit} steers by.
+ */
+@Component
+public class NodePressure {
+
+    private static final Logger log = LoggerFactory.getLogger(NodePressure.class);
+
+    private final Path cpu;
+    private final Path memory;
+    private final boolean available;
+
+    public NodePressure(@Value("${codesphere.execution.pressure-dir:/proc/pressure}") String dir) {
+        Path root = Path.of(dir);
+        this.cpu = root.resolve("cpu");
+        this.memory = root.resolve("memory");
+        this.available = stallMicros() >= 0;
+        if (!available) {
+            log.warn("No pressure stall information under {}, the execution limit stays fixed", root);
+        }
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Microseconds, since boot, in which some task waited for a CPU plus
+     * those in which some task waited for memory; -1 when unreadable.
+     */
+    public long stallMicros() {
+        long cpuStall = someTotal(cpu);
+        if (cpuStall < 0) {
+            return -1;
+        }
+        // Kernels without memory accounting still report CPU pressure.
+        return cpuStall + Math.max(0, someTotal(memory));
+    }
+
+    /** The {@code total=} of the {@code some} line, e.g. {@code some avg10=0.00 ... total=2604648}. */
+    private static long someTotal(Path file) {
+        try {
+            for (String line : Files.readAllLines(file)) {
+                if (line.startsWith("some ")) {
+                    int total = line.indexOf("total=");
+                    return total < 0 ? -1 : Long.parseLong(line.substring(total + "total=".length()).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+            // Reported as unreadable below.
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,160 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.metrics.MetricsSource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a few booted, idle {@code node} processes
+ * ({@code runner/node_spare.js}) so a JavaScript execution only has to tell
+ * one which file to run. Node cannot fork a warm parent the way the Python
+ * server does, so each spare is used once and replaced in the background.
+ */
+@Component
+public class NodeSparePool implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeSparePool.class);
+
+    private final int size;
+    private final ToolchainRegistry toolchains;
+    private final ExecutionSandbox sandbox;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<Process> spares = new LinkedBlockingQueue<>();
+    private final AtomicBoolean healthy = new AtomicBoolean(true);
+    private final ExecutorService starter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "node-spare-starter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Path script;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    public NodeSparePool(@Value("${codesphere.interpreter-servers.node.spares:2}") int size,
+                         ToolchainRegistry toolchains,
+                         ExecutionSandbox sandbox) {
+        this.size = Math.max(0, size);
+        this.toolchains = toolchains;
+        this.sandbox = sandbox;
+
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (size == 0 || !toolchains.isAvailable("node")) {
+            return;
+        }
+        starter.execute(() -> {
+            try {
+                script = RunnerResources.extract("node_spare.js", "codesphere-node-spare");
+                replenish();
+            } catch (IOException e) {
+                healthy.set(false);
+                log.warn("Node spares disabled: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Hands out an idle node process already pointed at {@code filePath}; the
+     * caller feeds it stdin and waits for it like any other process. Returns
+     * {@code null} when no spare is ready.
+     */
+    public Process claim(Path projectPath, Path filePath, ExecutionSandbox.Lease lease) {
+        if (size == 0 || !healthy.get()) {
+            return null;
+        }
+        Process spare;
+        while ((spare = spares.poll()) != null) {
+            starter.execute(this::replenish);
+            if (!spare.isAlive()) {
+                discarded.incrementAndGet();
+                continue;
+            }
+            try {
+                lease.attach(spare.pid());
+                OutputStream stdin = spare.getOutputStream();
+                Map<String, String> header = Map.of(
+                        "cwd", projectPath.toString(),
+                        "file", filePath.toString());
+                stdin.write((objectMapper.writeValueAsString(header) + "\n").getBytes(StandardCharsets.UTF_8));
+                stdin.flush();
+                claimed.incrementAndGet();
+                return spare;
+            } catch (IOException e) {
+                spare.destroyForcibly();
+                discarded.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private void replenish() {
+        while (script != null && spares.size() < size) {
+            try {
+                Process process = new ProcessBuilder(sandbox.rlimited("javascript", ExecutionService.RUN_TIMEOUT_MS,
+                        List.of(toolchains.command("node"), script.toString())))
+                        .directory(script.getParent().toFile())
+                        .redirectErrorStream(true)
+                        .start();
+                spares.offer(process);
+            } catch (IOException e) {
+                healthy.set(false);
+                log.warn("Could not start node spare, using plain node: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        starter.shutdownNow();
+        Process spare;
+        while ((spare = spares.poll()) != null) {
+            spare.destroyForcibly();
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "nodeSpares";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", size > 0 && healthy.get());
+        out.put("size", size);
+        out.put("idle", spares.size());
+        out.put("claimed", claimed.get());
+        out.put("misses", misses.get());
+        out.put("discarded", discarded.get());
+        return out;
+    }
+}
@@ -0,0 +1,91 @@
+package com.codesphere.backend.execution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Compares program output against an expected answer as it streams in,
+ * without keeping the output. Lines match when equal after trailing
+ * whitespace is dropped, and trailing blank lines are ignored, which is the
+ * usual judge tolerance. The first mismatch is reported at once through
+ * {@code onMismatch} so the program can be stopped early.
+ */
+public class OutputMatcher implements Consumer<String> {
+
+    private final List<String> expected;
+    private final Runnable onMismatch;
+    private int lineIndex;
+    /** Characters of the current line matched so far. */
+    private int column;
+    /** Whitespace seen after the matched part; fine only if the line ends here. */
+    private int trailingWhitespace;
+    private boolean mismatch;
+
+    public OutputMatcher(String expectedOutput, Runnable onMismatch) {
+        this.expected = normalise(expectedOutput == null ? "" : expectedOutput);
+        this.onMismatch = onMismatch;
+    }
+
+    private static List<String> normalise(String text) {
+        List<String> lines = new ArrayList<>();
+        for (String l : text.split("\n", -1)) {
+            lines.add(l.stripTrailing());
+        }
+        while (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+            lines.remove(lines.size() - 1);
+        }
+        return lines;
+    }
+
+    @Override
+    public synchronized void accept(String chunk) {
+        for (int i = 0; i < chunk.length() && !mismatch; i++) {
+            char c = chunk.charAt(i);
+            if (c == '\n') {
+                endLine();
+                continue;
+            }
+            String want = currentExpected();
+            boolean matches = trailingWhitespace == 0 && column < want.length() && want.charAt(column) == c;
+            if (matches) {
+                column++;
+            } else if (Character.isWhitespace(c)) {
+                trailingWhitespace++;
+            } else {
+                fail();
+            }
+        }
+    }
+
+    /** Call once the program has exited; true when the whole output matched. */
+    public synchronized boolean finish() {
+        if (!mismatch && (column > 0 || trailingWhitespace > 0)) {
+            endLine();
+        }
+        return !mismatch && lineIndex >= expected.size();
+    }
+
+    public synchronized boolean isMismatch() {
+        return mismatch;
+    }
+
+    private String currentExpected() {
+        return lineIndex < expected.size() ? expected.get(lineIndex) : "";
+    }
+
+    private void endLine() {
+        if (column != currentExpected().length()) {
+            fail();
+            return;
+        }
+        lineIndex++;
+        column = 0;
+        trailingWhitespace = 0;
+    }
+
+    private void fail() {
+        mismatch = true;
+        onMismatch.run();
+    }
+}
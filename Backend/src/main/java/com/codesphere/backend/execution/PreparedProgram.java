@@ -0,0 +1,87 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.ExecutionResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A program that has been compiled (if its language needs it) and is ready to
+ * launch, or the failure that stopped it from getting there. Close it once
+ * the program has run, so its build can be evicted again.
+ */
+public class PreparedProgram implements AutoCloseable {
+
+    private final List<String> command;
+    private final Path workingDir;
+    private final ExecutionResult failure;
+    private final Path classesDir;
+    private final String mainClass;
+    private Runnable release;
+
+    private PreparedProgram(List<String> command, Path workingDir, ExecutionResult failure,
+                            Path classesDir, String mainClass) {
+        this.command = command;
+        this.workingDir = workingDir;
+        this.failure = failure;
+        this.classesDir = classesDir;
+        this.mainClass = mainClass;
+    }
+
+    public static PreparedProgram ready(Path workingDir, String... command) {
+        return new PreparedProgram(List.of(command), workingDir, null, null, null);
+    }
+
+    /**
+     * A compiled Java program; it can be launched with {@code java -cp} or
+     * handed to a warm runner as-is.
+     */
+    public static PreparedProgram java(Path workingDir, String java, Path classesDir, String mainClass) {
+        return new PreparedProgram(List.of(java, "-cp", classesDir.toString(), mainClass),
+                workingDir, null, classesDir, mainClass);
+    }
+
+    public static PreparedProgram failed(ExecutionResult failure) {
+        return new PreparedProgram(null, null, failure, null, null);
+    }
+
+    public static PreparedProgram failed(String message) {
+        return failed(new ExecutionResult(null, message, "ERROR"));
+    }
+
+    /** Attaches what {@link #close} must undo, e.g. the pin on a cached build. */
+    public PreparedProgram releasing(Runnable release) {
+        this.release = release;
+        return this;
+    }
+
+    public boolean isReady() {
+        return failure == null;
+    }
+
+    public ProcessBuilder processBuilder() {
+        return new ProcessBuilder(command)
+                .directory(workingDir.toFile())
+                .redirectErrorStream(true);
+    }
+
+    public Process start() throws IOException {
+        return processBuilder().start();
+    }
+
+    @Override
+    public void close() {
+        Runnable pending = release;
+        release = null;
+        if (pending != null) {
+            pending.run();
+        }
+    }
+
+    public List<String> getCommand() { return command; }
+    public Path getWorkingDir() { return workingDir; }
+    public ExecutionResult getFailure() { return failure; }
+    public Path getClassesDir() { return classesDir; }
+    public String getMainClass() { return mainClass; }
+}
@@ -0,0 +1,160 @@
+package com.codesphere.backend.execution;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Feeds stdin and drains stdout/stderr of a child process concurrently, so a
+ * program can never block on a full pipe while we wait for it. Output is
+ * captured into {@link BoundedOutputBuffer}s, which keeps memory per run fixed
+ * regardless of how much the program prints.
+ *
+ * <p>Pump threads come from a shared cached pool of daemon threads; on Java 17
+ * there are no virtual threads, so each live run costs up to three idle-blocked
+ * platform threads, bounded by the scheduler's worker count.
+ */
+@Component
+public class ProcessIoPump {
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final long DRAIN_GRACE_MS = 1000;
+
+    private final int headChars;
+    private final int tailChars;
+    private final ExecutorService ioThreads = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "exec-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ProcessIoPump(@Value("${codesphere.execution.output-head-chars:32768}") int headChars,
+                         @Value("${codesphere.execution.output-tail-chars:32768}") int tailChars) {
+        this.headChars = headChars;
+        this.tailChars = tailChars;
+    }
+
+    /** A buffer with the same head/tail limits the pump applies to process output. */
+    public BoundedOutputBuffer newBuffer() {
+        return new BoundedOutputBuffer(headChars, tailChars);
+    }
+
+    /**
+     * Runs the pump until the process exits or {@code timeoutMillis} elapses,
+     * killing it on timeout.
+     *
+     * @param stdin text to feed on stdin, or {@code null} to close stdin at once
+     * @param sink  receives output chunks as they arrive, may be {@code null}
+     */
+    public ProcessOutcome run(Process process, String stdin, Consumer<String> sink,
+                              long timeoutMillis) throws InterruptedException {
+        return run(process, stdin, timeoutMillis, newBuffer(), sink, newBuffer(), sink);
+    }
+
+    /**
+     * As above, with separate buffers and sinks per stream, e.g. to compare
+     * stdout alone while keeping only a short preview of each stream.
+     */
+    public ProcessOutcome run(Process process, String stdin, long timeoutMillis,
+                              BoundedOutputBuffer stdout, Consumer<String> stdoutSink,
+                              BoundedOutputBuffer stderr, Consumer<String> stderrSink)
+            throws InterruptedException {
+
+        Future<?> feeder = ioThreads.submit(() -> feed(process.getOutputStream(), stdin));
+        Future<?> outDrain = ioThreads.submit(() -> drain(process.getInputStream(), stdout, stdoutSink));
+        Future<?> errDrain = ioThreads.submit(() -> drain(process.getErrorStream(), stderr, stderrSink));
+
+        boolean finished;
+        try {
+            finished = process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            destroyTree(process.toHandle());
+            feeder.cancel(true);
+            throw e;
+        }
+        if (!finished) {
+            destroyTree(process.toHandle());
+            process.waitFor(DRAIN_GRACE_MS, TimeUnit.MILLISECONDS);
+        }
+        feeder.cancel(true);
+        awaitDrain(outDrain);
+        awaitDrain(errDrain);
+
+        return new ProcessOutcome(!finished, finished ? process.exitValue() : -1, stdout, stderr);
+    }
+
+    /**
+     * Kills a process and everything it started. Killing only the direct child
+     * leaves e.g. the binary under {@code go run} or a shell pipeline running,
+     * still holding our output pipes open.
+     */
+    public static void destroyTree(ProcessHandle handle) {
+        // Snapshot first: once the parent is gone its children are reparented.
+        List<ProcessHandle> descendants = handle.descendants().toList();
+        handle.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    private Void feed(OutputStream stdin, String input) {
+        try (OutputStream out = stdin) {
+            if (input == null || input.isEmpty()) {
+                return null;
+            }
+            byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+            for (int offset = 0; offset < bytes.length; offset += CHUNK_SIZE) {
+                out.write(bytes, offset, Math.min(CHUNK_SIZE, bytes.length - offset));
+            }
+            out.flush();
+        } catch (IOException ignored) {
+            // The program exited or closed stdin before reading everything.
+        }
+        return null;
+    }
+
+    private Void drain(InputStream stream, BoundedOutputBuffer buffer, Consumer<String> sink)
+            throws IOException {
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            char[] chunk = new char[CHUNK_SIZE];
+            int read;
+            while ((read = reader.read(chunk)) != -1) {
+                buffer.append(chunk, 0, read);
+                if (sink != null) {
+                    sink.accept(new String(chunk, 0, read));
+                }
+            }
+        }
+        return null;
+    }
+
+    private void awaitDrain(Future<?> drain) throws InterruptedException {
+        try {
+            drain.get(DRAIN_GRACE_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // A leftover child still holds the pipe open; keep what we have.
+            drain.cancel(true);
+        } catch (ExecutionException ignored) {
+            // Stream closed underneath us after a kill.
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ioThreads.shutdownNow();
+    }
+}
@@ -0,0 +1,30 @@
+package com.codesphere.backend.execution;
+
+/**
+ * What {@link ProcessIoPump} observed for one process.
+ */
+public class ProcessOutcome {
+
+    private final boolean timedOut;
+    private final int exitCode;
+    private final BoundedOutputBuffer stdout;
+    private final BoundedOutputBuffer stderr;
+
+    public ProcessOutcome(boolean timedOut, int exitCode,
+                          BoundedOutputBuffer stdout, BoundedOutputBuffer stderr) {
+        this.timedOut = timedOut;
+        this.exitCode = exitCode;
+        this.stdout = stdout;
+        this.stderr = stderr;
+    }
+
+    public boolean isTimedOut() { return timedOut; }
+    public int getExitCode() { return exitCode; }
+    public BoundedOutputBuffer getStdout() { return stdout; }
+    public BoundedOutputBuffer getStderr() { return stderr; }
+
+    /** Stdout followed by stderr; stderr is empty when the streams were merged. */
+    public String getOutput() {
+        return stderr.isEmpty() ? stdout.toString() : stdout.toString() + stderr;
+    }
+}
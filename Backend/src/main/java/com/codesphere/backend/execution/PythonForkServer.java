@@ -0,0 +1,358 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.ExecutionResult;
+import com.codesphere.backend.metrics.MetricsSource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs Python files by forking a warm interpreter
+ * ({@code runner/python_fork_server.py}) that already has the interpreter
+ * booted and common modules imported.
+ *
+ * <p>The zygote is restarted in the background if it dies; until it is back,
+ * {@link #tryRun} returns {@code null} and callers start {@code python3}
+ * directly.
+ */
+@Component
+public class PythonForkServer implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(PythonForkServer.class);
+
+    private static final long START_TIMEOUT_MS = 10_000;
+    private static final long EXIT_GRACE_MS = 1000;
+    private static final long RESTART_BACKOFF_MS = 5000;
+
+    private final boolean enabled;
+    private final ProcessIoPump ioPump;
+    private final ToolchainRegistry toolchains;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService supervisor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "python-fork-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "python-fork-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService feeders = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "python-fork-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, Run> running = new ConcurrentHashMap<>();
+    private volatile Process zygote;
+    private volatile Path socketPath;
+    private volatile boolean healthy;
+    private volatile boolean stopped;
+
+    private final AtomicLong forked = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong restarts = new AtomicLong();
+
+    public PythonForkServer(@Value("${codesphere.interpreter-servers.python.enabled:true}") boolean enabled,
+                            ProcessIoPump ioPump,
+                            ToolchainRegistry toolchains) {
+        this.enabled = enabled;
+        this.ioPump = ioPump;
+        this.toolchains = toolchains;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled && toolchains.isAvailable("python3")) {
+            supervisor.execute(this::launch);
+        }
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * Runs {@code filePath} in a forked child of the zygote, confined by
+     * {@code lease}. Returns {@code null} when the zygote is unavailable.
+     */
+    public ExecutionResult tryRun(Path projectPath, Path filePath, String input,
+                                  Consumer<String> sink, long timeoutMillis,
+                                  ExecutionSandbox.Lease lease) throws Exception {
+        return tryRun(projectPath, filePath, input, sink, timeoutMillis, lease, new RunCancellation());
+    }
+
+    /** As above; cancelling kills the forked child and everything it started. */
+    public ExecutionResult tryRun(Path projectPath, Path filePath, String input,
+                                  Consumer<String> sink, long timeoutMillis,
+                                  ExecutionSandbox.Lease lease, RunCancellation cancellation) throws Exception {
+        if (!healthy) {
+            if (enabled) {
+                fallbacks.incrementAndGet();
+            }
+            return null;
+        }
+        String id = UUID.randomUUID().toString();
+        Run run = new Run();
+        running.put(id, run);
+        cancellation.onCancel(() -> run.pid.thenAccept(PythonForkServer::kill));
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            Map<String, Object> header = new LinkedHashMap<>();
+            header.put("id", id);
+            header.put("cwd", projectPath.toString());
+            header.put("file", filePath.toString());
+            // The child joins the cgroup, or sets its own rlimits, before running user code.
+            if (lease.hasCgroup()) {
+                header.put("cgroup", lease.cgroupProcs().toString());
+            } else {
+                header.put("cpuSeconds", lease.cpuSeconds());
+                header.put("addressSpace", lease.addressSpaceBytes());
+            }
+            channel.write(ByteBuffer.wrap((objectMapper.writeValueAsString(header) + "\n")
+                    .getBytes(StandardCharsets.UTF_8)));
+            forked.incrementAndGet();
+            return pump(channel, run, input, sink, timeoutMillis);
+        } catch (IOException e) {
+            // Connection refused or reset before the fork: the zygote is gone.
+            if (run.pid.isDone()) {
+                throw e;
+            }
+            markUnhealthy("connect failed: " + e.getMessage());
+            fallbacks.incrementAndGet();
+            return null;
+        } finally {
+            cancellation.onCancel(null);
+            running.remove(id);
+        }
+    }
+
+    private ExecutionResult pump(SocketChannel channel, Run run, String input,
+                                 Consumer<String> sink, long timeoutMillis) throws Exception {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        BoundedOutputBuffer output = ioPump.newBuffer();
+
+        // Writes block once the socket buffer fills, so stdin is fed from another thread
+        // while this one drains output.
+        CompletableFuture<Void> feeder = CompletableFuture.runAsync(() -> {
+            try {
+                if (input != null && !input.isEmpty()) {
+                    ByteBuffer bytes = ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8));
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                }
+                channel.shutdownOutput();
+            } catch (IOException ignored) {
+                // The program exited or stopped reading stdin.
+            }
+        }, feeders);
+
+        ScheduledFuture<?> killer = watchdog.schedule(() -> {
+            if (!run.exit.isDone()) {
+                run.timedOut = true;
+                run.pid.thenAccept(PythonForkServer::kill);
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        try (Reader reader = new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8)) {
+            char[] chunk = new char[4096];
+            int read;
+            while ((read = reader.read(chunk)) != -1) {
+                output.append(chunk, 0, read);
+                if (sink != null) {
+                    sink.accept(new String(chunk, 0, read));
+                }
+            }
+        } catch (IOException ignored) {
+            // Reset after a kill; keep what was read.
+        } catch (Exception e) {
+            run.pid.thenAccept(PythonForkServer::kill);
+            throw e;
+        } finally {
+            feeder.cancel(true);
+        }
+
+        Integer exitCode;
+        try {
+            exitCode = run.exit.get(Math.max(EXIT_GRACE_MS, deadline - System.currentTimeMillis()),
+                    TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Output closed but the child is still alive (it closed its own stdio).
+            run.timedOut = true;
+            run.pid.thenAccept(PythonForkServer::kill);
+            exitCode = null;
+        } catch (ExecutionException e) {
+            exitCode = null;
+        }
+        killer.cancel(false);
+
+        if (run.timedOut) {
+            return new ExecutionResult(null, "Execution timed out", "TIMEOUT");
+        }
+        if (exitCode == null || exitCode != 0) {
+            return new ExecutionResult(null, output.toString(), "ERROR");
+        }
+        return new ExecutionResult(output.toString(), null, "SUCCESS");
+    }
+
+    private static void kill(long pid) {
+        ProcessHandle.of(pid).ifPresent(ProcessIoPump::destroyTree);
+    }
+
+    private void launch() {
+        if (stopped) {
+            return;
+        }
+        try {
+            Path script = RunnerResources.extract("python_fork_server.py", "codesphere-python-fork");
+            Path socket = script.resolveSibling("fork.sock");
+            Process process = new ProcessBuilder(toolchains.command("python3"), "-u", script.toString(), socket.toString())
+                    .directory(script.getParent().toFile())
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            BufferedReader events = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            CompletableFuture<String> ready = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return events.readLine();
+                } catch (IOException e) {
+                    return null;
+                }
+            });
+            String first;
+            try {
+                first = ready.get(START_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                first = null;
+            }
+            if (!"ready".equals(first)) {
+                process.destroyForcibly();
+                throw new IOException("zygote did not report ready");
+            }
+            zygote = process;
+            socketPath = socket;
+            healthy = true;
+            Thread listener = new Thread(() -> listen(process, events, script.getParent()), "python-fork-events");
+            listener.setDaemon(true);
+            listener.start();
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            log.warn("Python fork server unavailable, using plain python3: {}", e.getMessage());
+            scheduleRestart();
+        }
+    }
+
+    private void listen(Process process, BufferedReader events, Path dir) {
+        try {
+            String line;
+            while ((line = events.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length != 3) {
+                    continue;
+                }
+                Run run = running.get(parts[1]);
+                if (run == null) {
+                    continue;
+                }
+                long value = Long.parseLong(parts[2]);
+                if ("start".equals(parts[0])) {
+                    run.pid.complete(value);
+                } else if ("exit".equals(parts[0])) {
+                    run.exit.complete((int) value);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Python fork server event stream failed: {}", e.getMessage());
+        }
+        process.destroyForcibly();
+        BuildCache.deleteTree(dir);
+        markUnhealthy("zygote exited");
+    }
+
+    private synchronized void markUnhealthy(String reason) {
+        if (!healthy) {
+            return;
+        }
+        healthy = false;
+        log.warn("Python fork server down ({}), restarting", reason);
+        running.values().forEach(run -> run.exit.complete(null));
+        scheduleRestart();
+    }
+
+    private void scheduleRestart() {
+        if (!stopped) {
+            restarts.incrementAndGet();
+            supervisor.schedule(this::launch, RESTART_BACKOFF_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        healthy = false;
+        supervisor.shutdownNow();
+        watchdog.shutdownNow();
+        feeders.shutdownNow();
+        Process process = zygote;
+        if (process != null) {
+            process.destroyForcibly();
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "pythonForkServer";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("healthy", healthy);
+        out.put("running", running.size());
+        out.put("forked", forked.get());
+        out.put("fallbacks", fallbacks.get());
+        out.put("restarts", restarts.get());
+        return out;
+    }
+
+    private static final class Run {
+        final CompletableFuture<Long> pid = new CompletableFuture<>();
+        final CompletableFuture<Integer> exit = new CompletableFuture<>();
+        volatile boolean timedOut;
+    }
+}
@@ -0,0 +1,53 @@
+package com.codesphere.backend.execution;
+
+/**
+ * Lets a run be stopped from another thread. Whoever starts a process for
+ * the run registers how to kill it with {@link #onCancel}; {@link #cancel}
+ * marks the run and invokes that action, whichever happens first.
+ */
+public class RunCancellation {
+
+    private volatile boolean cancelled;
+    private volatile boolean stopped;
+    private volatile Runnable kill;
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Returns {@code false} if the run had already been cancelled. */
+    public synchronized boolean cancel() {
+        if (cancelled) {
+            return false;
+        }
+        cancelled = true;
+        Runnable current = kill;
+        if (current != null) {
+            current.run();
+        }
+        return true;
+    }
+
+    /**
+     * Kills what the run is executing without marking it cancelled, for a
+     * run that broke a limit and reports that itself.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        Runnable current = kill;
+        if (current != null) {
+            current.run();
+        }
+    }
+
+    /**
+     * Sets how to stop what the run is currently executing, or clears it with
+     * {@code null}. Runs the action at once if the run was already cancelled.
+     */
+    public void onCancel(Runnable kill) {
+        this.kill = kill;
+        if (kill != null && (cancelled || stopped)) {
+            kill.run();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.codesphere.backend.execution;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Copies the helper programs under {@code resources/runner} out of the
+ * application jar so external interpreters can load them.
+ */
+final class RunnerResources {
+
+    private RunnerResources() {}
+
+    /** Copies {@code runner/<name>} into a fresh temp directory and returns the file. */
+    static Path extract(String name, String dirPrefix) throws IOException {
+        Path dir = Files.createTempDirectory(dirPrefix);
+        Path target = dir.resolve(name);
+        try (InputStream resource = RunnerResources.class.getResourceAsStream("/runner/" + name)) {
+            if (resource == null) {
+                throw new IOException("runner/" + name + " missing from classpath");
+            }
+            Files.copy(resource, target);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,412 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.metrics.MetricsSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Private working directories for runs, on tmpfs when the node has one.
+ * A run's directory holds the project's files, so the program reads its
+ * sources and data files by relative path as before, while files it creates
+ * stay out of the workspace and away from other runs of the same project.
+ * The directory is deleted when the run ends.
+ *
+ * <p>Project files are copied in, so writing to them changes only the run's
+ * copy. Files over 1 MB, and anything beyond {@code copy-max-bytes} per run,
+ * are hard-linked instead to a read-only snapshot that runs share while the
+ * file is unchanged; the workspace itself is never linked. Links inside the
+ * project are left out rather than followed.
+ *
+ * <p>Space is bounded, since on tmpfs it is node memory. A monitor measures
+ * what every run has written: a run past {@code run-max-bytes} is stopped,
+ * and while all runs together are past {@code max-bytes} the largest are
+ * stopped and new directories are refused. Callers also cap single files
+ * with {@code prlimit --fsize}, which stops a run between two checks.
+ */
+@Component
+public class ScratchSpace implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ScratchSpace.class);
+
+    private static final Path SHM = Path.of("/dev/shm");
+    // Containers often mount a 64 MB /dev/shm; that is too small to build into.
+    private static final long MIN_TMPFS_BYTES = 1L << 30;
+    private static final long MAX_COPIED_FILE_BYTES = 1L << 20;
+    private static final long MONITOR_INTERVAL_MS = 500;
+    private static final long SNAPSHOT_KEEP_MS = 60_000;
+
+    /** A run's working directory; closing it deletes everything the run left behind. */
+    public final class Scratch implements AutoCloseable {
+        private final Path dir;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        /** Bytes of project files copied or linked in; not held against the run. */
+        private long copiedBytes;
+        private volatile long writtenBytes;
+        private volatile String overflow;
+        private Runnable onOverflow;
+
+        private Scratch(Path dir) {
+            this.dir = dir;
+        }
+
+        public Path dir() {
+            return dir;
+        }
+
+        /**
+         * Sets how to stop the run if it writes too much. Runs the action at
+         * once if that already happened.
+         */
+        public void onOverflow(Runnable action) {
+            boolean now;
+            synchronized (this) {
+                onOverflow = action;
+                now = overflow != null;
+            }
+            if (now) {
+                action.run();
+            }
+        }
+
+        /** Why the run was stopped for writing too much, or {@code null}. */
+        public String overflowMessage() {
+            return overflow;
+        }
+
+        private void overflow(String message) {
+            Runnable action;
+            synchronized (this) {
+                if (overflow != null) {
+                    return;
+                }
+                overflow = message;
+                action = onOverflow;
+            }
+            overflows.incrementAndGet();
+            if (action != null) {
+                action.run();
+            }
+        }
+
+        private void measure() {
+            long[] total = new long[1];
+            try {
+                Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile()) {
+                            total[0] += attrs.size();
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        // Deleted by the program while we looked.
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                return;
+            }
+            writtenBytes = Math.max(0, total[0] - copiedBytes);
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                live.remove(this);
+                BuildCache.deleteTree(dir);
+                // Frees the budget now rather than at the next check.
+                usedBytes.updateAndGet(used -> Math.max(0, used - writtenBytes));
+            }
+        }
+    }
+
+    private final Path runs;
+    private final Path snapshots;
+    private final boolean tmpfs;
+    private final long maxBytes;
+    private final long runMaxBytes;
+    private final long copyMaxBytes;
+
+    private final Set<Scratch> live = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "scratch-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong usedBytes = new AtomicLong();
+    /** When each snapshot was last linked into a run; guarded by itself. */
+    private final Map<Path, Long> snapshotUses = new HashMap<>();
+    private final AtomicLong snapshotBytes = new AtomicLong();
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+
+    public ScratchSpace(@Value("${codesphere.scratch.dir:}") String dir,
+                        @Value("${codesphere.scratch.max-bytes:1073741824}") long maxBytes,
+                        @Value("${codesphere.scratch.run-max-bytes:67108864}") long runMaxBytes,
+                        @Value("${codesphere.scratch.copy-max-bytes:8388608}") long copyMaxBytes) throws IOException {
+        Path root = dir == null || dir.isBlank() ? defaultRoot() : Path.of(dir);
+        this.runs = root.resolve("runs");
+        this.snapshots = root.resolve("snapshots");
+        this.maxBytes = maxBytes;
+        this.runMaxBytes = runMaxBytes;
+        this.copyMaxBytes = copyMaxBytes;
+        // Left over from runs that were in progress when the node stopped.
+        BuildCache.deleteTree(runs);
+        BuildCache.deleteTree(snapshots);
+        Files.createDirectories(runs);
+        Files.createDirectories(snapshots);
+        this.tmpfs = isTmpfs(runs);
+        monitor.scheduleWithFixedDelay(() -> {
+            try {
+                enforce();
+            } catch (RuntimeException e) {
+                // A failed check must not end the schedule.
+                log.warn("Scratch space check failed: {}", e.getMessage());
+            }
+        }, MONITOR_INTERVAL_MS, MONITOR_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        log.info("Run scratch directories under {}{}", runs, tmpfs ? " (tmpfs)" : "");
+    }
+
+    /**
+     * {@code /dev/shm/codesphere-scratch} when {@code /dev/shm} is a writable
+     * tmpfs of at least 1 GB, otherwise {@code <tmp>/codesphere-scratch}.
+     */
+    public static Path defaultRoot() {
+        if (Files.isDirectory(SHM) && Files.isWritable(SHM) && isTmpfs(SHM)) {
+            try {
+                if (Files.getFileStore(SHM).getTotalSpace() >= MIN_TMPFS_BYTES) {
+                    return SHM.resolve("codesphere-scratch");
+                }
+            } catch (IOException ignored) {
+                // Fall through to the regular temp directory.
+            }
+        }
+        return Path.of(System.getProperty("java.io.tmpdir"), "codesphere-scratch");
+    }
+
+    /**
+     * Creates a fresh working directory holding the files of {@code projectPath}.
+     *
+     * @throws ExecutionRejectedException while runs already use {@code max-bytes}
+     */
+    public Scratch open(Path projectPath) throws IOException {
+        if (usedBytes.get() > maxBytes) {
+            refused.incrementAndGet();
+            throw new ExecutionRejectedException("Scratch space is full, try again shortly", 5);
+        }
+        Path dir = Files.createDirectory(runs.resolve(UUID.randomUUID().toString()));
+        opened.incrementAndGet();
+        Scratch scratch = new Scratch(dir);
+        live.add(scratch);
+        try (Stream<Path> entries = Files.walk(projectPath)) {
+            for (Path entry : (Iterable<Path>) entries::iterator) {
+                if (entry.equals(projectPath)) {
+                    continue;
+                }
+                Path target = dir.resolve(projectPath.relativize(entry).toString());
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.createDirectory(target);
+                } else if (Files.isRegularFile(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    long size = Files.size(entry);
+                    if (size <= MAX_COPIED_FILE_BYTES && scratch.copiedBytes + size <= copyMaxBytes) {
+                        Files.copy(entry, target);
+                    } else {
+                        linkSnapshot(entry, target);
+                    }
+                    scratch.copiedBytes += Files.size(target);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            scratch.close();
+            throw e;
+        }
+        return scratch;
+    }
+
+    /**
+     * Hard-links a read-only copy of {@code source} at {@code target}. The
+     * copy is made once and shared while the source keeps its size and
+     * modification time; one that a run managed to write to anyway no longer
+     * matches and is replaced for later runs.
+     */
+    private void linkSnapshot(Path source, Path target) throws IOException {
+        Path snapshot = snapshots.resolve(nameOf(source));
+        long size = Files.size(source);
+        FileTime modified = Files.getLastModifiedTime(source);
+        synchronized (snapshotUses) {
+            if (isSnapshotOf(snapshot, size, modified)) {
+                link(snapshot, target);
+                return;
+            }
+        }
+        // Copied outside the lock; runs holding the old snapshot keep their links to it.
+        Path staging = Files.createTempFile(snapshots, "copy-", ".tmp");
+        try {
+            Files.copy(source, staging, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(staging, modified);
+            staging.toFile().setReadOnly();
+            synchronized (snapshotUses) {
+                Files.move(staging, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                link(snapshot, target);
+            }
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+    }
+
+    /** Caller holds the snapshotUses lock. */
+    private void link(Path snapshot, Path target) throws IOException {
+        Files.createLink(target, snapshot);
+        snapshotUses.put(snapshot, System.nanoTime());
+    }
+
+    private static boolean isSnapshotOf(Path snapshot, long size, FileTime modified) throws IOException {
+        return Files.isRegularFile(snapshot)
+                && Files.size(snapshot) == size
+                && Files.getLastModifiedTime(snapshot).equals(modified);
+    }
+
+    private static String nameOf(Path source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(source.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Deletes snapshots no run has linked for {@value #SNAPSHOT_KEEP_MS} ms.
+     * Runs still holding one keep their own link to its data.
+     */
+    private void evictSnapshots() {
+        long now = System.nanoTime();
+        long bytes = 0;
+        synchronized (snapshotUses) {
+            Iterator<Map.Entry<Path, Long>> entries = snapshotUses.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<Path, Long> entry = entries.next();
+                try {
+                    if (now - entry.getValue() > TimeUnit.MILLISECONDS.toNanos(SNAPSHOT_KEEP_MS)) {
+                        Files.deleteIfExists(entry.getKey());
+                        entries.remove();
+                    } else {
+                        bytes += Files.size(entry.getKey());
+                    }
+                } catch (IOException e) {
+                    entries.remove();
+                }
+            }
+        }
+        snapshotBytes.set(bytes);
+    }
+
+    /** Largest file a run may write, for {@code prlimit --fsize}. */
+    public long getRunMaxBytes() {
+        return runMaxBytes;
+    }
+
+    /** Measures every live directory and stops the runs that put the node over budget. */
+    void enforce() {
+        evictSnapshots();
+        List<Scratch> current = new ArrayList<>(live);
+        long total = 0;
+        for (Scratch scratch : current) {
+            scratch.measure();
+            total += scratch.writtenBytes;
+            if (scratch.writtenBytes > runMaxBytes) {
+                scratch.overflow("Killed: the run wrote more than " + runMaxBytes / (1024 * 1024)
+                        + " MB of files");
+            }
+        }
+        if (total > maxBytes) {
+            current.sort(Comparator.comparingLong((Scratch scratch) -> scratch.writtenBytes).reversed());
+            long over = total - maxBytes;
+            for (Scratch scratch : current) {
+                if (over <= 0) {
+                    break;
+                }
+                scratch.overflow("Killed: scratch space on this node is full");
+                over -= scratch.writtenBytes;
+            }
+        }
+        usedBytes.set(total);
+    }
+
+    private static boolean isTmpfs(Path path) {
+        try {
+            FileStore store = Files.getFileStore(path);
+            return "tmpfs".equals(store.type());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        monitor.shutdownNow();
+    }
+
+    @Override
+    public String metricsName() {
+        return "scratch";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("dir", runs.toString());
+        out.put("tmpfs", tmpfs);
+        out.put("live", live.size());
+        out.put("opened", opened.get());
+        out.put("usedBytes", usedBytes.get());
+        out.put("maxBytes", maxBytes);
+        out.put("runMaxBytes", runMaxBytes);
+        out.put("refused", refused.get());
+        out.put("overflows", overflows.get());
+        out.put("snapshotBytes", snapshotBytes.get());
+        return out;
+    }
+}
@@ -0,0 +1,209 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.metrics.MetricsSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiles a file in the background right after it is saved, so the build
+ * cache (or the project's incremental build) is already warm when the user
+ * presses Run. Builds wait a short quiet period after the last save, saves
+ * of the same target while one is waiting are merged into it, and builds
+ * only start while the execution scheduler has an idle worker and nothing
+ * queued, so interactive runs are never delayed by them.
+ */
+@Component
+public class SpeculativeBuilder implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(SpeculativeBuilder.class);
+    private static final Set<String> COMPILED = Set.of("java", "c", "cpp", "cc", "cxx", "cs", "go");
+    private static final long BUSY_RETRY_MS = 250;
+
+    /** What to build: a single file, or the whole project through its main file. */
+    private static final class Target {
+        final Path projectPath;
+        final Path filePath;
+        final boolean projectRun;
+
+        Target(Path projectPath, Path filePath, boolean projectRun) {
+            this.projectPath = projectPath;
+            this.filePath = filePath;
+            this.projectRun = projectRun;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Target other && filePath.equals(other.filePath) && projectRun == other.projectRun;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(filePath, projectRun);
+        }
+    }
+
+    private static final class Pending implements Delayed {
+        final Target target;
+        final long dueNanos;
+
+        Pending(Target target, long dueNanos) {
+            this.target = target;
+            this.dueNanos = dueNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((Pending) other).dueNanos);
+        }
+    }
+
+    private final ExecutionService executionService;
+    private final ExecutionScheduler scheduler;
+    private final boolean enabled;
+    private final int queueCapacity;
+    private final long quietMillis;
+    private final DelayQueue<Pending> queue = new DelayQueue<>();
+    /** Latest due time per waiting target; a later save pushes it back. */
+    private final Map<Target, Long> waiting = new ConcurrentHashMap<>();
+    private Thread worker;
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private final AtomicLong built = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public SpeculativeBuilder(ExecutionService executionService,
+                              ExecutionScheduler scheduler,
+                              @Value("${codesphere.speculative-build.enabled:false}") boolean enabled,
+                              @Value("${codesphere.speculative-build.queue-capacity:32}") int queueCapacity,
+                              @Value("${codesphere.speculative-build.quiet-ms:500}") long quietMillis) {
+        this.executionService = executionService;
+        this.scheduler = scheduler;
+        this.enabled = enabled;
+        this.queueCapacity = queueCapacity;
+        this.quietMillis = quietMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        worker = new Thread(this::workLoop, "speculative-build");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    /**
+     * Called after {@code filename} was saved. When the project's main file
+     * is in the same language the whole project is built, as a run of it would.
+     */
+    public void onSave(Path projectPath, String filename, String mainFile) {
+        String extension = ExecutionService.getExtension(filename);
+        if (!enabled || !COMPILED.contains(extension)) {
+            return;
+        }
+        requested.incrementAndGet();
+        String language = ExecutionService.languageOf(extension);
+        Target target = mainFile != null
+                && language.equals(ExecutionService.languageOf(ExecutionService.getExtension(mainFile)))
+                ? new Target(projectPath, projectPath.resolve(mainFile).normalize(), true)
+                : new Target(projectPath, projectPath.resolve(filename).normalize(), false);
+
+        long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(quietMillis);
+        if (waiting.put(target, due) != null) {
+            merged.incrementAndGet();
+            return;
+        }
+        if (waiting.size() > queueCapacity) {
+            waiting.remove(target);
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.add(new Pending(target, due));
+    }
+
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Pending next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Target target = next.target;
+            Long due = waiting.get(target);
+            if (due != null && due > next.dueNanos) {
+                queue.add(new Pending(target, due));
+                continue;
+            }
+            if (scheduler.isBusy()) {
+                deferred.incrementAndGet();
+                queue.add(new Pending(target, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BUSY_RETRY_MS)));
+                continue;
+            }
+            // Saves from here on queue a new build, which sees their content.
+            waiting.remove(target);
+            try {
+                try (PreparedProgram program = executionService.prepare(target.projectPath, target.filePath,
+                        target.projectRun)) {
+                    (program.isReady() ? built : failed).incrementAndGet();
+                }
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.debug("Speculative build of {} failed: {}", target.filePath, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "speculativeBuilds";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("waiting", waiting.size());
+        out.put("requested", requested.get());
+        out.put("merged", merged.get());
+        out.put("dropped", dropped.get());
+        out.put("deferred", deferred.get());
+        out.put("built", built.get());
+        out.put("failed", failed.get());
+        return out;
+    }
+}
@@ -0,0 +1,207 @@
+package com.codesphere.backend.execution;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compilers and runtimes found on this node, resolved from {@code PATH} at
+ * startup and refreshed in the background. Lookups never fork, so the
+ * execute path can check for a tool for free.
+ */
+@Component
+public class ToolchainRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ToolchainRegistry.class);
+
+    private static final long PROBE_TIMEOUT_MS = 5000;
+
+    /** Tools the executors use, with the flag that prints each one's version. */
+    private static final Map<String, String> VERSION_FLAGS = new LinkedHashMap<>();
+    static {
+        VERSION_FLAGS.put("java", "-version");
+        VERSION_FLAGS.put("javac", "-version");
+        VERSION_FLAGS.put("python3", "--version");
+        VERSION_FLAGS.put("node", "--version");
+        VERSION_FLAGS.put("gcc", "--version");
+        VERSION_FLAGS.put("g++", "--version");
+        VERSION_FLAGS.put("go", "version");
+        VERSION_FLAGS.put("mcs", "--version");
+        VERSION_FLAGS.put("csc", "-version");
+        VERSION_FLAGS.put("mono", "--version");
+        VERSION_FLAGS.put("dotnet", "--version");
+        VERSION_FLAGS.put("prlimit", "--version");
+    }
+
+    /** A tool resolved to an absolute path, with the first line of its version banner. */
+    public static final class Toolchain {
+        private final String name;
+        private final Path path;
+        private final String version;
+        private final FileTime modified;
+
+        Toolchain(String name, Path path, String version, FileTime modified) {
+            this.name = name;
+            this.path = path;
+            this.version = version;
+            this.modified = modified;
+        }
+
+        public String getName() { return name; }
+        public Path getPath() { return path; }
+        public String getVersion() { return version; }
+    }
+
+    private final ProcessIoPump ioPump;
+    private final long refreshSeconds;
+    private final Map<String, Toolchain> toolchains = new ConcurrentHashMap<>();
+    private final ExecutorService probes = Executors.newFixedThreadPool(4, runnable -> {
+        Thread thread = new Thread(runnable, "toolchain-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "toolchain-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Instant resolvedAt;
+
+    public ToolchainRegistry(ProcessIoPump ioPump,
+                             @Value("${codesphere.toolchains.refresh-seconds:300}") long refreshSeconds) {
+        this.ioPump = ioPump;
+        this.refreshSeconds = refreshSeconds;
+    }
+
+    @PostConstruct
+    public void init() {
+        refresh();
+        if (refreshSeconds > 0) {
+            refresher.scheduleWithFixedDelay(this::refresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public boolean isAvailable(String tool) {
+        return toolchains.containsKey(tool);
+    }
+
+    public Optional<Toolchain> find(String tool) {
+        return Optional.ofNullable(toolchains.get(tool));
+    }
+
+    /** Absolute path to launch {@code tool} with, or the bare name if it was not found. */
+    public String command(String tool) {
+        Toolchain toolchain = toolchains.get(tool);
+        return toolchain == null ? tool : toolchain.getPath().toString();
+    }
+
+    /** Stable description of the tool build, used in build cache keys. */
+    public String identity(String tool) {
+        Toolchain toolchain = toolchains.get(tool);
+        if (toolchain == null) {
+            return tool;
+        }
+        return toolchain.getVersion().isEmpty() ? toolchain.getPath().toString() : toolchain.getVersion();
+    }
+
+    public Map<String, Toolchain> all() {
+        Map<String, Toolchain> out = new LinkedHashMap<>();
+        VERSION_FLAGS.keySet().forEach(tool -> find(tool).ifPresent(toolchain -> out.put(tool, toolchain)));
+        return out;
+    }
+
+    public Instant getResolvedAt() {
+        return resolvedAt;
+    }
+
+    /**
+     * Re-resolves every tool from {@code PATH}. Version banners are only
+     * re-read for binaries that moved or changed since the last pass.
+     */
+    public void refresh() {
+        Map<String, CompletableFuture<Void>> pending = new LinkedHashMap<>();
+        VERSION_FLAGS.forEach((tool, versionFlag) -> {
+            Path path = locate(tool);
+            if (path == null) {
+                if (toolchains.remove(tool) != null) {
+                    log.info("Toolchain {} is no longer available", tool);
+                }
+                return;
+            }
+            FileTime modified = lastModified(path);
+            Toolchain known = toolchains.get(tool);
+            if (known != null && known.getPath().equals(path) && known.modified.equals(modified)) {
+                return;
+            }
+            pending.put(tool, CompletableFuture.runAsync(() -> {
+                Toolchain toolchain = new Toolchain(tool, path, probeVersion(path, versionFlag), modified);
+                toolchains.put(tool, toolchain);
+                log.info("Toolchain {} -> {} ({})", tool, path, toolchain.getVersion());
+            }, probes));
+        });
+        CompletableFuture.allOf(pending.values().toArray(CompletableFuture[]::new)).join();
+        resolvedAt = Instant.now();
+    }
+
+    private static Path locate(String tool) {
+        String pathVariable = System.getenv("PATH");
+        if (pathVariable == null) {
+            return null;
+        }
+        boolean windows = File.separatorChar == '\\';
+        for (String dir : pathVariable.split(File.pathSeparator)) {
+            if (dir.isEmpty()) {
+                continue;
+            }
+            Path candidate = Path.of(dir, windows ? tool + ".exe" : tool);
+            if (Files.isRegularFile(candidate) && Files.isExecutable(candidate)) {
+                return candidate.toAbsolutePath();
+            }
+        }
+        return null;
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path.toRealPath());
+        } catch (Exception e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private String probeVersion(Path path, String versionFlag) {
+        try {
+            Process probe = new ProcessBuilder(path.toString(), versionFlag).redirectErrorStream(true).start();
+            String banner = ioPump.run(probe, null, null, PROBE_TIMEOUT_MS).getOutput().strip();
+            int newline = banner.indexOf('\n');
+            return newline == -1 ? banner : banner.substring(0, newline);
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+        probes.shutdownNow();
+    }
+}
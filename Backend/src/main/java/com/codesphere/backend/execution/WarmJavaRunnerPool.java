@@ -0,0 +1,516 @@
+package com.codesphere.backend.execution;
+
+import com.codesphere.backend.dto.ExecutionResult;
+import com.codesphere.backend.dto.ResourceUsage;
+import com.codesphere.backend.metrics.MetricsSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a few pre-started JVMs running {@code runner/WarmJavaRunner.java}
+ * so compiled user classes can run without paying JVM startup. Each runner
+ * handles one program at a time and is replaced after a crash, a timeout,
+ * leaked threads, or {@code max-uses} runs.
+ *
+ * <p>A runner serves one user only. A program can change JVM-wide state
+ * (system properties, default locale, statics of platform classes) or
+ * reach the runner's file descriptors through reflection, so once a runner
+ * has served a user it is idle for that user alone; when another user
+ * needs it, it is replaced by a fresh one. Frames travel over a Unix
+ * socket rather than stdout, so a program writing to FD 1 cannot forge
+ * them. Each runner has its own cgroup and scratch directory; in prlimit
+ * mode, where CPU seconds would add up across runs, there are no runners.
+ *
+ * <p>When no runner is idle, or the program touches the file system (the
+ * runner's working directory is not the project), callers fall back to a
+ * plain {@code java} process.
+ */
+@Component
+public class WarmJavaRunnerPool implements MetricsSource {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmJavaRunnerPool.class);
+
+    // Programs referencing these cannot run in a shared JVM whose cwd is not the project.
+    // Runtime is matched as the return type of getRuntime(), so RuntimeException stays warm.
+    private static final List<String> COLD_ONLY_REFERENCES =
+            List.of("java/io/File", "java/nio/file/", "java/lang/ProcessBuilder", "java/lang/Runtime;");
+
+    private final int size;
+    private final int maxUses;
+    private final String maxHeap;
+    private final InProcessJavaCompiler javaCompiler;
+    private final ProcessIoPump ioPump;
+    private final ToolchainRegistry toolchains;
+    private final ExecutionSandbox sandbox;
+    private final ScratchSpace scratchSpace;
+
+    /** Runners that have not served anyone yet. */
+    private final BlockingQueue<Runner> idle = new LinkedBlockingQueue<>();
+    /** Idle runners by the user they served. */
+    private final Map<String, Runner> idleOwned = new ConcurrentHashMap<>();
+    private final AtomicInteger live = new AtomicInteger();
+    private final AtomicBoolean healthy = new AtomicBoolean(true);
+    private final ExecutorService starter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "java-runner-starter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "java-runner-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Path runnerDir;
+    private volatile Path emptyDir;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong ineligible = new AtomicLong();
+    private final Map<String, AtomicLong> recycles = new ConcurrentHashMap<>();
+
+    public WarmJavaRunnerPool(@Value("${codesphere.java-runner-pool.size:2}") int size,
+                              @Value("${codesphere.java-runner-pool.max-uses:50}") int maxUses,
+                              @Value("${codesphere.java-runner-pool.max-heap:256m}") String maxHeap,
+                              InProcessJavaCompiler javaCompiler,
+                              ProcessIoPump ioPump,
+                              ToolchainRegistry toolchains,
+                              ExecutionSandbox sandbox,
+                              ScratchSpace scratchSpace) {
+        this.size = Math.max(0, size);
+        this.maxUses = Math.max(1, maxUses);
+        this.maxHeap = maxHeap;
+        this.javaCompiler = javaCompiler;
+        this.ioPump = ioPump;
+        this.toolchains = toolchains;
+        this.sandbox = sandbox;
+        this.scratchSpace = scratchSpace;
+    }
+
+    public boolean isEnabled() {
+        return size > 0 && healthy.get() && sandbox.getMode() != ExecutionSandbox.Mode.PRLIMIT;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (size == 0) {
+            return;
+        }
+        if (sandbox.getMode() == ExecutionSandbox.Mode.PRLIMIT) {
+            log.info("Warm Java runners disabled: prlimit cannot confine a JVM that serves many runs");
+            return;
+        }
+        starter.submit(() -> {
+            try {
+                runnerDir = compileRunner();
+                for (int i = 0; i < size; i++) {
+                    startRunner();
+                }
+            } catch (Exception e) {
+                healthy.set(false);
+                log.warn("Warm Java runners disabled: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Runs {@code mainClass} from {@code classesDir} on an idle warm runner
+     * of {@code username}, or a fresh one. Returns {@code null} when no
+     * runner is available or the program is not eligible, in which case the
+     * caller should start a cold JVM.
+     */
+    public ExecutionResult tryRun(String username, Path classesDir, String mainClass, String input,
+                                  Consumer<String> sink, long timeoutMillis) throws Exception {
+        return tryRun(username, classesDir, mainClass, input, sink, timeoutMillis, new RunCancellation());
+    }
+
+    /** As above; cancelling kills the runner, which is then replaced. */
+    public ExecutionResult tryRun(String username, Path classesDir, String mainClass, String input,
+                                  Consumer<String> sink, long timeoutMillis,
+                                  RunCancellation cancellation) throws Exception {
+        if (!isEnabled()) {
+            return null;
+        }
+        Map<String, byte[]> classes = loadClasses(classesDir);
+        if (classes.values().stream().anyMatch(WarmJavaRunnerPool::needsColdJvm)) {
+            ineligible.incrementAndGet();
+            return null;
+        }
+        Runner runner = idleOwned.remove(username);
+        if (runner == null) {
+            runner = idle.poll();
+        }
+        if (runner == null) {
+            misses.incrementAndGet();
+            reassignIdle(username);
+            return null;
+        }
+        runner.owner = username;
+        hits.incrementAndGet();
+        cancellation.onCancel(runner.process::destroyForcibly);
+        try {
+            return runner.run(mainClass, classes, input, sink, timeoutMillis);
+        } finally {
+            cancellation.onCancel(null);
+        }
+    }
+
+    /** Replaces one idle runner of another user, so the next run finds a fresh one. */
+    private void reassignIdle(String username) {
+        for (Map.Entry<String, Runner> entry : idleOwned.entrySet()) {
+            if (!entry.getKey().equals(username) && idleOwned.remove(entry.getKey(), entry.getValue())) {
+                recycle(entry.getValue(), "reassigned");
+                return;
+            }
+        }
+    }
+
+    private static boolean needsColdJvm(byte[] classFile) {
+        // Referenced class names appear verbatim in the constant pool.
+        String constants = new String(classFile, StandardCharsets.ISO_8859_1);
+        return COLD_ONLY_REFERENCES.stream().anyMatch(constants::contains);
+    }
+
+    private static Map<String, byte[]> loadClasses(Path classesDir) throws IOException {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        try (var files = Files.walk(classesDir)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".class")).toList()) {
+                String relative = classesDir.relativize(file).toString();
+                String name = relative.substring(0, relative.length() - ".class".length())
+                        .replace(java.io.File.separatorChar, '.');
+                classes.put(name, Files.readAllBytes(file));
+            }
+        }
+        return classes;
+    }
+
+    private Path compileRunner() throws Exception {
+        if (!javaCompiler.isAvailable()) {
+            throw new IllegalStateException("in-process Java compiler is not available");
+        }
+        if (!toolchains.isAvailable("java")) {
+            throw new IllegalStateException("java runtime is not installed");
+        }
+        Path source = RunnerResources.extract("WarmJavaRunner.java", "codesphere-java-runner");
+        Path dir = source.getParent();
+        InProcessJavaCompiler.Result compiled = javaCompiler.compile(dir, source, 60_000);
+        if (!compiled.isSuccess()) {
+            throw new IllegalStateException("runner failed to compile: " + compiled.getFailure().getError());
+        }
+        InProcessJavaCompiler.writeClasses(compiled.getClasses(), dir);
+        emptyDir = Files.createDirectory(dir.resolve("empty"));
+        return dir;
+    }
+
+    private void startRunner() {
+        if (live.get() >= size || runnerDir == null) {
+            return;
+        }
+        // Each runner lives in its own cgroup with the Java limits. rlimits are not an
+        // option here: CPU seconds would add up across every program the runner serves.
+        ExecutionSandbox.Lease lease = null;
+        if (sandbox.getMode() == ExecutionSandbox.Mode.CGROUP2) {
+            lease = sandbox.open("java", 0);
+            if (!lease.hasCgroup()) {
+                lease.close();
+                log.warn("Warm Java runner not started: no cgroup to confine it");
+                return;
+            }
+        }
+        Path socket = runnerDir.resolve("control-" + UUID.randomUUID() + ".sock");
+        ScratchSpace.Scratch scratch = null;
+        Process process = null;
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            scratch = scratchSpace.open(emptyDir);
+            List<String> command = List.of(toolchains.command("java"),
+                    "-Xmx" + maxHeap,
+                    "-XX:+UseSerialGC",
+                    "-XX:TieredStopAtLevel=1",
+                    "-cp", runnerDir.toString(),
+                    "WarmJavaRunner",
+                    socket.toString());
+            process = new ProcessBuilder(lease != null ? lease.wrap(command) : command)
+                    .directory(scratch.dir().toFile())
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            process.getOutputStream().close();
+            Runner runner = awaitReady(server, process, lease, scratch);
+            if (runner != null) {
+                live.incrementAndGet();
+                idle.offer(runner);
+                return;
+            }
+            log.warn("Warm Java runner did not start");
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not start warm Java runner: {}", e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(socket);
+            } catch (IOException ignored) {
+                // Removed with the runner directory at the latest.
+            }
+        }
+        if (process != null) {
+            process.destroyForcibly();
+        }
+        closeLease(lease);
+        if (scratch != null) {
+            scratch.close();
+        }
+    }
+
+    /** Waits for the runner to connect and say it is ready; {@code null} if it does not. */
+    private Runner awaitReady(ServerSocketChannel server, Process process, ExecutionSandbox.Lease lease,
+                              ScratchSpace.Scratch scratch) {
+        Runnable giveUp = () -> {
+            process.destroyForcibly();
+            try {
+                server.close();
+            } catch (IOException ignored) {
+                // accept() fails either way.
+            }
+        };
+        // A runner that dies before connecting would otherwise leave accept() waiting.
+        process.onExit().thenRun(giveUp);
+        ScheduledFuture<?> kill = watchdog.schedule(giveUp, 30, TimeUnit.SECONDS);
+        try {
+            Runner runner = new Runner(process, lease, scratch, server.accept());
+            return runner.frames.readByte() == 'R' ? runner : null;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            kill.cancel(false);
+        }
+    }
+
+    private void recycle(Runner runner, String reason) {
+        recycles.computeIfAbsent(reason, r -> new AtomicLong()).incrementAndGet();
+        runner.close();
+        live.decrementAndGet();
+        starter.submit(this::startRunner);
+    }
+
+    private static void closeLease(ExecutionSandbox.Lease lease) {
+        if (lease != null) {
+            lease.close();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        starter.shutdownNow();
+        watchdog.shutdownNow();
+        Runner runner;
+        while ((runner = idle.poll()) != null) {
+            runner.close();
+        }
+        idleOwned.values().forEach(Runner::close);
+        idleOwned.clear();
+    }
+
+    @Override
+    public String metricsName() {
+        return "javaRunnerPool";
+    }
+
+    @Override
+    public Map<String, Object> metricsSnapshot() {
+        long total = hits.get() + misses.get();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", isEnabled());
+        out.put("size", size);
+        out.put("live", live.get());
+        out.put("idle", idle.size());
+        out.put("idleOwned", idleOwned.size());
+        out.put("maxUses", maxUses);
+        out.put("hits", hits.get());
+        out.put("misses", misses.get());
+        out.put("hitRate", total == 0 ? 0.0 : (double) hits.get() / total);
+        out.put("ineligible", ineligible.get());
+        Map<String, Long> recycled = new LinkedHashMap<>();
+        recycles.forEach((reason, count) -> recycled.put(reason, count.get()));
+        out.put("recycles", recycled);
+        return out;
+    }
+
+    private static Long difference(Long after, Long before) {
+        return after == null || before == null ? null : after - before;
+    }
+
+    private static ExecutionResult withUsage(ExecutionResult result, ResourceUsage usage) {
+        result.setUsage(usage);
+        return result;
+    }
+
+    private final class Runner {
+        private final Process process;
+        private final ExecutionSandbox.Lease lease;
+        private final ScratchSpace.Scratch scratch;
+        private final SocketChannel channel;
+        private final DataOutputStream requests;
+        private final DataInputStream frames;
+        /** The user this runner serves once it has run anything. */
+        private String owner;
+        private int uses;
+
+        Runner(Process process, ExecutionSandbox.Lease lease, ScratchSpace.Scratch scratch,
+               SocketChannel channel) {
+            this.process = process;
+            this.lease = lease;
+            this.scratch = scratch;
+            this.channel = channel;
+            this.requests = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            this.frames = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            scratch.onOverflow(process::destroyForcibly);
+        }
+
+        ExecutionResult run(String mainClass, Map<String, byte[]> classes, String input,
+                            Consumer<String> sink, long timeoutMillis) throws IOException {
+            uses++;
+            ResourceUsage before = lease != null ? lease.usage() : null;
+            BoundedOutputBuffer output = ioPump.newBuffer();
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> kill = watchdog.schedule(() -> {
+                timedOut.set(true);
+                process.destroyForcibly();
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+            try {
+                byte[] stdin = input == null ? new byte[0] : input.getBytes(StandardCharsets.UTF_8);
+                requests.writeUTF(mainClass);
+                requests.writeInt(classes.size());
+                for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                    requests.writeUTF(entry.getKey());
+                    requests.writeInt(entry.getValue().length);
+                    requests.write(entry.getValue());
+                }
+                requests.writeInt(stdin.length);
+                requests.write(stdin);
+                requests.flush();
+
+                while (true) {
+                    int type = frames.readByte();
+                    if (type == 'X') {
+                        int exitCode = frames.readInt();
+                        boolean dirty = frames.readBoolean();
+                        kill.cancel(false);
+                        ResourceUsage usage = usageSince(before);
+                        release(dirty);
+                        return withUsage(exitCode == 0
+                                ? new ExecutionResult(output.toString(), null, "SUCCESS")
+                                : new ExecutionResult(null, output.toString(), "ERROR"), usage);
+                    }
+                    byte[] chunk = new byte[frames.readInt()];
+                    frames.readFully(chunk);
+                    String text = new String(chunk, StandardCharsets.UTF_8);
+                    output.append(text);
+                    if (sink != null) {
+                        sink.accept(text);
+                    }
+                }
+            } catch (IOException e) {
+                kill.cancel(false);
+                ResourceUsage usage = usageSince(before);
+                if (timedOut.get()) {
+                    recycle(this, "timeout");
+                    return withUsage(new ExecutionResult(null, "Execution timed out", "TIMEOUT"), usage);
+                }
+                if (scratch.overflowMessage() != null) {
+                    recycle(this, "scratchOverflow");
+                    return withUsage(new ExecutionResult(null, scratch.overflowMessage(), "ERROR"), usage);
+                }
+                // The program called System.exit or the JVM died.
+                int exitCode = waitForExit();
+                recycle(this, "crash");
+                return withUsage(exitCode == 0
+                        ? new ExecutionResult(output.toString(), null, "SUCCESS")
+                        : new ExecutionResult(null, output.toString(), "ERROR"), usage);
+            }
+        }
+
+        /**
+         * CPU time of this run alone, since the group spans every run of the
+         * runner. Peak memory is left out for the same reason.
+         */
+        private ResourceUsage usageSince(ResourceUsage before) {
+            ResourceUsage after = lease != null ? lease.usage() : null;
+            if (before == null || after == null) {
+                return null;
+            }
+            return new ResourceUsage(null, difference(after.getCpuUserMs(), before.getCpuUserMs()),
+                    difference(after.getCpuSystemMs(), before.getCpuSystemMs()), after.isOomKilled());
+        }
+
+        private void release(boolean dirty) {
+            if (dirty) {
+                recycle(this, "leakedThreads");
+            } else if (uses >= maxUses) {
+                recycle(this, "maxUses");
+            } else {
+                Runner previous = idleOwned.put(owner, this);
+                if (previous != null) {
+                    // The user ran twice at once; one idle runner each is enough.
+                    recycle(previous, "surplus");
+                }
+            }
+        }
+
+        void close() {
+            process.destroyForcibly();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // The process is gone either way.
+            }
+            closeLease(lease);
+            scratch.close();
+        }
+
+        private int waitForExit() {
+            try {
+                return process.waitFor(1, TimeUnit.SECONDS) ? process.exitValue() : -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+    }
+}
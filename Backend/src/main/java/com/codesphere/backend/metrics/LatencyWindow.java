@@ -0,0 +1,57 @@
+package com.codesphere.backend.metrics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fixed-size ring of the most recent latency samples (milliseconds) with
+ * percentile summaries. Old samples are overwritten, so memory stays constant.
+ */
+public class LatencyWindow {
+
+    private final long[] samples;
+    private int next;
+    private int size;
+    private long total;
+
+    public LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+        total++;
+    }
+
+    public synchronized long percentile(double p) {
+        return pick(sorted(), p);
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        long[] sorted = sorted();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("count", total);
+        out.put("p50Ms", pick(sorted, 50));
+        out.put("p95Ms", pick(sorted, 95));
+        out.put("p99Ms", pick(sorted, 99));
+        out.put("maxMs", sorted.length == 0 ? 0 : sorted[sorted.length - 1]);
+        return out;
+    }
+
+    private long[] sorted() {
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static long pick(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
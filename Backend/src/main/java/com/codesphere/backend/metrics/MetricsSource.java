@@ -0,0 +1,14 @@
+package com.codesphere.backend.metrics;
+
+import java.util.Map;
+
+/**
+ * A component that publishes runtime counters under {@code /api/metrics}.
+ */
+public interface MetricsSource {
+
+    /** Key the snapshot is published under, e.g. {@code "scheduler"}. */
+    String metricsName();
+
+    Map<String, Object> metricsSnapshot();
+}
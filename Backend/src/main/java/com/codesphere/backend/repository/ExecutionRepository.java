@@ -1,14 +1,65 @@
 package com.codesphere.backend.repository;
 
+import com.codesphere.backend.dto.ExecutionSummary;
 import com.codesphere.backend.entity.ExecutionEntity;
 import com.codesphere.backend.entity.ProjectEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface ExecutionRepository extends JpaRepository<ExecutionEntity, Long> {
 
-    List<ExecutionEntity> findByProjectIdOrderByExecutedAtDesc(Long projectId);
+    String SUMMARY = "select new com.codesphere.backend.dto.ExecutionSummary("
+            + "e.id, e.filename, e.status, e.executedAt, e.outputBytes, e.errorBytes, "
+            + "e.peakMemoryBytes, e.cpuUserMs, e.cpuSystemMs, e.oomKilled) "
+            + "from ExecutionEntity e where e.project.id = :projectId ";
+
+    String NEWEST_FIRST = "order by e.executedAt desc, e.id desc";
+
+    @Query(SUMMARY + NEWEST_FIRST)
+    List<ExecutionSummary> findHistory(@Param("projectId") Long projectId, Limit limit);
+
+    // The redundant "<=" bounds the index range scan; the OR alone would be a filter.
+    @Query(SUMMARY
+            + "and e.executedAt <= :executedAt "
+            + "and (e.executedAt < :executedAt or e.id < :id) "
+            + NEWEST_FIRST)
+    List<ExecutionSummary> findHistoryBefore(@Param("projectId") Long projectId,
+                                             @Param("executedAt") LocalDateTime executedAt,
+                                             @Param("id") Long id,
+                                             Limit limit);
+
+    @Query(SUMMARY + NEWEST_FIRST)
+    List<ExecutionSummary> findHistoryPage(@Param("projectId") Long projectId, Pageable page);
+
+    /** Oldest first: runs before {@code cutoff} and strictly older than the kept row. */
+    @Query("select e from ExecutionEntity e where e.project.id = :projectId "
+            + "and e.executedAt < :cutoff "
+            + "and e.executedAt <= :keptAt "
+            + "and (e.executedAt < :keptAt or e.id < :keptId) "
+            + "order by e.executedAt asc, e.id asc")
+    List<ExecutionEntity> findExpired(@Param("projectId") Long projectId,
+                                      @Param("cutoff") LocalDateTime cutoff,
+                                      @Param("keptAt") LocalDateTime keptAt,
+                                      @Param("keptId") Long keptId,
+                                      Limit limit);
+
+    @Query("select distinct e.project.id from ExecutionEntity e")
+    List<Long> findProjectIds();
+
+    @Query("select distinct e.outputBlob from ExecutionEntity e where e.outputBlob is not null")
+    List<String> findOutputBlobKeys();
+
+    @Query("select distinct e.errorBlob from ExecutionEntity e where e.errorBlob is not null")
+    List<String> findErrorBlobKeys();
+
+    Optional<ExecutionEntity> findByIdAndProjectId(Long id, Long projectId);
 
     void deleteByProject(ProjectEntity project);
 }
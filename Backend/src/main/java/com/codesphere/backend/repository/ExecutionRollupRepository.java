@@ -0,0 +1,21 @@
+package com.codesphere.backend.repository;
+
+import com.codesphere.backend.entity.ExecutionRollupEntity;
+import com.codesphere.backend.entity.ProjectEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface ExecutionRollupRepository extends JpaRepository<ExecutionRollupEntity, Long> {
+
+    @Query("select r from ExecutionRollupEntity r "
+            + "where r.project.id = :projectId and r.day = :day and r.status = :status")
+    Optional<ExecutionRollupEntity> findRollup(@Param("projectId") Long projectId,
+                                               @Param("day") LocalDate day,
+                                               @Param("status") String status);
+
+    void deleteByProject(ProjectEntity project);
+}
@@ -24,10 +24,16 @@ public class JwtFilter extends OncePerRequestFilter {
     ) throws ServletException, IOException {
 
         String authHeader = request.getHeader("Authorization");
-
+        String token = null;
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            token = authHeader.substring(7);
+        } else if ("websocket".equalsIgnoreCase(request.getHeader("Upgrade"))) {
+            // Browsers cannot set headers on a WebSocket handshake.
+            token = request.getParameter("token");
+        }
+
+        if (token != null) {
 
-            String token = authHeader.substring(7);
             String username = JwtUtil.validateToken(token);
 
             if (username != null &&
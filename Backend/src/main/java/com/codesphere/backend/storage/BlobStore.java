@@ -0,0 +1,27 @@
+package com.codesphere.backend.storage;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed storage for large values kept out of the database.
+ * Keys are derived from the content, so storing the same bytes twice keeps
+ * one copy.
+ */
+public interface BlobStore {
+
+    /** Stores {@code content} and returns its key. */
+    String put(byte[] content) throws IOException;
+
+    Optional<byte[]> get(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    /**
+     * Keys of blobs last stored before {@code cutoff}. Storing existing
+     * content again counts as storing it. The stream must be closed.
+     */
+    Stream<String> keysStoredBefore(Instant cutoff) throws IOException;
+}
@@ -0,0 +1,114 @@
+package com.codesphere.backend.storage;
+
+import com.codesphere.backend.util.WorkspacePaths;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@link BlobStore} on the local filesystem, by default next to the user
+ * workspaces. Blobs are gzip-compressed files named after the SHA-256 of
+ * their content and fanned out over 256 directories.
+ */
+@Component
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+
+    public FileSystemBlobStore(@Value("${codesphere.blob-store.dir:}") String dir) throws IOException {
+        this.root = dir == null || dir.isBlank() ? WorkspacePaths.baseDir().resolve(".blobs") : Path.of(dir);
+        Files.createDirectories(root);
+    }
+
+    @Override
+    public String put(byte[] content) throws IOException {
+        String key = sha256(content);
+        Path target = pathOf(key);
+        if (Files.exists(target)) {
+            // Fresh mtime keeps a blob that is about to be referenced again out of the next sweep.
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            return key;
+        }
+        Files.createDirectories(target.getParent());
+        Path staging = target.resolveSibling(key + ".tmp-" + UUID.randomUUID());
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(staging))) {
+                out.write(content);
+            }
+            Files.move(staging, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+        return key;
+    }
+
+    @Override
+    public Optional<byte[]> get(String key) throws IOException {
+        Path source = pathOf(key);
+        if (!Files.exists(source)) {
+            return Optional.empty();
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(source))) {
+            return Optional.of(in.readAllBytes());
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(pathOf(key));
+    }
+
+    @Override
+    public Stream<String> keysStoredBefore(Instant cutoff) throws IOException {
+        return Files.walk(root, 2)
+                .filter(path -> path.getFileName().toString().endsWith(".gz"))
+                .filter(path -> storedBefore(path, cutoff))
+                .map(path -> path.getFileName().toString())
+                .map(name -> name.substring(0, name.length() - ".gz".length()))
+                .filter(key -> KEY.matcher(key).matches());
+    }
+
+    private static boolean storedBefore(Path path, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(path).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            // Deleted while walking.
+            return false;
+        }
+    }
+
+    private Path pathOf(String key) {
+        if (key == null || !KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid blob key");
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key + ".gz");
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Long-lived JVM that runs compiled user programs on request, so each run
+ * skips JVM startup. Launched and driven by the backend's WarmJavaRunnerPool.
+ *
+ * Protocol, all big-endian over the Unix socket named by the first argument
+ * (not stdin/stdout, which a program can reach directly and so could forge frames on):
+ *   backend -> runner: mainClass (UTF), classCount (int),
+ *                      [name (UTF), length (int), bytes]..., stdinLength (int), stdin bytes
+ *   runner -> backend: 'R' once when ready, then per run any number of
+ *                      'O'|'E', length (int), bytes   (program stdout / stderr)
+ *                      and finally 'X', exitCode (int), dirty (boolean)
+ *
+ * Every run gets a fresh class loader and its own System.in/out/err. "dirty"
+ * means the program left threads running, so the backend should recycle us.
+ */
+public final class WarmJavaRunner {
+
+    private WarmJavaRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        SocketChannel control = SocketChannel.open(UnixDomainSocketAddress.of(args[0]));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(control)));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(control)));
+        out.writeByte('R');
+        out.flush();
+
+        while (true) {
+            String mainClass;
+            try {
+                mainClass = in.readUTF();
+            } catch (EOFException e) {
+                return;
+            }
+            Map<String, byte[]> classes = new HashMap<>();
+            int classCount = in.readInt();
+            for (int i = 0; i < classCount; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classes.put(name, bytes);
+            }
+            byte[] stdin = new byte[in.readInt()];
+            in.readFully(stdin);
+
+            runOnce(mainClass, classes, stdin, out);
+        }
+    }
+
+    private static void runOnce(String mainClass, Map<String, byte[]> classes, byte[] stdin,
+                                DataOutputStream out) throws IOException {
+        Set<Thread> before = Thread.getAllStackTraces().keySet();
+        InputStream originalIn = System.in;
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        PrintStream programOut = new PrintStream(new FrameStream('O', out), true);
+        PrintStream programErr = new PrintStream(new FrameStream('E', out), true);
+        int exitCode = 0;
+
+        System.setIn(new ByteArrayInputStream(stdin));
+        System.setOut(programOut);
+        System.setErr(programErr);
+        try {
+            ClassLoader loader = new MemoryClassLoader(classes);
+            Method main = Class.forName(mainClass, true, loader).getMethod("main", String[].class);
+            main.invoke(null, (Object) new String[0]);
+            awaitUserThreads(before);
+        } catch (InvocationTargetException e) {
+            programErr.print("Exception in thread \"main\" ");
+            Throwable cause = e.getCause();
+            cause.setStackTrace(userFrames(cause.getStackTrace()));
+            cause.printStackTrace(programErr);
+            exitCode = 1;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            programErr.println("Error: Could not find or load main class " + mainClass);
+            programErr.println("Caused by: " + e);
+            exitCode = 1;
+        } finally {
+            programOut.flush();
+            programErr.flush();
+            System.setIn(originalIn);
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+        }
+
+        boolean dirty = Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> !before.contains(thread) && thread.isAlive());
+        synchronized (out) {
+            out.writeByte('X');
+            out.writeInt(exitCode);
+            out.writeBoolean(dirty);
+            out.flush();
+        }
+    }
+
+    /** Drops the reflection and runner frames below the program's main method. */
+    private static StackTraceElement[] userFrames(StackTraceElement[] trace) {
+        for (int i = 0; i < trace.length; i++) {
+            if (trace[i].getClassName().startsWith("jdk.internal.reflect.")) {
+                return Arrays.copyOf(trace, i);
+            }
+        }
+        return trace;
+    }
+
+    /** Like the java launcher: the program ends when its non-daemon threads do. */
+    private static void awaitUserThreads(Set<Thread> before) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!before.contains(thread) && !thread.isDaemon()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class MemoryClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        MemoryClassLoader(Map<String, byte[]> classes) {
+            super(ClassLoader.getPlatformClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class FrameStream extends OutputStream {
+        private final int type;
+        private final DataOutputStream out;
+
+        FrameStream(int type, DataOutputStream out) {
+            this.type = type;
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(length);
+                out.write(bytes, offset, length);
+                out.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Pre-started Node process for one execution, kept ready by the backend's
+ * NodeSparePool. Node cannot fork, so instead of a zygote the backend keeps
+ * a few of these booted and idle; startup happens before the request does.
+ *
+ * The first line on stdin is a JSON header {"cwd", "file"}; everything after
+ * it is the program's own stdin.
+ */
+'use strict';
+
+const fs = require('fs');
+const path = require('path');
+const Module = require('module');
+
+// Preloaded for user programs.
+require('readline');
+require('util');
+require('events');
+
+function readHeader() {
+  const bytes = [];
+  const one = Buffer.alloc(1);
+  for (;;) {
+    let read;
+    try {
+      read = fs.readSync(0, one, 0, 1, null);
+    } catch (e) {
+      if (e.code === 'EAGAIN') continue;
+      throw e;
+    }
+    if (read === 0) process.exit(0);
+    if (one[0] === 0x0a) break;
+    bytes.push(one[0]);
+  }
+  return JSON.parse(Buffer.from(bytes).toString('utf8'));
+}
+
+const header = readHeader();
+process.chdir(header.cwd);
+process.argv[1] = path.resolve(header.file);
+Module.runMain();
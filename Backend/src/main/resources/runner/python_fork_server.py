@@ -0,0 +1,171 @@
+"""
+Zygote for Python executions, started and driven by the backend's
+PythonForkServer. Common modules are imported once here; each execution is
+a fork() of this process, so a run costs a fork instead of an interpreter
+start.
+
+The backend connects to the Unix socket given as argv[1] and sends one JSON
+header line {"id", "cwd", "file"} followed by the program's stdin. The header
+also carries the run's limits: either "cgroup" (a cgroup.procs file to join)
+or "cpuSeconds" and "addressSpace" rlimits. The
+forked child uses that connection as stdin, stdout and stderr. Lifecycle
+events go to this process's stdout, one per line:
+    ready
+    start <id> <pid>
+    exit <id> <exitcode>
+"""
+
+import os
+import signal
+import socket
+import sys
+import selectors
+
+# Preloaded for user programs; children inherit them already imported.
+import bisect  # noqa: F401
+import collections  # noqa: F401
+import datetime  # noqa: F401
+import functools  # noqa: F401
+import heapq  # noqa: F401
+import io
+import itertools  # noqa: F401
+import json
+import math  # noqa: F401
+import random
+import re  # noqa: F401
+import resource
+import runpy
+import string  # noqa: F401
+import traceback
+import typing  # noqa: F401
+
+
+def read_header(conn):
+    data = bytearray()
+    while True:
+        byte = conn.recv(1)
+        if not byte:
+            return None
+        if byte == b"\n":
+            return json.loads(data.decode("utf-8"))
+        data += byte
+
+
+def report(line):
+    sys.stdout.write(line + "\n")
+    sys.stdout.flush()
+
+
+def confine(header):
+    if header.get("cgroup"):
+        with open(header["cgroup"], "w") as procs:
+            procs.write(str(os.getpid()))
+        return
+    if header.get("cpuSeconds"):
+        seconds = int(header["cpuSeconds"])
+        resource.setrlimit(resource.RLIMIT_CPU, (seconds, seconds))
+    if header.get("addressSpace"):
+        limit = int(header["addressSpace"])
+        resource.setrlimit(resource.RLIMIT_AS, (limit, limit))
+
+
+def run_child(conn, header):
+    fd = conn.fileno()
+    for target in (0, 1, 2):
+        os.dup2(fd, target)
+    conn.close()
+    try:
+        confine(header)
+    except OSError as e:
+        os.write(2, ("Could not apply execution limits: %s\n" % e).encode())
+        os._exit(125)
+
+    os.chdir(header["cwd"])
+    path = header["file"]
+    sys.argv = [path]
+    sys.path[0] = os.path.dirname(path)
+    sys.stdin = open(0, "r", encoding="utf-8", closefd=False)
+    sys.stdout = open(1, "w", encoding="utf-8", closefd=False)
+    sys.stderr = open(2, "w", encoding="utf-8", closefd=False, buffering=1)
+    random.seed()
+
+    code = 0
+    try:
+        runpy.run_path(path, run_name="__main__")
+    except SystemExit as e:
+        if e.code is None:
+            code = 0
+        elif isinstance(e.code, int):
+            code = e.code
+        else:
+            print(e.code, file=sys.stderr)
+            code = 1
+    except BaseException as e:
+        # Hide the runpy frames so tracebacks look like `python3 file.py`.
+        tb = e.__traceback__
+        while tb is not None and tb.tb_frame.f_code.co_filename != path:
+            tb = tb.tb_next
+        traceback.print_exception(type(e), e, tb or e.__traceback__)
+        code = 1
+    try:
+        sys.stdout.flush()
+        sys.stderr.flush()
+    finally:
+        os._exit(code & 0xFF)
+
+
+def main():
+    listener = socket.socket(socket.AF_UNIX, socket.SOCK_STREAM)
+    listener.bind(sys.argv[1])
+    listener.listen(64)
+
+    wake_r, wake_w = os.pipe()
+    os.set_blocking(wake_r, False)
+    os.set_blocking(wake_w, False)
+    signal.set_wakeup_fd(wake_w)
+    signal.signal(signal.SIGCHLD, lambda signum, frame: None)
+
+    selector = selectors.DefaultSelector()
+    selector.register(listener, selectors.EVENT_READ)
+    selector.register(wake_r, selectors.EVENT_READ)
+    running = {}
+    report("ready")
+
+    while True:
+        for key, _ in selector.select():
+            if key.fileobj is listener:
+                conn, _ = listener.accept()
+                try:
+                    header = read_header(conn)
+                except (OSError, ValueError):
+                    header = None
+                if header is None:
+                    conn.close()
+                    continue
+                pid = os.fork()
+                if pid == 0:
+                    selector.close()
+                    listener.close()
+                    signal.set_wakeup_fd(-1)
+                    signal.signal(signal.SIGCHLD, signal.SIG_DFL)
+                    os.close(wake_r)
+                    os.close(wake_w)
+                    run_child(conn, header)
+                conn.close()
+                running[pid] = header["id"]
+                report("start %s %d" % (header["id"], pid))
+            else:
+                try:
+                    while os.read(wake_r, 512):
+                        pass
+                except BlockingIOError:
+                    pass
+                while running:
+                    pid, status = os.waitpid(-1, os.WNOHANG)
+                    if pid == 0:
+                        break
+                    report("exit %s %d" % (running.pop(pid), os.waitstatus_to_exitcode(status)))
+
+
+if __name__ == "__main__":
+    main()
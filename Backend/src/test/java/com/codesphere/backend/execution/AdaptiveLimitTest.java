@@ -0,0 +1,67 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveLimitTest {
+
+    @Test
+    void congestedRoundShrinksTheLimit() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(8, 1, 16, 20);
+
+        runRound(limit, 8, 60);
+
+        assertEquals(6, limit.getLimit());
+        assertEquals(60, limit.getLastRoundMedianStallPercent());
+    }
+
+    @Test
+    void calmSaturatedRoundGrowsTheLimitButNotPastMax() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(4, 1, 5, 20);
+
+        runRound(limit, 4, 5);
+        assertEquals(5, limit.getLimit());
+
+        runRound(limit, 5, 5);
+        assertEquals(5, limit.getLimit());
+    }
+
+    @Test
+    void calmRoundThatLeftSlotsIdleKeepsTheLimit() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(4, 1, 8, 20);
+
+        for (int i = 0; i < 4; i++) {
+            limit.acquire();
+            limit.started();
+            limit.finished(5L);
+        }
+
+        assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    void cancelledRunsAreNotSampled() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 1, 4, 20);
+
+        for (int i = 0; i < 10; i++) {
+            limit.acquire();
+            limit.started();
+            limit.finished(null);
+        }
+
+        assertEquals(2, limit.getLimit());
+        assertEquals(0, limit.getDecreases());
+    }
+
+    /** Fills every slot, then finishes all of them with the given stall share. */
+    private static void runRound(AdaptiveLimit limit, int slots, long stallPercent) throws Exception {
+        for (int i = 0; i < slots; i++) {
+            limit.acquire();
+            limit.started();
+        }
+        for (int i = 0; i < slots; i++) {
+            limit.finished(stallPercent);
+        }
+    }
+}
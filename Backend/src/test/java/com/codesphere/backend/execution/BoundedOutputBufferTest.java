@@ -0,0 +1,39 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class BoundedOutputBufferTest {
+
+    @Test
+    void keepsShortOutputVerbatim() {
+        BoundedOutputBuffer buffer = new BoundedOutputBuffer(4, 4);
+        buffer.append("abc");
+        buffer.append("def");
+        assertFalse(buffer.isTruncated());
+        assertEquals("abcdef", buffer.toString());
+    }
+
+    @Test
+    void keepsHeadAndTailAroundTruncationMarker() {
+        BoundedOutputBuffer buffer = new BoundedOutputBuffer(3, 3);
+        buffer.append("abc");
+        for (int i = 0; i < 10; i++) {
+            buffer.append("x");
+        }
+        buffer.append("xyz");
+        assertTrue(buffer.isTruncated());
+        assertEquals(16, buffer.totalChars());
+        assertEquals("abc\n... [output truncated: 10 characters omitted] ...\nxyz", buffer.toString());
+    }
+
+    @Test
+    void largeSingleAppendKeepsLastCharacters() {
+        BoundedOutputBuffer buffer = new BoundedOutputBuffer(2, 3);
+        buffer.append("0123456789");
+        assertEquals("01\n... [output truncated: 5 characters omitted] ...\n789", buffer.toString());
+    }
+}
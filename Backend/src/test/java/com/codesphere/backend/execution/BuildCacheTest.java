@@ -0,0 +1,90 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.codesphere.backend.dto.ExecutionResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BuildCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void keyChangesWithSourceContentAndFlags() throws Exception {
+        Path source = Files.writeString(tempDir.resolve("Main.java"), "class Main {}");
+        String key = BuildCache.keyOf("javac 17", List.of("javac"), tempDir, List.of(source));
+
+        assertEquals(key, BuildCache.keyOf("javac 17", List.of("javac"), tempDir, List.of(source)));
+        assertNotEquals(key, BuildCache.keyOf("javac 17", List.of("javac", "-g"), tempDir, List.of(source)));
+
+        Files.writeString(source, "class Main { }");
+        assertNotEquals(key, BuildCache.keyOf("javac 17", List.of("javac"), tempDir, List.of(source)));
+    }
+
+    @Test
+    void secondLookupIsAHitAndFailuresAreNotCached() throws Exception {
+        BuildCache cache = new BuildCache(tempDir.resolve("cache").toString(), 1 << 20);
+        AtomicInteger builds = new AtomicInteger();
+        BuildCache.Builder builder = dir -> {
+            builds.incrementAndGet();
+            Files.writeString(dir.resolve("a.out"), "binary");
+            return null;
+        };
+
+        assertFalse(cache.getOrBuild("k", builder).isHit());
+        BuildCache.Build hit = cache.getOrBuild("k", builder);
+        assertTrue(hit.isHit());
+        assertTrue(Files.exists(hit.getDir().resolve("a.out")));
+        assertEquals(1, builds.get());
+
+        ExecutionResult error = new ExecutionResult(null, "boom", "ERROR");
+        assertFalse(cache.getOrBuild("bad", dir -> error).isSuccess());
+        assertFalse(cache.contains("bad"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntryOverBudget() throws Exception {
+        BuildCache cache = new BuildCache(tempDir.resolve("cache").toString(), 10);
+        BuildCache.Builder sixBytes = dir -> {
+            Files.writeString(dir.resolve("out"), "123456");
+            return null;
+        };
+
+        cache.getOrBuild("first", sixBytes).release();
+        cache.getOrBuild("second", sixBytes).release();
+
+        assertFalse(cache.contains("first"));
+        assertTrue(cache.contains("second"));
+    }
+
+    @Test
+    void keepsPinnedEntryUntilReleased() throws Exception {
+        BuildCache cache = new BuildCache(tempDir.resolve("cache").toString(), 10);
+        BuildCache.Builder sixBytes = dir -> {
+            Files.writeString(dir.resolve("out"), "123456");
+            return null;
+        };
+
+        BuildCache.Build running = cache.getOrBuild("running", sixBytes);
+        cache.getOrBuild("next", sixBytes).release();
+
+        assertTrue(Files.exists(running.getDir().resolve("out")));
+        running.release();
+        running.release();
+        cache.getOrBuild("last", sixBytes).release();
+        assertFalse(cache.contains("running"));
+        assertFalse(cache.contains("next"));
+        assertTrue(cache.contains("last"));
+    }
+}
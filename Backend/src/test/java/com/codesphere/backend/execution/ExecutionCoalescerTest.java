@@ -0,0 +1,95 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.codesphere.backend.dto.ExecutionResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExecutionCoalescerTest {
+
+    @TempDir
+    Path project;
+
+    @Test
+    void identicalRunsShareAKey() throws Exception {
+        Path file = Files.writeString(project.resolve("main.py"), "print(input())");
+
+        assertEquals(ExecutionCoalescer.keyOf(job("alice", file, "1")),
+                ExecutionCoalescer.keyOf(job("alice", file, "1")));
+    }
+
+    @Test
+    void userInputAndContentAllChangeTheKey() throws Exception {
+        Path file = Files.writeString(project.resolve("main.py"), "print(input())");
+        String key = ExecutionCoalescer.keyOf(job("alice", file, "1"));
+
+        assertNotEquals(key, ExecutionCoalescer.keyOf(job("bob", file, "1")));
+        assertNotEquals(key, ExecutionCoalescer.keyOf(job("alice", file, "2")));
+        assertNotEquals(key, ExecutionCoalescer.keyOf(job("alice", file, null)));
+
+        Files.writeString(file, "print(input() * 2)");
+        assertNotEquals(key, ExecutionCoalescer.keyOf(job("alice", file, "1")));
+    }
+
+    @Test
+    void editingACompanionFileChangesTheKey() throws Exception {
+        Path main = Files.writeString(project.resolve("Main.java"),
+                "public class Main { public static void main(String[] a) { System.out.println(Helper.value()); } }");
+        Path helper = Files.writeString(project.resolve("Helper.java"),
+                "public class Helper { static int value() { return 1; } }");
+        ExecutionJob run = new ExecutionJob("alice", null, "demo", "Main.java", project, main, null);
+        String key = ExecutionCoalescer.keyOf(run);
+
+        // javac -sourcepath picks up Helper.java, so the old output must not be reused.
+        Files.writeString(helper, "public class Helper { static int value() { return 42; } }");
+        assertNotEquals(key, ExecutionCoalescer.keyOf(run));
+    }
+
+    @Test
+    void sharedRunSurvivesOneWaiterLettingGoTwice() throws Exception {
+        Path file = Files.writeString(project.resolve("main.py"), "print(1)");
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutionService blocking = new ExecutionService(null, null, null, null, null, null, null,
+                null, null, null, null, null, null, null) {
+            @Override
+            public ExecutionResult run(ExecutionJob job) throws Exception {
+                finish.await();
+                return new ExecutionResult("1\n", null, "SUCCESS");
+            }
+        };
+        ExecutionScheduler scheduler = new ExecutionScheduler(blocking, new NodePressure(project.toString()),
+                1, 8, 8, 1000, 600, false, 1, 1, 20, 0);
+        try {
+            ExecutionCoalescer coalescer = new ExecutionCoalescer(scheduler, true, 0);
+            ExecutionJob first = coalescer.submit(job("alice", file, null), false);
+            ExecutionJob second = coalescer.submit(job("alice", file, null), false);
+            assertSame(first, second);
+
+            // Write failure and container error both report the same disconnect.
+            Runnable release = coalescer.releaseOnce(first);
+            release.run();
+            release.run();
+            assertFalse(first.getCancellation().isCancelled());
+
+            coalescer.releaseOnce(second).run();
+            assertTrue(first.getCancellation().isCancelled());
+        } finally {
+            finish.countDown();
+            scheduler.shutdown();
+        }
+    }
+
+    private ExecutionJob job(String username, Path file, String input) {
+        return new ExecutionJob(username, null, "demo", "main.py", project, file, input);
+    }
+}
@@ -0,0 +1,51 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExecutionOutputFilesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ExecutionOutputFiles files;
+
+    @AfterEach
+    void shutdown() {
+        if (files != null) {
+            files.shutdown();
+        }
+    }
+
+    @Test
+    void previewReadsOnlyTheStartAndDropsACutCharacter() throws Exception {
+        files = new ExecutionOutputFiles(tempDir.toString(), 1024, 600);
+        Path file = files.pathFor("job");
+        // 4095 ASCII bytes, then a two-byte character straddling the 4096-byte preview.
+        Files.write(file, ("a".repeat(4095) + "é" + "tail").getBytes(StandardCharsets.UTF_8));
+
+        String preview = ExecutionOutputFiles.preview(file);
+
+        assertEquals("a".repeat(4095), preview);
+        assertEquals(4101, files.finished(file));
+        assertEquals(4101L, files.metricsSnapshot().get("writtenBytes"));
+    }
+
+    @Test
+    void findsOnlyFilesThatWereWritten() throws Exception {
+        files = new ExecutionOutputFiles(tempDir.toString(), 1024, 600);
+
+        assertFalse(files.find("missing").isPresent());
+        Files.writeString(files.pathFor("present"), "out");
+        assertTrue(files.find("present").isPresent());
+    }
+}
@@ -0,0 +1,38 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+
+import com.codesphere.backend.entity.ExecutionEntity;
+import com.codesphere.backend.storage.FileSystemBlobStore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExecutionOutputStoreTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void keepsPreviewInRowAndFullTextInBlob() throws Exception {
+        ExecutionOutputStore store = new ExecutionOutputStore(new FileSystemBlobStore(root.toString()), 16);
+        ExecutionEntity record = new ExecutionEntity();
+        String output = "é".repeat(100);
+        record.setOutput(output);
+        record.setError("short");
+
+        store.offload(record);
+        store.offload(record);
+
+        assertEquals("é".repeat(16), record.getOutput());
+        assertEquals(200L, record.getOutputBytes());
+        assertNotNull(record.getOutputBlob());
+        assertEquals(output, store.loadOutput(record));
+        assertNull(record.getErrorBlob());
+        assertEquals("short", store.loadError(record));
+    }
+}
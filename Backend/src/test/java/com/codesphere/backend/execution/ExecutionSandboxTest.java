@@ -0,0 +1,71 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+class ExecutionSandboxTest {
+
+    private final ProcessIoPump pump = new ProcessIoPump(4096, 4096);
+    private final ToolchainRegistry toolchains = new ToolchainRegistry(pump, 0);
+
+    @AfterEach
+    void shutdown() {
+        toolchains.shutdown();
+    }
+
+    @Test
+    void languageLimitsInheritUnsetValuesFromDefaults() {
+        ExecutionLimits limits = new ExecutionLimits();
+        ExecutionLimits.Limit java = new ExecutionLimits.Limit();
+        java.setMemoryMb(512);
+        limits.setLanguages(Map.of("java", java));
+
+        assertEquals(512, limits.forLanguage("java").getMemoryMb());
+        assertEquals(64, limits.forLanguage("java").getPids());
+        assertEquals(256, limits.forLanguage("python").getMemoryMb());
+    }
+
+    @Test
+    void disabledSandboxLeavesCommandsAlone() {
+        ExecutionLimits limits = new ExecutionLimits();
+        limits.setEnabled(false);
+        ExecutionSandbox sandbox = new ExecutionSandbox(limits, toolchains);
+        sandbox.init();
+
+        try (ExecutionSandbox.Lease lease = sandbox.open("c", 5000)) {
+            assertEquals(List.of("./a.out"), lease.wrap(List.of("./a.out")));
+            assertNull(lease.usage());
+        }
+    }
+
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    void memoryHogIsStoppedByLimit() throws Exception {
+        toolchains.init();
+        ExecutionLimits limits = new ExecutionLimits();
+        limits.getDefault().setMemoryMb(64);
+        ExecutionSandbox sandbox = new ExecutionSandbox(limits, toolchains);
+        sandbox.init();
+        assumeTrue(sandbox.getMode() != ExecutionSandbox.Mode.NONE);
+
+        try (ExecutionSandbox.Lease lease = sandbox.open("python", 5000)) {
+            Process hog = new ProcessBuilder(lease.wrap(List.of(
+                    toolchains.command("python3"), "-c", "x = bytearray(512 * 1024 * 1024)")))
+                    .redirectErrorStream(true)
+                    .start();
+            ProcessOutcome outcome = pump.run(hog, null, null, 5000);
+
+            assertNotEquals(0, outcome.getExitCode());
+        }
+    }
+}
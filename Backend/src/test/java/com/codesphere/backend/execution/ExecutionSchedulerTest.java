@@ -0,0 +1,97 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.codesphere.backend.dto.ExecutionResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExecutionSchedulerTest {
+
+    @TempDir
+    Path pressureDir;
+
+    private final AtomicLong stallMicros = new AtomicLong();
+
+    @Test
+    void slowProgramsOnAnIdleNodeKeepTheLimit() throws Exception {
+        writeStall();
+        // Every run takes a while and every other one times out, but the node never stalls.
+        ExecutionScheduler scheduler = scheduler(elapsedMs -> 0);
+        try {
+            runAll(scheduler, 40);
+            assertEquals(4, limitOf(scheduler));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void stallingNodeShrinksTheLimit() throws Exception {
+        writeStall();
+        // Something waited for a CPU for the whole of every run.
+        ExecutionScheduler scheduler = scheduler(elapsedMs -> elapsedMs * 1000);
+        try {
+            runAll(scheduler, 40);
+            assertEquals(1, limitOf(scheduler));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private interface Stall {
+        long micros(long elapsedMs);
+    }
+
+    private ExecutionScheduler scheduler(Stall stall) {
+        AtomicLong runs = new AtomicLong();
+        ExecutionService slow = new ExecutionService(null, null, null, null, null, null, null,
+                null, null, null, null, null, null, null) {
+            @Override
+            public ExecutionResult run(ExecutionJob job) throws Exception {
+                Thread.sleep(50);
+                stallMicros.addAndGet(stall.micros(50));
+                writeStall();
+                return runs.incrementAndGet() % 2 == 0
+                        ? new ExecutionResult(null, "Execution timed out", "TIMEOUT")
+                        : new ExecutionResult("done\n", null, "SUCCESS");
+            }
+        };
+        return new ExecutionScheduler(slow, new NodePressure(pressureDir.toString()),
+                4, 64, 16, 1000, 600, true, 1, 4, 20, 0);
+    }
+
+    private synchronized void writeStall() throws Exception {
+        // Replaced in one step so the scheduler never reads a half-written file.
+        Path next = Files.writeString(pressureDir.resolve("cpu.next"),
+                "some avg10=0.00 avg60=0.00 avg300=0.00 total=" + stallMicros.get() + "\n"
+                        + "full avg10=0.00 avg60=0.00 avg300=0.00 total=0\n");
+        Files.move(next, pressureDir.resolve("cpu"), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void runAll(ExecutionScheduler scheduler, int count) throws Exception {
+        List<ExecutionJob> jobs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            jobs.add(scheduler.submit(new ExecutionJob("user" + i % 4, null, "demo", "main.py", null, null, null)));
+        }
+        for (ExecutionJob job : jobs) {
+            job.getCompletion().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int limitOf(ExecutionScheduler scheduler) {
+        return (int) ((Map<String, Object>) scheduler.metricsSnapshot().get("concurrencyLimit")).get("limit");
+    }
+}
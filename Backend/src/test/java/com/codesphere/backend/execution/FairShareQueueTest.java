@@ -0,0 +1,61 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+class FairShareQueueTest {
+
+    @Test
+    void lightUserOvertakesFloodingUser() throws Exception {
+        FairShareQueue queue = new FairShareQueue(64, 16, 1000);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.offer(job("heavy")));
+        }
+
+        ExecutionJob first = queue.take();
+        queue.charge("heavy", 5000);
+        queue.offer(job("light"));
+
+        assertEquals("heavy", first.getUsername());
+        assertEquals("light", queue.take().getUsername());
+    }
+
+    @Test
+    void alternatesBetweenUsersWithEqualUsage() throws Exception {
+        FairShareQueue queue = new FairShareQueue(64, 16, 1000);
+        for (int i = 0; i < 3; i++) {
+            queue.offer(job("a"));
+            queue.offer(job("b"));
+        }
+
+        StringBuilder order = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            ExecutionJob job = queue.take();
+            order.append(job.getUsername());
+            queue.charge(job.getUsername(), 1000);
+        }
+
+        assertEquals("ababab", order.toString());
+    }
+
+    @Test
+    void capsEachUsersShareOfTheQueue() {
+        FairShareQueue queue = new FairShareQueue(64, 2, 1000);
+
+        assertTrue(queue.offer(job("a")));
+        assertTrue(queue.offer(job("a")));
+        assertFalse(queue.offer(job("a")));
+        assertTrue(queue.offer(job("b")));
+        assertEquals(3, queue.size());
+    }
+
+    private static ExecutionJob job(String username) {
+        return new ExecutionJob(username, null, "demo", "main.py",
+                Path.of("/tmp"), Path.of("/tmp/main.py"), null);
+    }
+}
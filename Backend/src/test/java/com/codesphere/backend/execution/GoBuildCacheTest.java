@@ -0,0 +1,48 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GoBuildCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void trimsLeastRecentlyUsedEntriesAndKeepsToolFiles() throws Exception {
+        GoBuildCache cache = new GoBuildCache(tempDir.toString(), 4000, 0);
+        Path readme = Files.writeString(tempDir.resolve("README"), "x".repeat(2000));
+        Path[] entries = new Path[5];
+        for (int i = 0; i < entries.length; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve(String.format("%02x", i)));
+            entries[i] = Files.write(dir.resolve("entry-a"), new byte[1000]);
+            Files.setLastModifiedTime(entries[i], FileTime.fromMillis(1_000_000L * (i + 1)));
+        }
+
+        cache.trim();
+
+        assertFalse(Files.exists(entries[0]));
+        assertFalse(Files.exists(entries[1]));
+        assertTrue(Files.exists(entries[2]));
+        assertTrue(Files.exists(entries[4]));
+        assertTrue(Files.exists(readme));
+        assertEquals(3000L, cache.metricsSnapshot().get("sizeBytes"));
+    }
+
+    @Test
+    void pointsGoAtTheManagedDirectory() throws Exception {
+        GoBuildCache cache = new GoBuildCache(tempDir.toString(), 4000, 0);
+
+        ProcessBuilder builder = cache.configure(new ProcessBuilder("go", "build"));
+
+        assertEquals(tempDir.toString(), builder.environment().get("GOCACHE"));
+    }
+}
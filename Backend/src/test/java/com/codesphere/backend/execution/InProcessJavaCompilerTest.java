@@ -0,0 +1,42 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InProcessJavaCompilerTest {
+
+    @TempDir
+    Path projectDir;
+
+    private final InProcessJavaCompiler compiler = new InProcessJavaCompiler("in-process");
+
+    @Test
+    void compilesEntryFileAndReferencedSourcesInMemory() throws Exception {
+        Files.writeString(projectDir.resolve("Helper.java"), "class Helper { static int two() { return 2; } }");
+        Path main = Files.writeString(projectDir.resolve("Main.java"),
+                "public class Main { public static void main(String[] a) { System.out.println(Helper.two()); } }");
+
+        InProcessJavaCompiler.Result result = compiler.compile(projectDir, main, 30_000);
+
+        assertTrue(result.isSuccess());
+        assertTrue(result.getClasses().containsKey("Main"));
+        assertTrue(result.getClasses().containsKey("Helper"));
+        assertFalse(Files.exists(projectDir.resolve("Main.class")));
+    }
+
+    @Test
+    void reportsDiagnosticsRelativeToProject() throws Exception {
+        Path broken = Files.writeString(projectDir.resolve("Broken.java"), "class Broken { int x = \"s\"; }");
+
+        InProcessJavaCompiler.Result result = compiler.compile(projectDir, broken, 30_000);
+
+        assertFalse(result.isSuccess());
+        assertTrue(result.getFailure().getError().startsWith("Broken.java:1: error:"));
+    }
+}
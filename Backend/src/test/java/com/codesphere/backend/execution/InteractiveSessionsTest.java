@@ -0,0 +1,149 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class InteractiveSessionsTest {
+
+    private final InteractiveSessions sessions =
+            new InteractiveSessions(null, null, null, null, null, 1, 1, 1, 60, 4096, 4096);
+
+    @AfterEach
+    void shutdown() {
+        sessions.shutdown();
+    }
+
+    @Test
+    void streamsStdinAndOutputUntilExit() throws Exception {
+        RecordingPeer peer = new RecordingPeer();
+        InteractiveSessions.Session session =
+                sessions.attach(null, peer, new ProcessBuilder("cat").start());
+
+        assertEquals("started", peer.next().get("type"));
+        session.write("hello\n");
+        Map<String, Object> output = peer.next();
+        assertEquals("output", output.get("type"));
+        assertEquals("hello\n", output.get("data"));
+
+        session.closeStdin();
+        Map<String, Object> exit = peer.next();
+        assertEquals("exit", exit.get("type"));
+        assertEquals("SUCCESS", exit.get("status"));
+        assertEquals(0, exit.get("exitCode"));
+        assertTrue(peer.closed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void endsIdleSessionsAndKillsTheProgram() throws Exception {
+        RecordingPeer peer = new RecordingPeer();
+        Process sleep = new ProcessBuilder("sleep", "30").start();
+        sessions.attach(null, peer, sleep);
+
+        assertEquals("started", peer.next().get("type"));
+        Map<String, Object> exit = peer.next();
+        assertEquals("TIMEOUT", exit.get("status"));
+        assertTrue(sleep.waitFor(5, TimeUnit.SECONDS));
+        assertEquals(1L, sessions.metricsSnapshot().get("idleTimeouts"));
+    }
+
+    @Test
+    void refusesInputTheProgramIsNotReading() throws Exception {
+        RecordingPeer peer = new RecordingPeer();
+        InteractiveSessions.Session session =
+                sessions.attach(null, peer, new ProcessBuilder("sleep", "30").start());
+        assertEquals("started", peer.next().get("type"));
+
+        // The pipe takes the first 64 KB or so; after that writes queue up to the high-water mark.
+        String chunk = "x".repeat(1000);
+        for (int i = 0; i < 200 && (long) sessions.metricsSnapshot().get("stdinRefused") == 0; i++) {
+            session.write(chunk);
+            Thread.sleep(2);
+        }
+
+        Map<String, Object> refused = peer.next();
+        assertEquals("error", refused.get("type"));
+        assertTrue(refused.get("message").toString().startsWith("Input refused"));
+        session.disconnect();
+    }
+
+    @Test
+    void rejectsSessionsBeyondTheCap() throws Exception {
+        RecordingPeer peer = new RecordingPeer();
+        InteractiveSessions.Session session =
+                sessions.attach(null, peer, new ProcessBuilder("sleep", "30").start());
+
+        Process second = new ProcessBuilder("sleep", "30").start();
+        try {
+            assertThrows(ExecutionRejectedException.class, () -> sessions.attach(null, new RecordingPeer(), second));
+        } finally {
+            second.destroyForcibly();
+        }
+
+        session.disconnect();
+        assertEquals(0, sessions.metricsSnapshot().get("open"));
+        assertFalse(peer.closed.await(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void capsSessionsPerUser() throws Exception {
+        InteractiveSessions perUser = new InteractiveSessions(null, null, null, null, null, 3, 1, 1, 60, 4096, 4096);
+        Process first = new ProcessBuilder("sleep", "30").start();
+        Process second = new ProcessBuilder("sleep", "30").start();
+        Process other = new ProcessBuilder("sleep", "30").start();
+        try {
+            InteractiveSessions.Session session = perUser.attach(job("alice"), new RecordingPeer(), first);
+            assertThrows(ExecutionRejectedException.class,
+                    () -> perUser.attach(job("alice"), new RecordingPeer(), second));
+            perUser.attach(job("bob"), new RecordingPeer(), other);
+
+            // Closing a session frees the user's slot.
+            session.disconnect();
+            perUser.attach(job("alice"), new RecordingPeer(), second);
+            assertEquals(2, perUser.metricsSnapshot().get("open"));
+        } finally {
+            perUser.shutdown();
+            second.destroyForcibly();
+        }
+    }
+
+    private static ExecutionJob job(String username) {
+        return new ExecutionJob(username, null, "demo", "main.py", null, null, null);
+    }
+
+    private static final class RecordingPeer implements InteractiveSessions.Peer {
+
+        private final BlockingQueue<Map<String, Object>> frames = new LinkedBlockingQueue<>();
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void send(Map<String, Object> frame) {
+            frames.add(frame);
+        }
+
+        @Override
+        public void close(String reason) {
+            closed.countDown();
+        }
+
+        Map<String, Object> next() throws InterruptedException {
+            Map<String, Object> frame = frames.poll(5, TimeUnit.SECONDS);
+            assertNotNull(frame, "no frame within 5 s");
+            return frame;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JavaProjectBuilderTest {
+
+    @TempDir
+    Path projectDir;
+
+    @TempDir
+    Path buildRoot;
+
+    private final InProcessJavaCompiler compiler = new InProcessJavaCompiler("in-process");
+
+    @Test
+    void recompilesChangedUnitsAndTheirDependentsOnly() throws Exception {
+        JavaProjectBuilder builder = new JavaProjectBuilder(compiler, buildRoot.toString());
+        Files.createDirectories(projectDir.resolve("app"));
+        Files.writeString(projectDir.resolve("app/Shape.java"), "package app; public interface Shape { int area(); }");
+        Path square = Files.writeString(projectDir.resolve("app/Square.java"),
+                "package app; public class Square implements Shape { public int area() { return 4; } }");
+        Files.writeString(projectDir.resolve("app/Unrelated.java"), "package app; class Unrelated {}");
+        Path main = Files.writeString(projectDir.resolve("app/Main.java"),
+                "package app; public class Main { public static void main(String[] a) { Shape s = new Square(); } }");
+
+        PreparedProgram first = builder.build(projectDir, main, "java", 30_000);
+        assertTrue(first.isReady());
+        assertEquals("app.Main", first.getMainClass());
+        assertTrue(Files.exists(first.getClassesDir().resolve("app/Square.class")));
+        assertEquals(4L, builder.metricsSnapshot().get("unitsCompiled"));
+
+        builder.build(projectDir, main, "java", 30_000);
+        assertEquals(4L, builder.metricsSnapshot().get("unitsCompiled"));
+
+        Files.writeString(square, "package app; public class Square implements Shape { public int area() { return 9; } }");
+        builder.build(projectDir, main, "java", 30_000);
+        // Square and Main, which uses it; Shape and Unrelated are reused.
+        assertEquals(6L, builder.metricsSnapshot().get("unitsCompiled"));
+
+        Files.writeString(square, "package app; public class Square { }");
+        PreparedProgram broken = builder.build(projectDir, main, "java", 30_000);
+        assertFalse(broken.isReady());
+        assertTrue(broken.getFailure().getError().contains("Main.java"));
+    }
+
+    @Test
+    void rebuildLeavesClassesOfRunningProgramsInPlace() throws Exception {
+        JavaProjectBuilder builder = new JavaProjectBuilder(compiler, buildRoot.toString());
+        Path helper = Files.writeString(projectDir.resolve("Helper.java"),
+                "public class Helper { static int value() { return 1; } }");
+        Path main = Files.writeString(projectDir.resolve("Main.java"),
+                "public class Main { public static void main(String[] a) { System.out.println(Helper.value()); } }");
+
+        PreparedProgram running = builder.build(projectDir, main, "java", 30_000);
+        Files.writeString(helper, "public class Helper { static int value() { return 2; } }");
+        PreparedProgram next = builder.build(projectDir, main, "java", 30_000);
+
+        // The first program may still load Helper lazily.
+        assertNotEquals(running.getClassesDir(), next.getClassesDir());
+        assertTrue(Files.exists(running.getClassesDir().resolve("Helper.class")));
+        assertTrue(Files.exists(next.getClassesDir().resolve("Main.class")));
+
+        running.close();
+        assertFalse(Files.exists(running.getClassesDir()));
+        next.close();
+        assertTrue(Files.exists(next.getClassesDir().resolve("Helper.class")));
+    }
+
+    @Test
+    void constantHoldersRebuildEverything() {
+        JavaProjectBuilder.Unit constants = new JavaProjectBuilder.Unit("h1", Set.of("Limits"), Set.of(), true);
+        JavaProjectBuilder.Unit user = new JavaProjectBuilder.Unit("h2", Set.of("Main"), Set.of(), false);
+        JavaProjectBuilder.Unit other = new JavaProjectBuilder.Unit("h3", Set.of("Other"), Set.of(), false);
+        Map<String, JavaProjectBuilder.Unit> units = Map.of("Limits.java", constants, "Main.java", user,
+                "Other.java", other);
+
+        assertEquals(Set.of("Limits.java", "Main.java", "Other.java"),
+                JavaProjectBuilder.dirtyUnits(units, Set.of("Limits.java"), Set.of()));
+        assertEquals(Set.of("Other.java"),
+                JavaProjectBuilder.dirtyUnits(units, Set.of("Other.java"), Set.of()));
+    }
+}
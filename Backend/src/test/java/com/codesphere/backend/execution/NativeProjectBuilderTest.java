@@ -0,0 +1,80 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class NativeProjectBuilderTest {
+
+    @TempDir
+    Path projectDir;
+
+    @TempDir
+    Path buildRoot;
+
+    private final ProcessIoPump pump = new ProcessIoPump(4096, 4096);
+
+    @Test
+    void parsesMakeRuleWithContinuationsAndEscapedSpaces() {
+        String rule = "/b/obj/main.c.o: main.c util.h \\\n  my\\ dir/x.h\n\nutil.h:\n";
+
+        assertEquals(List.of("main.c", "util.h", "my dir/x.h"), NativeProjectBuilder.parseDependencies(rule));
+    }
+
+    @Test
+    void recompilesOnlyUnitsAffectedByAChange() throws Exception {
+        ToolchainRegistry toolchains = new ToolchainRegistry(pump, 0);
+        toolchains.init();
+        assumeTrue(toolchains.isAvailable("gcc"));
+        NativeProjectBuilder builder = new NativeProjectBuilder(pump, buildRoot.toString(), 2);
+        Files.writeString(projectDir.resolve("util.h"), "int twice(int x);\n");
+        Path util = Files.writeString(projectDir.resolve("util.c"),
+                "#include \"util.h\"\nint twice(int x) { return 2 * x; }\n");
+        Files.writeString(projectDir.resolve("main.c"),
+                "#include <stdio.h>\n#include \"util.h\"\nint main(void) { printf(\"%d\\n\", twice(21)); return 0; }\n");
+
+        PreparedProgram first = build(builder, toolchains);
+        assertTrue(first.isReady());
+        assertEquals("42\n", run(first));
+        assertEquals(2L, builder.metricsSnapshot().get("unitsCompiled"));
+
+        build(builder, toolchains);
+        assertEquals(2L, builder.metricsSnapshot().get("unitsCompiled"));
+        assertEquals(1L, builder.metricsSnapshot().get("links"));
+
+        Files.writeString(util, "#include \"util.h\"\nint twice(int x) { return x + x + 1; }\n");
+        Files.setLastModifiedTime(util, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+        PreparedProgram second = build(builder, toolchains);
+        assertEquals("43\n", run(second));
+        assertEquals(3L, builder.metricsSnapshot().get("unitsCompiled"));
+        assertEquals(2L, builder.metricsSnapshot().get("links"));
+
+        Files.writeString(projectDir.resolve("broken.c"), "int oops( {\n");
+        PreparedProgram broken = build(builder, toolchains);
+        assertFalse(broken.isReady());
+        assertTrue(broken.getFailure().getError().contains("broken.c"));
+        builder.shutdown();
+    }
+
+    private PreparedProgram build(NativeProjectBuilder builder, ToolchainRegistry toolchains) throws Exception {
+        return builder.build("gcc", toolchains.command("gcc"), toolchains.identity("gcc"),
+                projectDir, Set.of("c"), 30_000);
+    }
+
+    private String run(PreparedProgram program) throws Exception {
+        return pump.run(program.start(), null, null, 5000).getOutput();
+    }
+}
@@ -0,0 +1,59 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class OutputMatcherTest {
+
+    private final AtomicInteger mismatches = new AtomicInteger();
+
+    @Test
+    void acceptsOutputSplitAcrossChunksIgnoringTrailingWhitespace() {
+        OutputMatcher matcher = new OutputMatcher("1 2\n3\n", mismatches::incrementAndGet);
+
+        matcher.accept("1 ");
+        matcher.accept("2  \r\n3");
+        matcher.accept("\n\n");
+
+        assertTrue(matcher.finish());
+        assertEquals(0, mismatches.get());
+    }
+
+    @Test
+    void reportsFirstWrongCharacterImmediately() {
+        OutputMatcher matcher = new OutputMatcher("hello\nworld", mismatches::incrementAndGet);
+
+        matcher.accept("hello\nwor");
+        assertFalse(matcher.isMismatch());
+        matcher.accept("m and more");
+
+        assertTrue(matcher.isMismatch());
+        assertEquals(1, mismatches.get());
+        assertFalse(matcher.finish());
+    }
+
+    @Test
+    void rejectsMissingAndExtraLines() {
+        OutputMatcher missing = new OutputMatcher("a\nb\n", mismatches::incrementAndGet);
+        missing.accept("a\n");
+        assertFalse(missing.finish());
+
+        OutputMatcher extra = new OutputMatcher("a\n", mismatches::incrementAndGet);
+        extra.accept("a\nb\n");
+        assertTrue(extra.isMismatch());
+    }
+
+    @Test
+    void rejectsWhitespaceInsideALine() {
+        OutputMatcher matcher = new OutputMatcher("a b", mismatches::incrementAndGet);
+
+        matcher.accept("a\tb");
+
+        assertTrue(matcher.isMismatch());
+    }
+}
@@ -0,0 +1,73 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class ProcessIoPumpTest {
+
+    private final ProcessIoPump pump = new ProcessIoPump(1024, 1024);
+
+    @Test
+    void echoesInputLargerThanPipeBufferWithoutDeadlock() throws Exception {
+        String input = "x".repeat(1024 * 1024);
+        Process cat = new ProcessBuilder("cat").start();
+
+        ProcessOutcome outcome = pump.run(cat, input, null, 5000);
+
+        assertFalse(outcome.isTimedOut());
+        assertEquals(0, outcome.getExitCode());
+        assertEquals(input.length(), outcome.getStdout().totalChars());
+        assertTrue(outcome.getStdout().isTruncated());
+    }
+
+    @Test
+    void killsProcessOnTimeout() throws Exception {
+        Process sleep = new ProcessBuilder("sleep", "10").start();
+
+        ProcessOutcome outcome = pump.run(sleep, null, null, 200);
+
+        assertTrue(outcome.isTimedOut());
+        assertFalse(sleep.isAlive());
+    }
+
+    @Test
+    void killsChildrenOfTimedOutProcess() throws Exception {
+        Process shell = new ProcessBuilder("sh", "-c", "sleep 30 & sleep 30; wait").start();
+        Thread.sleep(200);
+        List<ProcessHandle> children = shell.toHandle().descendants().toList();
+
+        ProcessOutcome outcome = pump.run(shell, null, null, 200);
+
+        assertTrue(outcome.isTimedOut());
+        assertFalse(children.isEmpty());
+        for (ProcessHandle child : children) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (isRunning(child) && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertFalse(isRunning(child));
+        }
+    }
+
+    /** Killed orphans can stay zombies when nothing reaps them, e.g. in containers. */
+    private static boolean isRunning(ProcessHandle process) throws IOException {
+        Path stat = Path.of("/proc", Long.toString(process.pid()), "stat");
+        if (!process.isAlive() || !Files.exists(stat)) {
+            return process.isAlive();
+        }
+        String line = Files.readString(stat);
+        return line.charAt(line.lastIndexOf(')') + 2) != 'Z';
+    }
+}
@@ -0,0 +1,76 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.codesphere.backend.dto.ExecutionResult;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class PythonForkServerTest {
+
+    @TempDir
+    Path projectDir;
+
+    private final ProcessIoPump pump = new ProcessIoPump(4096, 4096);
+    private final ToolchainRegistry toolchains = new ToolchainRegistry(pump, 0);
+    private final ExecutionSandbox sandbox = new ExecutionSandbox(new ExecutionLimits(), toolchains);
+    private final PythonForkServer server = new PythonForkServer(true, pump, toolchains);
+
+    @AfterEach
+    void shutdown() {
+        server.shutdown();
+    }
+
+    @Test
+    void runsForkedChildInProjectDirectory() throws Exception {
+        Path script = Files.writeString(projectDir.resolve("main.py"),
+                "import os\nprint(input(), os.path.basename(os.getcwd()))\nraise SystemExit(3 if input() == 'fail' else 0)\n");
+        awaitHealthy();
+
+        ExecutionResult ok = server.tryRun(projectDir, script, "hello\nok\n", null, 5000, sandbox.open("python", 5000));
+        assertEquals("SUCCESS", ok.getStatus());
+        assertEquals("hello " + projectDir.getFileName() + "\n", ok.getOutput());
+
+        ExecutionResult failed = server.tryRun(projectDir, script, "hello\nfail\n", null, 5000, sandbox.open("python", 5000));
+        assertEquals("ERROR", failed.getStatus());
+    }
+
+    @Test
+    void killsChildOnTimeout() throws Exception {
+        Path script = Files.writeString(projectDir.resolve("spin.py"), "while True:\n    pass\n");
+        awaitHealthy();
+
+        ExecutionResult result = server.tryRun(projectDir, script, null, null, 500, sandbox.open("python", 500));
+
+        assertEquals("TIMEOUT", result.getStatus());
+    }
+
+    @Test
+    void fallsBackWhenDisabled() throws Exception {
+        PythonForkServer disabled = new PythonForkServer(false, pump, toolchains);
+        disabled.start();
+
+        assertNull(disabled.tryRun(projectDir, projectDir.resolve("main.py"), null, null, 5000,
+                sandbox.open("python", 5000)));
+    }
+
+    private void awaitHealthy() throws InterruptedException {
+        toolchains.init();
+        sandbox.init();
+        server.start();
+        for (int i = 0; i < 100 && !server.isHealthy(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(server.isHealthy(), "fork server never became ready");
+    }
+}
@@ -0,0 +1,136 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class ScratchSpaceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ScratchSpace space;
+
+    @AfterEach
+    void shutdown() {
+        if (space != null) {
+            space.shutdown();
+        }
+    }
+
+    @Test
+    void runsSeeProjectFilesButKeepTheirOwnOutput() throws Exception {
+        Path project = Files.createDirectories(tempDir.resolve("project"));
+        Files.writeString(project.resolve("input.txt"), "data");
+        space = new ScratchSpace(tempDir.resolve("scratch").toString(), 1 << 20, 1 << 20, 1 << 20);
+
+        ScratchSpace.Scratch first = space.open(project);
+        try (ScratchSpace.Scratch second = space.open(project)) {
+            assertNotEquals(first.dir(), second.dir());
+            assertEquals("data", Files.readString(first.dir().resolve("input.txt")));
+
+            Files.writeString(first.dir().resolve("out.txt"), "result");
+            assertFalse(Files.exists(second.dir().resolve("out.txt")));
+            assertFalse(Files.exists(project.resolve("out.txt")));
+
+            first.close();
+            assertFalse(Files.exists(first.dir()));
+        } finally {
+            first.close();
+        }
+        assertEquals("data", Files.readString(project.resolve("input.txt")));
+    }
+
+    @Test
+    void writingToAProjectFileOnlyChangesTheRunsCopy() throws Exception {
+        Path project = Files.createDirectories(tempDir.resolve("project"));
+        Files.createDirectories(project.resolve("src"));
+        Files.writeString(project.resolve("src/main.py"), "print(1)");
+        space = new ScratchSpace(tempDir.resolve("scratch").toString(), 1 << 20, 1 << 20, 1 << 20);
+
+        try (ScratchSpace.Scratch scratch = space.open(project)) {
+            Files.writeString(scratch.dir().resolve("src/main.py"), "print(2)");
+        }
+        assertEquals("print(1)", Files.readString(project.resolve("src/main.py")));
+    }
+
+    @Test
+    void largeProjectFilesAreReadOnlySnapshotsNotLinksToTheWorkspace() throws Exception {
+        Path project = Files.createDirectories(tempDir.resolve("project"));
+        Files.writeString(project.resolve("data.csv"), "a,b\n".repeat(100));
+        // Nothing fits the copy budget, so the file is snapshotted.
+        space = new ScratchSpace(tempDir.resolve("scratch").toString(), 1 << 20, 1 << 20, 10);
+
+        try (ScratchSpace.Scratch first = space.open(project)) {
+            Path data = first.dir().resolve("data.csv");
+            assertFalse(Files.isSymbolicLink(data));
+            assertEquals("a,b\n".repeat(100), Files.readString(data));
+            try {
+                Files.writeString(data, "changed");
+            } catch (AccessDeniedException expected) {
+                // Read-only unless the test runs as root.
+            }
+            assertEquals("a,b\n".repeat(100), Files.readString(project.resolve("data.csv")));
+
+            try (ScratchSpace.Scratch second = space.open(project)) {
+                assertEquals("a,b\n".repeat(100), Files.readString(second.dir().resolve("data.csv")));
+            }
+        }
+    }
+
+    @Test
+    void stopsARunThatWritesTooMuch() throws Exception {
+        Path project = Files.createDirectories(tempDir.resolve("project"));
+        Files.writeString(project.resolve("input.txt"), "x".repeat(4000));
+        space = new ScratchSpace(tempDir.resolve("scratch").toString(), 1 << 20, 1000, 1 << 20);
+
+        try (ScratchSpace.Scratch scratch = space.open(project)) {
+            AtomicBoolean stopped = new AtomicBoolean();
+            scratch.onOverflow(() -> stopped.set(true));
+            // Copied project files do not count against the run.
+            space.enforce();
+            assertNull(scratch.overflowMessage());
+
+            Files.writeString(scratch.dir().resolve("out.txt"), "y".repeat(2000));
+            space.enforce();
+            assertTrue(stopped.get());
+            assertNotNull(scratch.overflowMessage());
+        }
+    }
+
+    @Test
+    void refusesNewRunsAndStopsTheLargestWhileTheNodeIsOverBudget() throws Exception {
+        Path project = Files.createDirectories(tempDir.resolve("project"));
+        space = new ScratchSpace(tempDir.resolve("scratch").toString(), 2500, 1 << 20, 1 << 20);
+
+        try (ScratchSpace.Scratch small = space.open(project);
+             ScratchSpace.Scratch large = space.open(project)) {
+            Files.writeString(small.dir().resolve("out.txt"), "s".repeat(1000));
+            Files.writeString(large.dir().resolve("out.txt"), "l".repeat(2000));
+            space.enforce();
+
+            assertNotNull(large.overflowMessage());
+            assertNull(small.overflowMessage());
+            assertThrows(ExecutionRejectedException.class, () -> space.open(project));
+        }
+        space.enforce();
+        space.open(project).close();
+    }
+}
@@ -0,0 +1,41 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ToolchainRegistryTest {
+
+    private final ToolchainRegistry registry = new ToolchainRegistry(new ProcessIoPump(4096, 4096), 0);
+
+    @AfterEach
+    void shutdown() {
+        registry.shutdown();
+    }
+
+    @Test
+    void resolvesToolsToAbsolutePathsWithVersions() {
+        registry.init();
+
+        // The JVM running the tests is normally on PATH.
+        ToolchainRegistry.Toolchain java = registry.find("java").orElseThrow();
+        assertTrue(java.getPath().isAbsolute());
+        assertTrue(Files.isExecutable(java.getPath()));
+        assertFalse(java.getVersion().isEmpty());
+        assertEquals(java.getPath().toString(), registry.command("java"));
+        assertEquals(java.getVersion(), registry.identity("java"));
+    }
+
+    @Test
+    void unknownToolsAreUnavailableWithoutProbing() {
+        registry.init();
+
+        assertFalse(registry.isAvailable("no-such-compiler"));
+        assertEquals("no-such-compiler", registry.command("no-such-compiler"));
+    }
+}
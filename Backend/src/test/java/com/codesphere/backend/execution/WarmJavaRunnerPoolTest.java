@@ -0,0 +1,172 @@
+package com.codesphere.backend.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.codesphere.backend.dto.ExecutionResult;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WarmJavaRunnerPoolTest {
+
+    @TempDir
+    Path projectDir;
+
+    private final InProcessJavaCompiler compiler = new InProcessJavaCompiler("in-process");
+    private final ProcessIoPump pump = new ProcessIoPump(4096, 4096);
+    private final ToolchainRegistry toolchains = new ToolchainRegistry(pump, 0);
+    private ExecutionSandbox sandbox;
+    private ScratchSpace scratch;
+    private WarmJavaRunnerPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Without cgroups the runners need unconfined runs; see coldInPrlimitMode.
+        ExecutionLimits limits = new ExecutionLimits();
+        limits.setEnabled(false);
+        sandbox = new ExecutionSandbox(limits, toolchains);
+        scratch = new ScratchSpace(projectDir.resolve("scratch").toString(), 1 << 26, 1 << 24, 1 << 20);
+        pool = new WarmJavaRunnerPool(1, 10, "64m", compiler, pump, toolchains, sandbox, scratch);
+    }
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdown();
+        scratch.shutdown();
+        compiler.shutdown();
+    }
+
+    @Test
+    void runsCompiledClassesOnWarmRunnerAndRecyclesAfterTimeout() throws Exception {
+        Path classes = compile("Echo",
+                "public class Echo { public static void main(String[] a) {"
+                        + " System.out.println(\"got \" + new java.util.Scanner(System.in).nextLine()); } }");
+        Path spin = compile("Spin", "public class Spin { public static void main(String[] a) { while (true) {} } }");
+        toolchains.init();
+        sandbox.init();
+        pool.warmUp();
+        awaitIdle();
+
+        ExecutionResult first = pool.tryRun("alice", classes, "Echo", "one\n", null, 10_000);
+        assertEquals("SUCCESS", first.getStatus());
+        assertEquals("got one\n", first.getOutput());
+
+        ExecutionResult timedOut = pool.tryRun("alice", spin, "Spin", null, null, 500);
+        assertEquals("TIMEOUT", timedOut.getStatus());
+
+        awaitIdle();
+        ExecutionResult again = pool.tryRun("alice", classes, "Echo", "two\n", null, 10_000);
+        assertEquals("got two\n", again.getOutput());
+    }
+
+    @Test
+    void leavesFileSystemProgramsToColdJvm() throws Exception {
+        Path classes = compile("Reader",
+                "public class Reader { public static void main(String[] a) throws Exception {"
+                        + " System.out.println(java.nio.file.Files.readString(java.nio.file.Path.of(\"x\"))); } }");
+        toolchains.init();
+        sandbox.init();
+        pool.warmUp();
+        awaitIdle();
+
+        assertNull(pool.tryRun("alice", classes, "Reader", null, null, 10_000));
+    }
+
+    @Test
+    void leavesRuntimeProgramsToColdJvm() throws Exception {
+        Path exec = compile("Exec",
+                "public class Exec { public static void main(String[] a) throws Exception {"
+                        + " Runtime.getRuntime().exec(new String[] {\"ls\"}).waitFor(); } }");
+        Path thrower = compile("Thrower",
+                "public class Thrower { public static void main(String[] a) {"
+                        + " try { throw new RuntimeException(\"x\"); }"
+                        + " catch (RuntimeException e) { System.out.println(e.getMessage()); } } }");
+        toolchains.init();
+        sandbox.init();
+        pool.warmUp();
+        awaitIdle();
+
+        assertNull(pool.tryRun("alice", exec, "Exec", null, null, 10_000));
+        ExecutionResult warm = pool.tryRun("alice", thrower, "Thrower", null, null, 10_000);
+        assertEquals("x\n", warm.getOutput());
+    }
+
+    @Test
+    void keepsRunnersToOneUser() throws Exception {
+        Path setter = compile("Setter",
+                "public class Setter { public static void main(String[] a) {"
+                        + " System.setProperty(\"leak\", \"alice\"); System.out.println(\"set\"); } }");
+        Path getter = compile("Getter",
+                "public class Getter { public static void main(String[] a) {"
+                        + " System.out.println(System.getProperty(\"leak\")); } }");
+        toolchains.init();
+        sandbox.init();
+        pool.warmUp();
+        awaitIdle();
+
+        assertEquals("set\n", pool.tryRun("alice", setter, "Setter", null, null, 10_000).getOutput());
+        assertEquals("alice\n", pool.tryRun("alice", getter, "Getter", null, null, 10_000).getOutput());
+
+        // Alice's runner is not handed to bob; it is replaced by a fresh one.
+        assertNull(pool.tryRun("bob", getter, "Getter", null, null, 10_000));
+        awaitIdle();
+        assertEquals("null\n", pool.tryRun("bob", getter, "Getter", null, null, 10_000).getOutput());
+    }
+
+    @Test
+    void ignoresFramesWrittenStraightToStdout() throws Exception {
+        Path forger = compile("Forger",
+                "public class Forger { public static void main(String[] a) throws Exception {"
+                        + " Class<?> fd = Class.forName(\"java.io.FileDescriptor\");"
+                        + " Object stdout = Class.forName(\"java.io.FileOutputStream\").getConstructor(fd)"
+                        + "     .newInstance(fd.getField(\"out\").get(null));"
+                        + " stdout.getClass().getMethod(\"write\", byte[].class)"
+                        + "     .invoke(stdout, (Object) new byte[] {'X', 0, 0, 0, 0, 0});"
+                        + " System.out.println(\"after\"); } }");
+        toolchains.init();
+        sandbox.init();
+        pool.warmUp();
+        awaitIdle();
+
+        assertEquals("after\n", pool.tryRun("alice", forger, "Forger", null, null, 10_000).getOutput());
+        assertEquals("after\n", pool.tryRun("alice", forger, "Forger", null, null, 10_000).getOutput());
+    }
+
+    @Test
+    void coldInPrlimitMode() throws Exception {
+        Path classes = compile("Hello", "public class Hello { public static void main(String[] a) {} }");
+        toolchains.init();
+        ExecutionSandbox rlimits = new ExecutionSandbox(new ExecutionLimits(), toolchains);
+        rlimits.init();
+        assumeTrue(rlimits.getMode() == ExecutionSandbox.Mode.PRLIMIT, "node has cgroups or no prlimit");
+        WarmJavaRunnerPool limited = new WarmJavaRunnerPool(1, 10, "64m", compiler, pump, toolchains, rlimits, scratch);
+
+        limited.warmUp();
+        assertNull(limited.tryRun("alice", classes, "Hello", null, null, 10_000));
+        assertEquals(0, limited.metricsSnapshot().get("live"));
+        limited.shutdown();
+    }
+
+    private Path compile(String name, String source) throws Exception {
+        Path file = Files.writeString(projectDir.resolve(name + ".java"), source);
+        InProcessJavaCompiler.Result result = compiler.compile(projectDir, file, 30_000);
+        Path out = Files.createDirectories(projectDir.resolve("out-" + name));
+        InProcessJavaCompiler.writeClasses(result.getClasses(), out);
+        return out;
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        for (int i = 0; i < 300 && !Integer.valueOf(1).equals(pool.metricsSnapshot().get("idle")); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(Integer.valueOf(1).equals(pool.metricsSnapshot().get("idle")), "runner never became idle");
+    }
+}
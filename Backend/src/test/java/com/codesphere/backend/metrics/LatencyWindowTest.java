@@ -0,0 +1,37 @@
+package com.codesphere.backend.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyWindowTest {
+
+    @Test
+    void reportsPercentilesOfRecordedSamples() {
+        LatencyWindow window = new LatencyWindow(100);
+        for (int i = 1; i <= 100; i++) {
+            window.record(i);
+        }
+        assertEquals(50, window.percentile(50));
+        assertEquals(95, window.percentile(95));
+        assertEquals(100, window.percentile(100));
+    }
+
+    @Test
+    void keepsOnlyMostRecentSamples() {
+        LatencyWindow window = new LatencyWindow(4);
+        for (int i = 0; i < 10; i++) {
+            window.record(1000);
+        }
+        for (int i = 0; i < 4; i++) {
+            window.record(1);
+        }
+        assertEquals(1, window.percentile(99));
+        assertEquals(14L, window.snapshot().get("count"));
+    }
+
+    @Test
+    void emptyWindowReportsZero() {
+        assertEquals(0, new LatencyWindow(8).percentile(50));
+    }
+}
@@ -0,0 +1,71 @@
+package com.codesphere.backend.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileSystemBlobStoreTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void storesCompressedContentUnderItsHash() throws IOException {
+        FileSystemBlobStore store = new FileSystemBlobStore(root.toString());
+        byte[] content = "line\n".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+
+        String key = store.put(content);
+
+        assertEquals(key, store.put(content));
+        assertArrayEquals(content, store.get(key).orElseThrow());
+        try (Stream<Path> files = Files.walk(root)) {
+            Path blob = files.filter(Files::isRegularFile).findFirst().orElseThrow();
+            assertTrue(Files.size(blob) < content.length / 10);
+        }
+    }
+
+    @Test
+    void deletesAndRejectsForeignKeys() throws IOException {
+        FileSystemBlobStore store = new FileSystemBlobStore(root.toString());
+        String key = store.put(new byte[] {1, 2, 3});
+
+        store.delete(key);
+
+        assertTrue(store.get(key).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> store.get("../../etc/passwd"));
+    }
+
+    @Test
+    void listsOnlyBlobsNotStoredSinceCutoff() throws IOException {
+        FileSystemBlobStore store = new FileSystemBlobStore(root.toString());
+        String old = store.put(new byte[] {1});
+        String reused = store.put(new byte[] {2});
+        Instant cutoff = Instant.now().minus(Duration.ofHours(1));
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path blob : files.filter(Files::isRegularFile).toList()) {
+                Files.setLastModifiedTime(blob, FileTime.from(cutoff.minus(Duration.ofHours(1))));
+            }
+        }
+
+        store.put(new byte[] {2});
+
+        try (Stream<String> keys = store.keysStoredBefore(cutoff)) {
+            assertEquals(List.of(old), keys.toList());
+        }
+        assertTrue(store.get(reused).isPresent());
+    }
+}